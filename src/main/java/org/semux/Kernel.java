@@ -8,7 +8,12 @@ package org.semux;
 
 import java.io.IOException;
 import java.net.InetAddress;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
 import java.util.concurrent.locks.ReentrantReadWriteLock.WriteLock;
@@ -52,6 +57,7 @@ public class Kernel {
     protected Wallet wallet;
     protected EdDSA coinbase;
 
+    protected DBFactory dbFactory;
     protected Blockchain chain;
     protected PeerClient client;
 
@@ -62,6 +68,13 @@ public class Kernel {
     protected SemuxSync sync;
     protected SemuxBFT cons;
 
+    protected ExecutorService dbCompactor = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "db-compact");
+        t.setDaemon(true);
+        return t;
+    });
+    protected AtomicBoolean isCompacting = new AtomicBoolean(false);
+
     /**
      * Creates a kernel instance and initializes it.
      * 
@@ -94,7 +107,7 @@ public class Kernel {
         logger.info("System booting up: network = [{}, {}], coinbase = {}", config.networkId(), config.networkVersion(),
                 coinbase);
 
-        DBFactory dbFactory = new LevelDBFactory(config.dataDir());
+        dbFactory = new LevelDBFactory(config);
         chain = new BlockchainImpl(config, dbFactory);
         long number = chain.getLatestBlockNumber();
         logger.info("Latest block number = {}", number);
@@ -182,6 +195,20 @@ public class Kernel {
                 logger.error("Failed to stop sync/consensus properly");
             }
 
+            // make sure no block is being pruned
+            chain.stop();
+
+            // make sure no database is being compacted
+            dbCompactor.shutdown();
+            try {
+                while (!dbCompactor.awaitTermination(10, TimeUnit.SECONDS)) {
+                    logger.info("Waiting for the database compaction to finish");
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                logger.error("Failed to stop the database compaction properly");
+            }
+
             // make sure no thread is reading/writing the state
             WriteLock lock = stateLock.writeLock();
             lock.lock();
@@ -195,6 +222,43 @@ public class Kernel {
         }, "shutdown-hook"));
     }
 
+    /**
+     * Compacts databases in the background, one compaction at a time. The
+     * compaction is finished before the databases are closed on shutdown.
+     * 
+     * @param names
+     *            the databases to compact
+     * @return whether the compaction has started; it does not while another one
+     *         is running, or once the kernel is shutting down
+     */
+    public boolean compactDB(List<DBName> names) {
+        if (!isCompacting.compareAndSet(false, true)) {
+            return false;
+        }
+
+        try {
+            dbCompactor.submit(() -> {
+                try {
+                    for (DBName name : names) {
+                        if (dbCompactor.isShutdown()) {
+                            logger.info("Database compaction cancelled by shutdown");
+                            break;
+                        }
+                        long t1 = System.currentTimeMillis();
+                        dbFactory.getDB(name).compactRange(null, null);
+                        logger.info("Compacted database {} in {} ms", name, System.currentTimeMillis() - t1);
+                    }
+                } finally {
+                    isCompacting.set(false);
+                }
+            });
+            return true;
+        } catch (RejectedExecutionException e) {
+            isCompacting.set(false);
+            return false;
+        }
+    }
+
     /**
      * Returns the wallet.
      * 
@@ -276,6 +340,15 @@ public class Kernel {
         return config;
     }
 
+    /**
+     * Returns the database factory.
+     * 
+     * @return
+     */
+    public DBFactory getDbFactory() {
+        return dbFactory;
+    }
+
     /**
      * Returns the state lock.
      * 
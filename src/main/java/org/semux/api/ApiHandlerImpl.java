@@ -10,6 +10,10 @@ import static io.netty.handler.codec.http.HttpResponseStatus.INTERNAL_SERVER_ERR
 
 import java.net.InetSocketAddress;
 import java.net.UnknownHostException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.stream.Collectors;
 
@@ -22,6 +26,7 @@ import org.semux.api.response.DoTransactionResponse;
 import org.semux.api.response.GetAccountResponse;
 import org.semux.api.response.GetAccountTransactionsResponse;
 import org.semux.api.response.GetBlockResponse;
+import org.semux.api.response.GetDbStatsResponse;
 import org.semux.api.response.GetDelegateResponse;
 import org.semux.api.response.GetDelegatesResponse;
 import org.semux.api.response.GetInfoResponse;
@@ -37,12 +42,18 @@ import org.semux.api.response.GetVotesResponse;
 import org.semux.api.response.ListAccountsResponse;
 import org.semux.api.response.SendTransactionResponse;
 import org.semux.core.Block;
+import org.semux.core.BlockHeader;
 import org.semux.core.BlockchainImpl;
+import org.semux.core.ReadView;
 import org.semux.core.Transaction;
 import org.semux.core.TransactionType;
 import org.semux.core.state.Delegate;
 import org.semux.crypto.EdDSA;
 import org.semux.crypto.Hex;
+import org.semux.db.CachingKVDB;
+import org.semux.db.DBName;
+import org.semux.db.DBStats;
+import org.semux.db.KVDB;
 import org.semux.util.Bytes;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -139,7 +150,11 @@ public class ApiHandlerImpl implements ApiHandler {
                 }
 
                 if (block == null) {
-                    return failure("block is not found");
+                    // pruned blocks keep their headers
+                    BlockHeader header = (number != null)
+                            ? kernel.getBlockchain().getBlockHeader(Long.parseLong(number))
+                            : kernel.getBlockchain().getBlockHeader(Hex.parse(hash));
+                    return failure(header == null ? "block is not found" : "block body has been pruned");
                 }
 
                 return success(new GetBlockResponse(true, new GetBlockResponse.Result(block)));
@@ -158,6 +173,11 @@ public class ApiHandlerImpl implements ApiHandler {
                 String from = params.get("from");
                 String to = params.get("to");
                 if (addr != null && from != null && to != null) {
+                    // pruned transactions keep their place in the count
+                    int first = kernel.getBlockchain().getFirstTransactionIndex(Hex.parse(addr));
+                    if (Integer.parseInt(from) < first) {
+                        return failure("transactions below index " + first + " have been pruned");
+                    }
                     return success(new GetAccountTransactionsResponse(true, kernel.getBlockchain()
                             .getTransactions(Hex.parse(addr), Integer.parseInt(from), Integer.parseInt(to))
                             .parallelStream()
@@ -172,6 +192,9 @@ public class ApiHandlerImpl implements ApiHandler {
                 String hash = params.get("hash");
                 if (hash != null) {
                     Transaction transaction = kernel.getBlockchain().getTransaction(Hex.parse(hash));
+                    if (transaction == null) {
+                        return failure("transaction is not found");
+                    }
                     return success(
                             new GetTransactionResponse(
                                     true,
@@ -195,10 +218,15 @@ public class ApiHandlerImpl implements ApiHandler {
             case GET_ACCOUNT: {
                 String addr = params.get("address");
                 if (addr != null) {
-                    return success(new GetAccountResponse(
-                            true,
-                            new GetAccountResponse.Result(
-                                    kernel.getBlockchain().getAccountState().getAccount(Hex.parse(addr)))));
+                    ReadView view = kernel.getBlockchain().openReadView();
+                    try {
+                        return success(new GetAccountResponse(
+                                true,
+                                new GetAccountResponse.Result(
+                                        view.getAccountState().getAccount(Hex.parse(addr)))));
+                    } finally {
+                        view.close();
+                    }
                 } else {
                     return failure("Invalid parameter: address can't be null");
                 }
@@ -212,35 +240,49 @@ public class ApiHandlerImpl implements ApiHandler {
                 }
 
                 byte[] addressBytes = Hex.parse(address);
-                Delegate delegate = kernel.getBlockchain().getDelegateState().getDelegateByAddress(addressBytes);
-                if (delegate == null) {
-                    return failure("Invalid parameter: provided address is not a delegate");
-                }
+                ReadView view = kernel.getBlockchain().openReadView();
+                try {
+                    Delegate delegate = view.getDelegateState().getDelegateByAddress(addressBytes);
+                    if (delegate == null) {
+                        return failure("Invalid parameter: provided address is not a delegate");
+                    }
 
-                BlockchainImpl.ValidatorStats validatorStats = kernel.getBlockchain().getValidatorStats(addressBytes);
+                    BlockchainImpl.ValidatorStats validatorStats = view.getValidatorStats(addressBytes);
 
-                return success(new GetDelegateResponse(
-                        true,
-                        new GetDelegateResponse.Result(validatorStats, delegate)));
+                    return success(new GetDelegateResponse(
+                            true,
+                            new GetDelegateResponse.Result(validatorStats, delegate)));
+                } finally {
+                    view.close();
+                }
             }
 
             case GET_VALIDATORS: {
-                return success(new GetValidatorsResponse(
-                        true,
-                        kernel.getBlockchain().getValidators().parallelStream()
-                                .map(v -> Hex.PREF + v)
-                                .collect(Collectors.toList())));
+                ReadView view = kernel.getBlockchain().openReadView();
+                try {
+                    return success(new GetValidatorsResponse(
+                            true,
+                            view.getValidators().parallelStream()
+                                    .map(v -> Hex.PREF + v)
+                                    .collect(Collectors.toList())));
+                } finally {
+                    view.close();
+                }
             }
 
             case GET_DELEGATES: {
-                return success(new GetDelegatesResponse(
-                        true,
-                        kernel.getBlockchain()
-                                .getDelegateState().getDelegates().parallelStream()
-                                .map(delegate -> new GetDelegateResponse.Result(
-                                        kernel.getBlockchain().getValidatorStats(delegate.getAddress()),
-                                        delegate))
-                                .collect(Collectors.toList())));
+                ReadView view = kernel.getBlockchain().openReadView();
+                try {
+                    return success(new GetDelegatesResponse(
+                            true,
+                            view.getDelegateState().getDelegates().parallelStream()
+                                    .map(delegate -> new GetDelegateResponse.Result(
+                                            view.getValidatorStats(delegate.getAddress()),
+                                            delegate))
+                                    .collect(Collectors.toList())));
+                } finally {
+                    view.close();
+                }
             }
 
             case GET_VOTE: {
@@ -248,10 +290,14 @@ public class ApiHandlerImpl implements ApiHandler {
                 String delegate = params.get("delegate");
 
                 if (voter != null && delegate != null) {
-                    return success(new GetVoteResponse(
-                            true,
-                            kernel.getBlockchain().getDelegateState()
-                                    .getVote(Hex.parse(voter), Hex.parse(delegate))));
+                    ReadView view = kernel.getBlockchain().openReadView();
+                    try {
+                        return success(new GetVoteResponse(
+                                true,
+                                view.getDelegateState().getVote(Hex.parse(voter), Hex.parse(delegate))));
+                    } finally {
+                        view.close();
+                    }
                 } else {
                     return failure("Invalid parameter: voter = " + voter + ", delegate = " + delegate);
                 }
@@ -261,17 +307,44 @@ public class ApiHandlerImpl implements ApiHandler {
                 String delegate = params.get("delegate");
 
                 if (delegate != null) {
-                    return success(new GetVotesResponse(
-                            true,
-                            kernel.getBlockchain().getDelegateState().getVotes(Hex.parse(delegate)).entrySet()
-                                    .parallelStream()
-                                    .collect(Collectors.toMap(
-                                            entry -> Hex.PREF + entry.getKey().toString(), Map.Entry::getValue))));
+                    ReadView view = kernel.getBlockchain().openReadView();
+                    try {
+                        return success(new GetVotesResponse(
+                                true,
+                                view.getDelegateState().getVotes(Hex.parse(delegate)).entrySet()
+                                        .parallelStream()
+                                        .collect(Collectors.toMap(
+                                                entry -> Hex.PREF + entry.getKey().toString(), Map.Entry::getValue))));
+                    } finally {
+                        view.close();
+                    }
                 } else {
                     return failure("Invalid parameter: delegate can't be null");
                 }
             }
 
+            case GET_DB_STATS: {
+                Map<String, GetDbStatsResponse.Result> stats = new LinkedHashMap<>();
+                Map<String, GetDbStatsResponse.CacheResult> caches = new LinkedHashMap<>();
+                for (DBName name : DBName.values()) {
+                    KVDB db = kernel.getDbFactory().getDB(name);
+                    stats.put(name.name(), new GetDbStatsResponse.Result(DBStats.of(db)));
+                    if (db instanceof CachingKVDB) {
+                        caches.put(name.name(), new GetDbStatsResponse.CacheResult(((CachingKVDB) db).getStats()));
+                    }
+                }
+                if (kernel.getBlockchain() instanceof BlockchainImpl) {
+                    BlockchainImpl chain = (BlockchainImpl) kernel.getBlockchain();
+                    caches.put("DECODED_BLOCK", new GetDbStatsResponse.CacheResult(chain.getBlockCacheStats()));
+                    caches.put("DECODED_HEADER", new GetDbStatsResponse.CacheResult(chain.getHeaderCacheStats()));
+                }
+                return success(new GetDbStatsResponse(true, stats, caches));
+            }
+
+            case COMPACT_DB: {
+                return compactDB(params);
+            }
+
             case LIST_ACCOUNTS: {
                 return success(new ListAccountsResponse(
                         true,
@@ -328,6 +401,28 @@ public class ApiHandlerImpl implements ApiHandler {
         }
     }
 
+    protected String compactDB(Map<String, String> params) throws ApiHandlerException {
+        String name = params.get("name");
+
+        List<DBName> names;
+        if (name == null) {
+            names = Arrays.asList(DBName.values());
+        } else {
+            try {
+                names = Collections.singletonList(DBName.valueOf(name.trim().toUpperCase()));
+            } catch (IllegalArgumentException e) {
+                return failure("Invalid parameter: name = " + name);
+            }
+        }
+
+        // compaction may take minutes, so it runs in the background
+        if (!kernel.compactDB(names)) {
+            return failure("Database compaction is already running, or the node is shutting down");
+        }
+
+        return success(new ApiHandlerResponse(true, null));
+    }
+
     protected String doTransaction(Command cmd, Map<String, String> params) throws ApiHandlerException {
         String pFrom = params.get("from");
         String pTo = params.get("to");
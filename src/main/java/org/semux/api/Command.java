@@ -116,6 +116,19 @@ public enum Command {
      */
     GET_VOTES,
 
+    // =======================
+    // database
+    // =======================
+    /**
+     * Get the size and level layout of each database.
+     */
+    GET_DB_STATS,
+
+    /**
+     * Compact one or all databases in the background.
+     */
+    COMPACT_DB,
+
     // =======================
     // wallet (auth required)
     // =======================
@@ -0,0 +1,105 @@
+/**
+ * Copyright (c) 2017 The Semux Developers
+ *
+ * Distributed under the MIT software license, see the accompanying file
+ * LICENSE or https://opensource.org/licenses/mit-license.php
+ */
+package org.semux.api.response;
+
+import java.util.List;
+import java.util.Map;
+
+import org.semux.db.DBStats;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+
+public class GetDbStatsResponse extends ApiHandlerResponse {
+
+    @JsonProperty("result")
+    public final Map<String, Result> stats;
+
+    @JsonProperty("caches")
+    public final Map<String, CacheResult> caches;
+
+    public GetDbStatsResponse(
+            @JsonProperty("success") Boolean success,
+            @JsonProperty("result") Map<String, Result> stats,
+            @JsonProperty("caches") Map<String, CacheResult> caches) {
+        super(success, null);
+        this.stats = stats;
+        this.caches = caches;
+    }
+
+    public static class Result {
+
+        @JsonProperty("approximateSize")
+        public final Long approximateSize;
+
+        @JsonProperty("levelFiles")
+        public final List<Integer> levelFiles;
+
+        @JsonProperty("levelSizes")
+        public final List<Long> levelSizes;
+
+        @JsonProperty("readAmplification")
+        public final Integer readAmplification;
+
+        @JsonProperty("writeAmplification")
+        public final Double writeAmplification;
+
+        public Result(
+                @JsonProperty("approximateSize") Long approximateSize,
+                @JsonProperty("levelFiles") List<Integer> levelFiles,
+                @JsonProperty("levelSizes") List<Long> levelSizes,
+                @JsonProperty("readAmplification") Integer readAmplification,
+                @JsonProperty("writeAmplification") Double writeAmplification) {
+            this.approximateSize = approximateSize;
+            this.levelFiles = levelFiles;
+            this.levelSizes = levelSizes;
+            this.readAmplification = readAmplification;
+            this.writeAmplification = writeAmplification;
+        }
+
+        public Result(DBStats stats) {
+            this(stats.getApproximateSize(),
+                    stats.getLevelFiles(),
+                    stats.getLevelSizes(),
+                    stats.getReadAmplification(),
+                    stats.getWriteAmplification());
+        }
+    }
+
+    public static class CacheResult {
+
+        @JsonProperty("hitCount")
+        public final Long hitCount;
+
+        @JsonProperty("missCount")
+        public final Long missCount;
+
+        @JsonProperty("hitRate")
+        public final Double hitRate;
+
+        @JsonProperty("evictionCount")
+        public final Long evictionCount;
+
+        public CacheResult(
+                @JsonProperty("hitCount") Long hitCount,
+                @JsonProperty("missCount") Long missCount,
+                @JsonProperty("hitRate") Double hitRate,
+                @JsonProperty("evictionCount") Long evictionCount) {
+            this.hitCount = hitCount;
+            this.missCount = missCount;
+            this.hitRate = hitRate;
+            this.evictionCount = evictionCount;
+        }
+
+        public CacheResult(CacheStats stats) {
+            this(stats.hitCount(),
+                    stats.missCount(),
+                    stats.hitRate(),
+                    stats.evictionCount());
+        }
+    }
+}
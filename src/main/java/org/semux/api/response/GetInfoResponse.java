@@ -36,6 +36,9 @@ public class GetInfoResponse extends ApiHandlerResponse {
         @JsonProperty("latestBlockHash")
         public final String latestBlockHash;
 
+        @JsonProperty("indexedBlockNumber")
+        public final Number indexedBlockNumber;
+
         @JsonProperty("activePeers")
         public final Number activePeers;
 
@@ -47,12 +50,14 @@ public class GetInfoResponse extends ApiHandlerResponse {
                 @JsonProperty("coinbase") String coinbase,
                 @JsonProperty("latestBlockNumber") Number latestBlockNumber,
                 @JsonProperty("latestBlockHash") String latestBlockHash,
+                @JsonProperty("indexedBlockNumber") Number indexedBlockNumber,
                 @JsonProperty("activePeers") Number activePeers,
                 @JsonProperty("pendingTransactions") Number pendingTransactions) {
             this.clientId = clientId;
             this.coinbase = coinbase;
             this.latestBlockNumber = latestBlockNumber;
             this.latestBlockHash = latestBlockHash;
+            this.indexedBlockNumber = indexedBlockNumber;
             this.activePeers = activePeers;
             this.pendingTransactions = pendingTransactions;
         }
@@ -63,6 +68,7 @@ public class GetInfoResponse extends ApiHandlerResponse {
                     Hex.PREF + kernel.getCoinbase(),
                     kernel.getBlockchain().getLatestBlockNumber(),
                     Hex.encode0x(kernel.getBlockchain().getLatestBlockHash()),
+                    kernel.getBlockchain().getIndexedBlockNumber(),
                     kernel.getChannelManager().getActivePeers().size(),
                     kernel.getPendingManager().getTransactions().size());
         }
@@ -26,7 +26,19 @@ public enum CLIOptions {
 
     IMPORT_PRIVATE_KEY("importprivatekey"),
 
-    NETWORK("network");
+    NETWORK("network"),
+
+    DB_STATS("dbstats"),
+
+    COMPACT_DB("compactdb"),
+
+    EXPORT_SNAPSHOT("exportsnapshot"),
+
+    IMPORT_SNAPSHOT("importsnapshot"),
+
+    SNAPSHOT_HASH("snapshothash"),
+
+    SNAPSHOT_STATE_HASH("snapshotstatehash");
 
     private final String name;
 
@@ -7,6 +7,7 @@
 package org.semux.cli;
 
 import java.io.File;
+import java.io.IOException;
 import java.security.spec.InvalidKeySpecException;
 import java.util.List;
 
@@ -20,10 +21,16 @@ import org.semux.Kernel;
 import org.semux.Launcher;
 import org.semux.config.Config;
 import org.semux.config.Constants;
+import org.semux.core.StateSnapshot;
 import org.semux.core.Wallet;
 import org.semux.core.WalletLockedException;
+import org.semux.core.exception.BlockchainException;
 import org.semux.crypto.EdDSA;
 import org.semux.crypto.Hex;
+import org.semux.db.DBFactory;
+import org.semux.db.DBName;
+import org.semux.db.DBStats;
+import org.semux.db.LevelDB.LevelDBFactory;
 import org.semux.log.LoggerConfigurator;
 import org.semux.message.CLIMessages;
 import org.semux.util.SystemUtil;
@@ -93,6 +100,34 @@ public class SemuxCLI extends Launcher {
                 .desc(CLIMessages.get("ImportHexKey")).hasArg(true).optionalArg(false).argName("key").type(String.class)
                 .build();
         addOption(importPrivateKeyOption);
+
+        Option dbStatsOption = Option.builder().longOpt(CLIOptions.DB_STATS.toString())
+                .desc(CLIMessages.get("PrintDBStats")).build();
+        addOption(dbStatsOption);
+
+        Option compactDbOption = Option.builder().longOpt(CLIOptions.COMPACT_DB.toString())
+                .desc(CLIMessages.get("CompactDB")).build();
+        addOption(compactDbOption);
+
+        Option exportSnapshotOption = Option.builder().longOpt(CLIOptions.EXPORT_SNAPSHOT.toString())
+                .desc(CLIMessages.get("ExportSnapshot")).hasArg(true).optionalArg(false).argName("file")
+                .type(String.class).build();
+        addOption(exportSnapshotOption);
+
+        Option importSnapshotOption = Option.builder().longOpt(CLIOptions.IMPORT_SNAPSHOT.toString())
+                .desc(CLIMessages.get("ImportSnapshot")).hasArg(true).optionalArg(false).argName("file")
+                .type(String.class).build();
+        addOption(importSnapshotOption);
+
+        Option snapshotHashOption = Option.builder().longOpt(CLIOptions.SNAPSHOT_HASH.toString())
+                .desc(CLIMessages.get("SpecifySnapshotHash")).hasArg(true).optionalArg(false).argName("hash")
+                .type(String.class).build();
+        addOption(snapshotHashOption);
+
+        Option snapshotStateHashOption = Option.builder().longOpt(CLIOptions.SNAPSHOT_STATE_HASH.toString())
+                .desc(CLIMessages.get("SpecifySnapshotStateHash")).hasArg(true).optionalArg(false).argName("hash")
+                .type(String.class).build();
+        addOption(snapshotStateHashOption);
     }
 
     public void start(String[] args) throws ParseException {
@@ -132,6 +167,16 @@ public class SemuxCLI extends Launcher {
             dumpPrivateKey(commandLine.getOptionValue(CLIOptions.DUMP_PRIVATE_KEY.toString()).trim());
         } else if (commandLine.hasOption(CLIOptions.IMPORT_PRIVATE_KEY.toString())) {
             importPrivateKey(commandLine.getOptionValue(CLIOptions.IMPORT_PRIVATE_KEY.toString()).trim());
+        } else if (commandLine.hasOption(CLIOptions.DB_STATS.toString())) {
+            printDBStats();
+        } else if (commandLine.hasOption(CLIOptions.COMPACT_DB.toString())) {
+            compactDB();
+        } else if (commandLine.hasOption(CLIOptions.EXPORT_SNAPSHOT.toString())) {
+            exportSnapshot(commandLine.getOptionValue(CLIOptions.EXPORT_SNAPSHOT.toString()).trim());
+        } else if (commandLine.hasOption(CLIOptions.IMPORT_SNAPSHOT.toString())) {
+            importSnapshot(commandLine.getOptionValue(CLIOptions.IMPORT_SNAPSHOT.toString()).trim(),
+                    commandLine.getOptionValue(CLIOptions.SNAPSHOT_HASH.toString()),
+                    commandLine.getOptionValue(CLIOptions.SNAPSHOT_STATE_HASH.toString()));
         } else {
             start();
         }
@@ -175,6 +220,66 @@ public class SemuxCLI extends Launcher {
         return kernel;
     }
 
+    protected void printDBStats() {
+        DBFactory factory = new LevelDBFactory(getConfig());
+        try {
+            for (DBName name : DBName.values()) {
+                DBStats stats = DBStats.of(factory.getDB(name));
+                logger.info(CLIMessages.get("DBStatsItem", name, stats.getApproximateSize(), stats.getLevelFiles(),
+                        stats.getReadAmplification(), stats.getWriteAmplification()));
+            }
+        } finally {
+            factory.close();
+        }
+    }
+
+    protected void compactDB() {
+        DBFactory factory = new LevelDBFactory(getConfig());
+        try {
+            for (DBName name : DBName.values()) {
+                long t1 = System.currentTimeMillis();
+                factory.getDB(name).compactRange(null, null);
+                logger.info(CLIMessages.get("DBCompacted", name, System.currentTimeMillis() - t1));
+            }
+        } finally {
+            factory.close();
+        }
+    }
+
+    protected void exportSnapshot(String file) {
+        DBFactory factory = new LevelDBFactory(getConfig());
+        try {
+            StateSnapshot snapshot = StateSnapshot.export(getConfig(), factory, new File(file));
+            logger.info(CLIMessages.get("SnapshotExported", snapshot.getBlock().getNumber(),
+                    Hex.encode(snapshot.getBlock().getHash()), Hex.encode(snapshot.getStateHash()), file));
+        } catch (IOException e) {
+            logger.error(CLIMessages.get("SnapshotFailed", e.getMessage()));
+            SystemUtil.exit(1);
+        } finally {
+            factory.close();
+        }
+    }
+
+    protected void importSnapshot(String file, String hash, String stateHash) {
+        if (hash == null || stateHash == null) {
+            logger.error(CLIMessages.get("SnapshotHashRequired"));
+            SystemUtil.exit(1);
+            return;
+        }
+
+        DBFactory factory = new LevelDBFactory(getConfig());
+        try {
+            StateSnapshot snapshot = StateSnapshot.importTo(factory, new File(file), Hex.parse(hash.trim()),
+                    Hex.parse(stateHash.trim()));
+            logger.info(CLIMessages.get("SnapshotImported", snapshot.getBlock().getNumber()));
+        } catch (IOException | BlockchainException e) {
+            logger.error(CLIMessages.get("SnapshotFailed", e.getMessage()));
+            SystemUtil.exit(1);
+        } finally {
+            factory.close();
+        }
+    }
+
     protected void createAccount() {
         Wallet wallet = loadAndUnlockWallet();
 
@@ -11,14 +11,20 @@ import java.io.FileInputStream;
 import java.net.InetAddress;
 import java.net.InetSocketAddress;
 import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.EnumSet;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.Properties;
 import java.util.Set;
 
+import org.iq80.leveldb.CompressionType;
 import org.semux.core.Unit;
 import org.semux.crypto.Hash;
+import org.semux.db.DBName;
+import org.semux.db.LevelDBProfile;
 import org.semux.net.msg.MessageCode;
 import org.semux.util.Bytes;
 import org.semux.util.StringUtil;
@@ -89,6 +95,21 @@ public abstract class AbstractConfig implements Config {
     protected long bftCommitTimeout = 3000L;
     protected long bftFinalizeTimeout = 3000L;
 
+    // =========================
+    // Sync
+    // =========================
+    protected boolean syncHeaderFirst = false;
+
+    // =========================
+    // Database
+    // =========================
+    protected Set<DBName> dbSegmented = EnumSet.noneOf(DBName.class);
+    protected Map<DBName, Long> dbCacheSize = defaultDbCacheSize();
+    protected Map<DBName, LevelDBProfile> dbProfile = defaultDbProfile();
+    protected long dbPruneDepth = 0;
+    protected long dbDecodedCacheSize = 32L * 1024 * 1024;
+    protected boolean dbIndexTransactions = true;
+
     // =========================
     // Virtual machine
     // =========================
@@ -303,6 +324,41 @@ public abstract class AbstractConfig implements Config {
         return bftFinalizeTimeout;
     }
 
+    @Override
+    public boolean syncHeaderFirst() {
+        return syncHeaderFirst;
+    }
+
+    @Override
+    public Set<DBName> dbSegmented() {
+        return dbSegmented;
+    }
+
+    @Override
+    public long dbCacheSize(DBName name) {
+        return dbCacheSize.getOrDefault(name, 0L);
+    }
+
+    @Override
+    public LevelDBProfile dbProfile(DBName name) {
+        return dbProfile.get(name);
+    }
+
+    @Override
+    public long dbPruneDepth() {
+        return dbPruneDepth;
+    }
+
+    @Override
+    public long dbDecodedCacheSize() {
+        return dbDecodedCacheSize;
+    }
+
+    @Override
+    public boolean dbIndexTransactions() {
+        return dbIndexTransactions;
+    }
+
     @Override
     public boolean vmEnabled() {
         return vmEnabled;
@@ -318,6 +374,67 @@ public abstract class AbstractConfig implements Config {
         return vmInitHeapSize;
     }
 
+    private static Map<DBName, Long> defaultDbCacheSize() {
+        Map<DBName, Long> map = new EnumMap<>(DBName.class);
+        map.put(DBName.INDEX, 16L * 1024 * 1024);
+        map.put(DBName.BLOCK, 16L * 1024 * 1024);
+        map.put(DBName.ACCOUNT, 16L * 1024 * 1024);
+        map.put(DBName.DELEGATE, 4L * 1024 * 1024);
+        map.put(DBName.VOTE, 4L * 1024 * 1024);
+        return map;
+    }
+
+    private static Map<DBName, LevelDBProfile> defaultDbProfile() {
+        Map<DBName, LevelDBProfile> map = new EnumMap<>(DBName.class);
+        for (DBName name : DBName.values()) {
+            map.put(name, LevelDBProfile.defaultOf(name));
+        }
+        return map;
+    }
+
+    /**
+     * Applies a <code>db.[option].[name]</code> property to the LevelDB profile
+     * of a database.
+     * 
+     * @param key
+     * @param value
+     * @return whether the property is a profile option
+     */
+    private boolean setDbProfileOption(String key, String value) {
+        String[] tokens = key.split("\\.");
+        if (tokens.length != 3 || !tokens[0].equals("db")) {
+            return false;
+        }
+
+        LevelDBProfile profile;
+        try {
+            profile = dbProfile.get(DBName.valueOf(tokens[2].toUpperCase()));
+        } catch (IllegalArgumentException e) {
+            logger.error("Unsupported option: {} = {}", key, value);
+            return true;
+        }
+
+        switch (tokens[1]) {
+        case "blockSize":
+            profile.setBlockSize(Integer.parseInt(value));
+            return true;
+        case "blockCacheSize":
+            profile.setBlockCacheSize(Long.parseLong(value));
+            return true;
+        case "writeBufferSize":
+            profile.setWriteBufferSize(Integer.parseInt(value));
+            return true;
+        case "compression":
+            profile.setCompression(CompressionType.valueOf(value.trim().toUpperCase()));
+            return true;
+        case "verifyChecksums":
+            profile.setVerifyChecksums(Boolean.parseBoolean(value));
+            return true;
+        default:
+            return false;
+        }
+    }
+
     protected void init() {
         File f = new File(dataDir, Constants.CONFIG_DIR + File.separator + CONFIG_FILE);
         Properties props = new Properties();
@@ -381,11 +498,47 @@ public abstract class AbstractConfig implements Config {
                 case "api.password":
                     apiPassword = props.getProperty(name);
                     break;
+
+                case "sync.headerFirst":
+                    syncHeaderFirst = Boolean.parseBoolean(props.getProperty(name));
+                    break;
+                case "db.segmented":
+                    for (String db : props.getProperty(name).split(",")) {
+                        if (!db.trim().isEmpty()) {
+                            dbSegmented.add(DBName.valueOf(db.trim().toUpperCase()));
+                        }
+                    }
+                    break;
+                case "db.cacheSize.index":
+                case "db.cacheSize.block":
+                case "db.cacheSize.account":
+                case "db.cacheSize.delegate":
+                case "db.cacheSize.vote":
+                    DBName db = DBName.valueOf(name.substring("db.cacheSize.".length()).toUpperCase());
+                    dbCacheSize.put(db, Long.parseLong(props.getProperty(name)));
+                    break;
+                case "db.pruneDepth":
+                    dbPruneDepth = Long.parseLong(props.getProperty(name));
+                    break;
+                case "db.decodedCacheSize":
+                    dbDecodedCacheSize = Long.parseLong(props.getProperty(name));
+                    break;
+                case "db.indexTransactions":
+                    dbIndexTransactions = Boolean.parseBoolean(props.getProperty(name));
+                    break;
                 default:
-                    logger.error("Unsupported option: {} = {}", name, props.getProperty(name));
+                    if (!setDbProfileOption(name, props.getProperty(name))) {
+                        logger.error("Unsupported option: {} = {}", name, props.getProperty(name));
+                    }
                     break;
                 }
             }
+
+            // segments are never compacted, so pruning them reclaims no space
+            if (dbPruneDepth > 0 && !dbSegmented.isEmpty()) {
+                logger.error("Pruning is not supported along with segmented databases, db.pruneDepth is ignored");
+                dbPruneDepth = 0;
+            }
         } catch (Exception e) {
             logger.error("Failed to load config file: {}", f, e);
         }
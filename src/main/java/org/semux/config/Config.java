@@ -12,6 +12,8 @@ import java.util.List;
 import java.util.Optional;
 import java.util.Set;
 
+import org.semux.db.DBName;
+import org.semux.db.LevelDBProfile;
 import org.semux.net.msg.MessageCode;
 
 /**
@@ -294,6 +296,71 @@ public interface Config {
      */
     long bftFinalizeTimeout();
 
+    // =========================
+    // Sync
+    // =========================
+
+    /**
+     * Returns whether to sync the header chain ahead of the block bodies.
+     * 
+     * @return
+     */
+    boolean syncHeaderFirst();
+
+    // =========================
+    // Database
+    // =========================
+
+    /**
+     * Returns the databases stored in append-only segment files rather than
+     * LevelDB. Segments are never compacted, so no block is pruned if any
+     * database is segmented.
+     * 
+     * @return
+     */
+    Set<DBName> dbSegmented();
+
+    /**
+     * Returns the size of the row cache of a database in bytes, or zero if the
+     * database is not cached.
+     * 
+     * @param name
+     * @return
+     */
+    long dbCacheSize(DBName name);
+
+    /**
+     * Returns the LevelDB tuning profile of a database.
+     * 
+     * @param name
+     * @return
+     */
+    LevelDBProfile dbProfile(DBName name);
+
+    /**
+     * Returns the number of recent blocks whose transactions and results are
+     * kept, or zero if no block is pruned.
+     * 
+     * @return
+     */
+    long dbPruneDepth();
+
+    /**
+     * Returns the size of the cache of decoded blocks in bytes. Block headers
+     * are cached in an eighth of that size.
+     * 
+     * @return
+     */
+    long dbDecodedCacheSize();
+
+    /**
+     * Returns whether the transactions are indexed by hash and by account. The
+     * indexes are built in the background, behind the committed blocks.
+     * 
+     * @return
+     */
+    boolean dbIndexTransactions();
+
     // =========================
     // Virtual machine
     // =========================
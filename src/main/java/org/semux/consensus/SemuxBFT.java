@@ -7,6 +7,7 @@
 package org.semux.consensus;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
@@ -29,6 +30,7 @@ import org.semux.core.SyncManager;
 import org.semux.core.Transaction;
 import org.semux.core.TransactionExecutor;
 import org.semux.core.TransactionResult;
+import org.semux.core.ValidatorSet;
 import org.semux.core.state.AccountState;
 import org.semux.core.state.DelegateState;
 import org.semux.crypto.EdDSA;
@@ -80,8 +82,9 @@ public class SemuxBFT implements Consensus {
     private Proof proof;
     private Proposal proposal;
 
-    private Map<ByteArray, Block> validBlocks = new LRUMap<>(8);
+    private Map<ByteArray, ValidBlock> validBlocks = new LRUMap<>(8);
 
+    private volatile ValidatorSet validatorSet;
     private volatile List<String> validators;
     private volatile List<Channel> activeValidators;
     private volatile long lastUpdate;
@@ -379,7 +382,7 @@ public class SemuxBFT implements Consensus {
         Optional<byte[]> blockHash = precommitVotes.anyApproved();
         if (blockHash.isPresent() && validBlocks.containsKey(ByteArray.of(blockHash.get()))) {
             // [1] get the raw block
-            Block block = validBlocks.get(ByteArray.of(blockHash.get()));
+            Block block = validBlocks.get(ByteArray.of(blockHash.get())).block;
 
             // [2] update view and votes
             List<Signature> votes = new ArrayList<>();
@@ -618,7 +621,9 @@ public class SemuxBFT implements Consensus {
      * Update the validator sets.
      */
     protected void updateValidators() {
-        validators = chain.getValidators();
+        // the set is immutable, and replaced only when the validators change
+        validatorSet = chain.getValidatorSet();
+        validators = validatorSet.getValidators();
         activeValidators = channelMgr.getActiveChannels(validators);
         lastUpdate = System.currentTimeMillis();
     }
@@ -629,7 +634,7 @@ public class SemuxBFT implements Consensus {
      * @return
      */
     protected boolean isValidator() {
-        return validators.contains(coinbase.toAddressString());
+        return validatorSet.contains(coinbase.toAddress());
     }
 
     /**
@@ -664,7 +669,7 @@ public class SemuxBFT implements Consensus {
      * @return
      */
     protected boolean isFromValidator(Signature sig) {
-        return validators.contains(Hex.encode(Hash.h160(sig.getPublicKey())));
+        return validatorSet.contains(Hash.h160(sig.getPublicKey()));
     }
 
     /**
@@ -744,7 +749,7 @@ public class SemuxBFT implements Consensus {
         TransactionExecutor exec = new TransactionExecutor(config);
 
         // [3] evaluate transactions
-        List<TransactionResult> results = exec.execute(transactions, as, ds);
+        List<TransactionResult> results = exec.executeParallel(transactions, as, ds);
         if (!Block.validateResults(header, results)) {
             logger.debug("Invalid transactions");
             return false;
@@ -753,8 +758,9 @@ public class SemuxBFT implements Consensus {
         long t2 = System.currentTimeMillis();
         logger.debug("Block validation: # txs = {}, time = {} ms", transactions.size(), t2 - t1);
 
+        // the state updates are kept, to be committed if the block is finalized
         Block block = new Block(header, transactions, results);
-        validBlocks.put(ByteArray.of(block.getHash()), block);
+        validBlocks.put(ByteArray.of(block.getHash()), new ValidBlock(block, latest.getHash(), as, ds));
         return true;
     }
 
@@ -778,15 +784,25 @@ public class SemuxBFT implements Consensus {
 
         // [2] check transactions and results, skipped
 
-        AccountState as = chain.getAccountState().track();
-        DelegateState ds = chain.getDelegateState().track();
-        TransactionExecutor exec = new TransactionExecutor(config);
+        // [3] evaluate all transactions, unless already done on the same parent;
+        // the cached updates are taken out before the reward is added to them,
+        // so a block applied again is executed afresh and rewarded once
+        AccountState as;
+        DelegateState ds;
+        ValidBlock valid = validBlocks.remove(ByteArray.of(block.getHash()));
+        if (valid != null && Arrays.equals(valid.parentHash, chain.getLatestBlockHash())) {
+            as = valid.accountState;
+            ds = valid.delegateState;
+        } else {
+            as = chain.getAccountState().track();
+            ds = chain.getDelegateState().track();
+            TransactionExecutor exec = new TransactionExecutor(config);
 
-        // [3] evaluate all transactions
-        List<TransactionResult> results = exec.execute(transactions, as, ds);
-        if (!Block.validateResults(header, results)) {
-            logger.debug("Invalid transactions");
-            return;
+            List<TransactionResult> results = exec.executeParallel(transactions, as, ds);
+            if (!Block.validateResults(header, results)) {
+                logger.debug("Invalid transactions");
+                return;
+            }
         }
 
         // [4] evaluate votes, skipped
@@ -800,18 +816,14 @@ public class SemuxBFT implements Consensus {
             as.adjustAvailable(block.getCoinbase(), reward);
         }
 
-        // [6] commit the updates
-        as.commit();
-        ds.commit();
-
         WriteLock lock = kernel.getStateLock().writeLock();
         lock.lock();
         try {
-            // [7] flush state to disk
-            chain.getAccountState().commit();
-            chain.getDelegateState().commit();
+            // [6] commit the updates
+            as.commit();
+            ds.commit();
 
-            // [8] add block to chain
+            // [7] flush state and add block to chain
             chain.addBlock(block);
         } finally {
             lock.unlock();
@@ -822,6 +834,24 @@ public class SemuxBFT implements Consensus {
         NEW_HEIGHT, PROPOSE, VALIDATE, PRE_COMMIT, COMMIT, FINALIZE
     }
 
+    /**
+     * A validated block, along with the state updates of its transactions and
+     * the hash of the block they were executed on.
+     */
+    private static class ValidBlock {
+        private Block block;
+        private byte[] parentHash;
+        private AccountState accountState;
+        private DelegateState delegateState;
+
+        ValidBlock(Block block, byte[] parentHash, AccountState accountState, DelegateState delegateState) {
+            this.block = block;
+            this.parentHash = parentHash;
+            this.accountState = accountState;
+            this.delegateState = delegateState;
+        }
+    }
+
     /**
      * Timer used by consensus. It's designed to be single timeout; previous timeout
      * get cleared when new one being added.
@@ -9,6 +9,9 @@ package org.semux.consensus;
 import java.net.InetSocketAddress;
 import java.time.Duration;
 import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -18,10 +21,12 @@ import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Random;
 import java.util.Set;
+import java.util.TreeMap;
 import java.util.TreeSet;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
-import java.util.concurrent.ScheduledExecutorService;
-import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.Future;
 import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
@@ -38,6 +43,7 @@ import org.semux.core.SyncManager;
 import org.semux.core.Transaction;
 import org.semux.core.TransactionExecutor;
 import org.semux.core.TransactionResult;
+import org.semux.core.ValidatorSet;
 import org.semux.core.state.AccountState;
 import org.semux.core.state.DelegateState;
 import org.semux.crypto.EdDSA;
@@ -45,14 +51,22 @@ import org.semux.crypto.EdDSA.Signature;
 import org.semux.crypto.Hex;
 import org.semux.net.Channel;
 import org.semux.net.ChannelManager;
+import org.semux.net.Peer;
 import org.semux.net.msg.Message;
 import org.semux.net.msg.ReasonCode;
+import org.semux.net.msg.consensus.BlockHeaderMessage;
 import org.semux.net.msg.consensus.BlockMessage;
+import org.semux.net.msg.consensus.BlocksMessage;
+import org.semux.net.msg.consensus.GetBlockHeaderMessage;
 import org.semux.net.msg.consensus.GetBlockMessage;
+import org.semux.net.msg.consensus.GetBlocksMessage;
+import org.semux.util.MerkleUtil;
 import org.semux.util.TimeUtil;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import io.netty.util.HashedWheelTimer;
+
 public class SemuxSync implements SyncManager {
 
     private static final Logger logger = LoggerFactory.getLogger(SemuxSync.class);
@@ -66,12 +80,55 @@ public class SemuxSync implements SyncManager {
         }
     };
 
+    private static final ThreadFactory validateFactory = new ThreadFactory() {
+        private AtomicInteger cnt = new AtomicInteger(0);
+
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread t = new Thread(r, "sync-validate-" + cnt.getAndIncrement());
+            t.setDaemon(true);
+            return t;
+        }
+    };
+
+    /**
+     * Timer of the download deadlines.
+     */
+    private static final HashedWheelTimer timer = new HashedWheelTimer(r -> {
+        Thread t = new Thread(r, "sync-timer");
+        t.setDaemon(true);
+        return t;
+    }, 50, TimeUnit.MILLISECONDS);
+
+    private static final int CORES = Runtime.getRuntime().availableProcessors();
+
+    /**
+     * Workers of the checks which do not depend on the chain state.
+     */
+    private static final ExecutorService validator = Executors.newFixedThreadPool(CORES, validateFactory);
+
     private static final long MAX_DOWNLOAD_TIME = 10L * 1000L; // 30 seconds
 
-    private static final int MAX_UNFINISHED_JOBS = 16;
+    private static final long MIN_DOWNLOAD_TIME = 1000L;
+
+    private static final long MAX_IDLE_TIME = 500L;
+
+    private static final int INITIAL_WINDOW = 8;
+
+    private static final int WINDOW_STEP = 4;
+
+    private static final int MAX_WINDOW = 128;
 
     private static final int MAX_PENDING_BLOCKS = 512;
 
+    private static final int MAX_HEADERS_PER_REQUEST = 1024;
+
+    private static final int MAX_HEADERS_AHEAD = 8192;
+
+    private static final int MAX_VALIDATING_BLOCKS = 4 * CORES;
+
+    private static final int MAX_HEADER_MISMATCHES = 2;
+
     private static final Random random = new Random();
 
     private Kernel kernel;
@@ -82,11 +139,37 @@ public class SemuxSync implements SyncManager {
 
     // task queues
     private TreeSet<Long> toDownload = new TreeSet<>();
-    private Map<Long, Long> toComplete = new HashMap<>();
+    private Map<Long, Range> toComplete = new HashMap<>();
     private TreeSet<Pair<Block, Channel>> toProcess = new TreeSet<>(
             Comparator.comparingLong(o -> o.getKey().getNumber()));
+    private Map<Long, Pair<Block, Future<Boolean>>> toValidate = new HashMap<>();
     private long target;
     private final Object lock = new Object();
+    private boolean hasEvents;
+
+    // channels which do not answer range requests, and which have answered one
+    private Set<Long> singleBlockChannels = new HashSet<>();
+    private Set<Long> rangeChannels = new HashSet<>();
+
+    // number of blocks to request from each channel at a time
+    private Map<Long, Integer> windows = new HashMap<>();
+
+    // header chain, validated ahead of the bodies
+    private boolean headerFirst;
+    private TreeMap<Long, BlockHeader> headers = new TreeMap<>();
+    private BlockHeader headerTip;
+
+    // channels which supplied the header chain, by the first header of each batch
+    private TreeMap<Long, Channel> headerSources = new TreeMap<>();
+
+    // channels which sent a block not matching the header chain, by block number
+    private Map<Long, Set<Long>> mismatches = new HashMap<>();
+    private long headerChannel;
+    private Range headerRange;
+
+    // channels which have answered a header request, and which have let one expire
+    private Set<Long> headerChannels = new HashSet<>();
+    private Set<Long> noHeaderChannels = new HashSet<>();
 
     private final AtomicBoolean isRunning = new AtomicBoolean(false);
 
@@ -110,6 +193,19 @@ public class SemuxSync implements SyncManager {
                 toDownload.clear();
                 toComplete.clear();
                 toProcess.clear();
+                toValidate.clear();
+                singleBlockChannels.clear();
+                rangeChannels.clear();
+                windows.clear();
+
+                headerFirst = config.syncHeaderFirst();
+                headers.clear();
+                headerTip = chain.getLatestBlock().getHeader();
+                headerRange = null;
+                headerSources.clear();
+                mismatches.clear();
+                headerChannels.clear();
+                noHeaderChannels.clear();
 
                 target = targetHeight;
                 for (long i = chain.getLatestBlockNumber() + 1; i < target; i++) {
@@ -118,9 +214,9 @@ public class SemuxSync implements SyncManager {
             }
 
             // [2] start tasks
-            ScheduledExecutorService exec = Executors.newSingleThreadScheduledExecutor(factory);
-            ScheduledFuture<?> download = exec.scheduleAtFixedRate(this::download, 0, 5, TimeUnit.MILLISECONDS);
-            ScheduledFuture<?> process = exec.scheduleAtFixedRate(this::process, 0, 5, TimeUnit.MILLISECONDS);
+            ExecutorService exec = Executors.newFixedThreadPool(2, factory);
+            exec.submit(this::downloadLoop);
+            exec.submit(this::processLoop);
 
             // [3] wait until the sync is done
             while (isRunning.get()) {
@@ -135,9 +231,8 @@ public class SemuxSync implements SyncManager {
                 }
             }
 
-            // [4] cancel tasks
-            download.cancel(true);
-            process.cancel(false);
+            // [4] wake up tasks, which quit once the sync is stopped
+            signal();
 
             // [5] shutdown executor
             exec.shutdown();
@@ -158,6 +253,62 @@ public class SemuxSync implements SyncManager {
             synchronized (isRunning) {
                 isRunning.notifyAll();
             }
+            signal();
+        }
+    }
+
+    /**
+     * Wakes up the tasks after something they wait for happened: blocks or
+     * headers arrived, a block was applied, or a download timed out.
+     */
+    private void signal() {
+        synchronized (lock) {
+            hasEvents = true;
+            lock.notifyAll();
+        }
+    }
+
+    /**
+     * Requests blocks whenever something happens. New channels are noticed
+     * within {@link #MAX_IDLE_TIME}.
+     */
+    private void downloadLoop() {
+        while (isRunning()) {
+            download();
+
+            synchronized (lock) {
+                try {
+                    if (!hasEvents && isRunning()) {
+                        lock.wait(MAX_IDLE_TIME);
+                    }
+                    hasEvents = false;
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * Applies blocks whenever the next one is available.
+     */
+    private void processLoop() {
+        while (isRunning()) {
+            process();
+
+            long latest = chain.getLatestBlockNumber();
+            synchronized (lock) {
+                try {
+                    while (isRunning()
+                            && (toProcess.isEmpty() || toProcess.first().getKey().getNumber() > latest + 1)) {
+                        lock.wait();
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
         }
     }
 
@@ -176,17 +327,17 @@ public class SemuxSync implements SyncManager {
         case BLOCK: {
             BlockMessage blockMsg = (BlockMessage) msg;
             Block block = blockMsg.getBlock();
-            if (block != null) {
-                synchronized (lock) {
-                    toDownload.remove(block.getNumber());
-                    toComplete.remove(block.getNumber());
-                    toProcess.add(Pair.of(block, channel));
-                }
-            }
+            onBlocks(channel, (block == null) ? Collections.emptyList() : Collections.singletonList(block));
+            break;
+        }
+        case BLOCKS: {
+            BlocksMessage blocksMsg = (BlocksMessage) msg;
+            onBlocks(channel, blocksMsg.getBlocks());
             break;
         }
         case BLOCK_HEADER: {
-            // TODO implement block header
+            BlockHeaderMessage headerMsg = (BlockHeaderMessage) msg;
+            onHeaders(channel, headerMsg.getHeaders());
             break;
         }
         default: {
@@ -195,110 +346,452 @@ public class SemuxSync implements SyncManager {
         }
     }
 
+    /**
+     * Queues the blocks received from a channel, and the blocks it was asked for
+     * but did not send for downloading again.
+     * 
+     * @param channel
+     * @param blocks
+     */
+    private void onBlocks(Channel channel, List<Block> blocks) {
+        Channel badHeaderSource = null;
+
+        synchronized (lock) {
+            Set<Long> received = new HashSet<>();
+            for (Block block : blocks) {
+                // the block peer is not blamed, as the header chain may be the fake one
+                if (headerFirst && headers.containsKey(block.getNumber()) && !matchesHeader(block)) {
+                    Channel source = onMismatch(channel, block.getNumber());
+                    badHeaderSource = (source != null) ? source : badHeaderSource;
+                    continue;
+                }
+
+                toDownload.remove(block.getNumber());
+                toProcess.add(Pair.of(block, channel));
+                received.add(block.getNumber());
+            }
+
+            Range range = toComplete.remove(channel.getId());
+            if (range != null) {
+                // the blocks of a re-assigned range have been queued already
+                for (long n = range.from; n < range.to && !range.isReassigned; n++) {
+                    if (!received.contains(n)) {
+                        toDownload.add(n);
+                    }
+                }
+
+                // update the peer statistics and its window
+                Peer peer = channel.getRemotePeer();
+                if (peer != null) {
+                    peer.updateDownloadRate(received.size(), System.currentTimeMillis() - range.timestamp);
+                }
+                if (range.to - range.from > 1) {
+                    rangeChannels.add(channel.getId());
+                }
+                if (received.size() == range.to - range.from && !range.isReassigned) {
+                    windows.put(channel.getId(), Math.min(getWindow(channel.getId()) + WINDOW_STEP, MAX_WINDOW));
+                } else {
+                    shrinkWindow(channel.getId());
+                }
+            }
+        }
+
+        signal();
+
+        // disconnect the peer which supplied a header chain the blocks do not match
+        if (badHeaderSource != null) {
+            InetSocketAddress addr = badHeaderSource.getRemoteAddress();
+            logger.info("Header chain not matching the blocks from {}:{}", addr.getAddress().getHostAddress(),
+                    addr.getPort());
+            badHeaderSource.getMessageQueue().disconnect(ReasonCode.BAD_PEER);
+        }
+    }
+
+    /**
+     * Records a block not matching the header chain. Once enough channels have
+     * sent such a block, the header chain is dropped from there on.
+     * 
+     * @param channel
+     * @param number
+     * @return the channel which supplied the dropped headers, or null
+     */
+    private Channel onMismatch(Channel channel, long number) {
+        Set<Long> channels = mismatches.computeIfAbsent(number, k -> new HashSet<>());
+        channels.add(channel.getId());
+        logger.debug("Block #{} not matching its header, from channel = {}", number, channel.getId());
+
+        if (channels.size() < MAX_HEADER_MISMATCHES) {
+            return null;
+        }
+
+        Entry<Long, Channel> source = headerSources.floorEntry(number);
+        dropHeaders(number);
+        return (source == null) ? null : source.getValue();
+    }
+
+    /**
+     * Drops the header chain from the given number on.
+     * 
+     * @param number
+     */
+    private void dropHeaders(long number) {
+        headers.tailMap(number, true).clear();
+        headerSources.tailMap(number, true).clear();
+        mismatches.keySet().removeIf(n -> n >= number);
+        headerTip = headers.isEmpty() ? chain.getLatestBlock().getHeader() : headers.lastEntry().getValue();
+        headerRange = null;
+    }
+
+    /**
+     * Checks if a block is the one of the header chain at its number, including
+     * its transactions and results. Blocks beyond the header chain do not match.
+     * 
+     * @param block
+     * @return
+     */
+    private boolean matchesHeader(Block block) {
+        BlockHeader header = headers.get(block.getNumber());
+        return header != null && Arrays.equals(header.getHash(), block.getHash())
+                && Arrays.equals(header.getTransactionsRoot(),
+                        MerkleUtil.computeTransactionsRoot(block.getTransactions()))
+                && Arrays.equals(header.getResultsRoot(), MerkleUtil.computeResultsRoot(block.getResults()));
+    }
+
+    /**
+     * Extends the header chain with the headers received from a channel, which
+     * are validated against it.
+     * 
+     * @param channel
+     * @param list
+     */
+    private void onHeaders(Channel channel, List<BlockHeader> list) {
+        boolean isValid = true;
+
+        synchronized (lock) {
+            if (headerRange == null || headerChannel != channel.getId()) {
+                return;
+            }
+            headerRange = null;
+            headerChannels.add(channel.getId());
+
+            if (!list.isEmpty() && list.get(0).getNumber() == headerTip.getNumber() + 1) {
+                headerSources.put(list.get(0).getNumber(), channel);
+            }
+            for (BlockHeader header : list) {
+                if (header.getNumber() >= target) {
+                    break;
+                }
+                if (!Block.validateHeader(headerTip, header)) {
+                    isValid = false;
+                    break;
+                }
+                headers.put(header.getNumber(), header);
+                headerTip = header;
+            }
+            logger.debug("Header chain extended to #{}", headerTip.getNumber());
+        }
+        signal();
+
+        // disconnect if the peer sends us invalid headers
+        if (!isValid) {
+            InetSocketAddress addr = channel.getRemoteAddress();
+            logger.info("Invalid header from {}:{}", addr.getAddress().getHostAddress(), addr.getPort());
+            channel.getMessageQueue().disconnect(ReasonCode.BAD_PEER);
+        }
+    }
+
+    /**
+     * Requests the next headers from a channel, unless headers are being
+     * downloaded or the header chain is far enough ahead of the blocks. The
+     * channels which have not answered a header request yet are asked for a
+     * single header, the ones which have let a request expire are not asked.
+     * 
+     * @param channels
+     * @param now
+     */
+    private void downloadHeaders(List<Channel> channels, long now) {
+        long from = headerTip.getNumber() + 1;
+        if (headerRange != null || from >= target || from - chain.getLatestBlockNumber() > MAX_HEADERS_AHEAD) {
+            return;
+        }
+
+        List<Channel> candidates = new ArrayList<>(channels);
+        candidates.removeIf(c -> noHeaderChannels.contains(c.getId()));
+        candidates.sort(Comparator.comparing(c -> !headerChannels.contains(c.getId())));
+
+        for (Channel c : candidates) {
+            if (!toComplete.containsKey(c.getId()) && c.getRemotePeer().getLatestBlockNumber() >= from) {
+                int count = headerChannels.contains(c.getId())
+                        ? (int) Math.min(MAX_HEADERS_PER_REQUEST, target - from)
+                        : 1;
+                logger.debug("Request headers [{}, {}) from channel = {}", from, from + count, c.getId());
+                c.getMessageQueue().sendMessage(new GetBlockHeaderMessage(from, count));
+
+                Range range = new Range(from, from + count, now, now + MAX_DOWNLOAD_TIME);
+                headerChannel = c.getId();
+                headerRange = range;
+                timer.newTimeout(t -> {
+                    synchronized (lock) {
+                        if (headerRange == range) {
+                            logger.debug("Downloading of headers [{}, {}) has expired", range.from, range.to);
+                            headerRange = null;
+                            noHeaderChannels.add(c.getId());
+                        }
+                    }
+                    signal();
+                }, MAX_DOWNLOAD_TIME, TimeUnit.MILLISECONDS);
+                return;
+            }
+        }
+    }
+
     private void download() {
         if (!isRunning()) {
             return;
         }
 
-        List<Channel> channels = channelMgr.getIdleChannels();
-        logger.trace("Idle peers = {}", channels.size());
+        // channels with a request of the sync are skipped below, the others get one
+        // even if a request of their own is pending
+        List<Channel> channels = channelMgr.getActiveChannels();
+        logger.trace("Active peers = {}", channels.size());
 
-        // quit if no idle channels.
+        // quit if no active channels.
         if (channels.isEmpty()) {
             return;
         }
 
-        // pick a random channel
-        Channel c = channels.get(random.nextInt(channels.size()));
+        // visit the fastest channels first, most of the time
+        channels = sortByDownloadRate(channels);
 
         synchronized (lock) {
-            // filter all expired tasks
+            // re-assign the tasks holding up the next block, expired ones are handled by the timer
             long now = System.currentTimeMillis();
-            Iterator<Entry<Long, Long>> itr = toComplete.entrySet().iterator();
-            while (itr.hasNext()) {
-                Entry<Long, Long> entry = itr.next();
-
-                if (entry.getValue() + MAX_DOWNLOAD_TIME < now) {
-                    logger.debug("Downloading of block #{} has expired", entry.getKey());
-                    toDownload.add(entry.getKey());
-                    itr.remove();
+            long next = chain.getLatestBlockNumber() + 1;
+            int inFlight = 0;
+            for (Entry<Long, Range> entry : toComplete.entrySet()) {
+                Range range = entry.getValue();
+
+                if (!range.isReassigned && range.from <= next && next < range.to
+                        && (now - range.timestamp) * 2 > range.deadline - range.timestamp) {
+                    logger.debug("Downloading of blocks [{}, {}) is late, re-assigning", range.from, range.to);
+                    for (long n = range.from; n < range.to; n++) {
+                        toDownload.add(n);
+                    }
+                    range.isReassigned = true;
+                    shrinkWindow(entry.getKey());
+                } else if (!range.isReassigned) {
+                    inFlight += range.to - range.from;
                 }
             }
 
-            // quite if no more tasks
-            if (toDownload.isEmpty()) {
-                return;
+            // extend the header chain, and wait for it only if a channel has answered headers
+            boolean hasHeaderChannel = false;
+            if (headerFirst) {
+                downloadHeaders(channels, now);
+                hasHeaderChannel = channels.stream().anyMatch(c -> headerChannels.contains(c.getId()));
             }
-            Long task = toDownload.first();
 
-            // quit if too many unfinished jobs
-            if (toComplete.size() > MAX_UNFINISHED_JOBS) {
-                logger.trace("Max unfinished jobs reached");
-                return;
+            // assign a range of blocks to each channel
+            for (Channel c : channels) {
+                // quite if no more tasks
+                if (toDownload.isEmpty()) {
+                    return;
+                }
+                long from = toDownload.first();
+
+                // quit if too many blocks are pending or requested, unless the next block is missing
+                int budget = MAX_PENDING_BLOCKS - toProcess.size() - inFlight;
+                if (budget <= 0 && from > next) {
+                    logger.trace("Pending block queue is full");
+                    return;
+                }
+
+                // skip channels which are busy or behind, and blocks without headers
+                long latest = c.getRemotePeer().getLatestBlockNumber();
+                if (hasHeaderChannel) {
+                    latest = Math.min(latest, headerTip.getNumber());
+                }
+                if (toComplete.containsKey(c.getId()) || (headerRange != null && headerChannel == c.getId())
+                        || latest < from) {
+                    continue;
+                }
+
+                // request the blocks
+                int max = singleBlockChannels.contains(c.getId()) ? 1
+                        : Math.min(getWindow(c.getId()), Math.max(budget, 1));
+                long to = from;
+                while (to - from < max && to <= latest && toDownload.remove(to)) {
+                    to++;
+                }
+
+                logger.debug("Request blocks [{}, {}) from channel = {}", from, to, c.getId());
+                c.getMessageQueue().sendMessage(
+                        (to - from == 1) ? new GetBlockMessage(from) : new GetBlocksMessage(from, (int) (to - from)));
+                Range range = new Range(from, to, now, now + getTimeout(c.getRemotePeer(), to - from));
+                toComplete.put(c.getId(), range);
+                inFlight += to - from;
+
+                // wake up when the task becomes late, and expire it at its deadline
+                long channelId = c.getId();
+                timer.newTimeout(t -> signal(), (range.deadline - now) / 2, TimeUnit.MILLISECONDS);
+                timer.newTimeout(t -> expire(channelId, range), range.deadline - now, TimeUnit.MILLISECONDS);
             }
+        }
+    }
 
-            // quit if too many pending blocks
-            if (toProcess.size() > MAX_PENDING_BLOCKS && task > toProcess.first().getKey().getNumber()) {
-                logger.trace("Pending block queue is full");
+    /**
+     * Queues the blocks of a task again, unless the task has completed.
+     * 
+     * @param channelId
+     * @param range
+     */
+    private void expire(long channelId, Range range) {
+        synchronized (lock) {
+            if (toComplete.get(channelId) != range) {
                 return;
             }
 
-            // request the block
-            if (c.getRemotePeer().getLatestBlockNumber() >= task) {
-                logger.debug("Request block #{} from channel = {}", task, c.getId());
-                c.getMessageQueue().sendMessage(new GetBlockMessage(task));
-
-                toDownload.remove(task);
-                toComplete.put(task, System.currentTimeMillis());
+            logger.debug("Downloading of blocks [{}, {}) has expired", range.from, range.to);
+            for (long n = range.from; n < range.to && !range.isReassigned; n++) {
+                toDownload.add(n);
             }
+            if (!rangeChannels.contains(channelId)) {
+                singleBlockChannels.add(channelId);
+            }
+            shrinkWindow(channelId);
+            toComplete.remove(channelId);
         }
+        signal();
     }
 
-    private void process() {
-        if (!isRunning()) {
-            return;
+    private int getWindow(long channelId) {
+        return windows.getOrDefault(channelId, INITIAL_WINDOW);
+    }
+
+    private void shrinkWindow(long channelId) {
+        windows.put(channelId, Math.max(getWindow(channelId) / 2, 1));
+    }
+
+    /**
+     * Returns the time to allow a peer for downloading a number of blocks, from
+     * its latency and download rate.
+     * 
+     * @param peer
+     * @param blocks
+     * @return
+     */
+    private long getTimeout(Peer peer, long blocks) {
+        double rate = peer.getDownloadRate();
+        if (rate == 0) {
+            return MAX_DOWNLOAD_TIME;
         }
 
-        long latest = chain.getLatestBlockNumber();
-        if (latest + 1 == target) {
-            stop();
-            return; // This is important because stop() only notify
+        long expected = peer.getLatency() + (long) (blocks * 1000.0 / rate);
+        return Math.max(MIN_DOWNLOAD_TIME, Math.min(MAX_DOWNLOAD_TIME, 3 * expected));
+    }
+
+    /**
+     * Sorts channels in a random order weighted by the download rates of their
+     * peers, so faster peers tend to come first. Peers without a rate weigh as
+     * much as the average.
+     * 
+     * @param channels
+     * @return
+     */
+    protected static List<Channel> sortByDownloadRate(List<Channel> channels) {
+        double sum = 0;
+        int n = 0;
+        for (Channel c : channels) {
+            if (c.getRemotePeer().getDownloadRate() > 0) {
+                sum += c.getRemotePeer().getDownloadRate();
+                n++;
+            }
+        }
+        double average = (n == 0) ? 1.0 : sum / n;
+
+        // each channel is keyed by u ^ (1 / weight), and the largest keys come first
+        Map<Channel, Double> keys = new HashMap<>();
+        for (Channel c : channels) {
+            double rate = c.getRemotePeer().getDownloadRate();
+            double weight = Math.max((rate > 0) ? rate : average, 0.01);
+            keys.put(c, Math.pow(random.nextDouble(), 1.0 / weight));
         }
 
-        Pair<Block, Channel> pair = null;
-        synchronized (lock) {
-            Iterator<Pair<Block, Channel>> iterator = toProcess.iterator();
-            while (iterator.hasNext()) {
-                Pair<Block, Channel> p = iterator.next();
-
-                if (p.getKey().getNumber() <= latest) {
-                    iterator.remove();
-                } else if (p.getKey().getNumber() == latest + 1) {
-                    iterator.remove();
-                    pair = p;
-                    break;
-                } else {
-                    break;
+        List<Channel> list = new ArrayList<>(channels);
+        list.sort((c1, c2) -> Double.compare(keys.get(c2), keys.get(c1)));
+        return list;
+    }
+
+    private void process() {
+        // apply the pending blocks in order, while the next ones are validated
+        while (isRunning()) {
+            long latest = chain.getLatestBlockNumber();
+            if (latest + 1 == target) {
+                stop();
+                return; // This is important because stop() only notify
+            }
+
+            Pair<Block, Channel> pair = null;
+            Future<Boolean> validation = null;
+            synchronized (lock) {
+                Iterator<Pair<Block, Channel>> iterator = toProcess.iterator();
+                while (iterator.hasNext()) {
+                    Pair<Block, Channel> p = iterator.next();
+
+                    if (p.getKey().getNumber() <= latest) {
+                        iterator.remove();
+                        toValidate.remove(p.getKey().getNumber());
+                    } else if (p.getKey().getNumber() == latest + 1) {
+                        iterator.remove();
+                        pair = p;
+                        break;
+                    } else {
+                        break;
+                    }
+                }
+
+                if (pair != null) {
+                    validation = validate(pair.getKey());
+                    toValidate.remove(latest + 1);
+                }
+                for (Pair<Block, Channel> p : toProcess) {
+                    if (p.getKey().getNumber() > latest + 1 + MAX_VALIDATING_BLOCKS) {
+                        break;
+                    }
+                    validate(p.getKey());
                 }
             }
-        }
 
-        if (pair != null) {
+            if (pair == null) {
+                return;
+            }
+
             logger.info("{}", pair.getKey());
 
-            if (validateApplyBlock(pair.getKey())) {
+            if (isValid(validation) && applyBlock(pair.getKey())) {
                 synchronized (lock) {
                     toDownload.remove(pair.getKey().getNumber());
-                    toComplete.remove(pair.getKey().getNumber());
+                    headers.remove(pair.getKey().getNumber());
+                    mismatches.remove(pair.getKey().getNumber());
+                    Long source = headerSources.floorKey(pair.getKey().getNumber() + 1);
+                    if (source != null) {
+                        headerSources.headMap(source, false).clear();
+                    }
                 }
+                signal();
             } else {
                 InetSocketAddress addr = pair.getValue().getRemoteAddress();
                 logger.info("Invalid block from {}:{}", addr.getAddress().getHostAddress(), addr.getPort());
 
                 synchronized (lock) {
                     toDownload.add(pair.getKey().getNumber());
-                    toComplete.remove(pair.getKey().getNumber());
+
+                    // the header chain may not be genuine from there on, as headers carry no votes
+                    if (headerFirst) {
+                        dropHeaders(pair.getKey().getNumber());
+                    }
                 }
+                signal();
 
                 // disconnect if the peer sends us invalid block
                 pair.getValue().getMessageQueue().disconnect(ReasonCode.BAD_PEER);
@@ -307,26 +800,46 @@ public class SemuxSync implements SyncManager {
     }
 
     /**
-     * Check if a block is valid, and apply to the chain if yes.
+     * Starts the checks of a block which do not depend on the chain state, unless
+     * they have been started.
      * 
      * @param block
-     * @return
+     * @return the result of the checks
      */
-    private boolean validateApplyBlock(Block block) {
-        BlockHeader header = block.getHeader();
-        List<Transaction> transactions = block.getTransactions();
-        long number = header.getNumber();
+    private Future<Boolean> validate(Block block) {
+        Pair<Block, Future<Boolean>> p = toValidate.get(block.getNumber());
+        if (p == null || p.getKey() != block) {
+            p = Pair.of(block, validator.submit(() -> validateBlock(block)));
+            toValidate.put(block.getNumber(), p);
+        }
+        return p.getValue();
+    }
 
-        // [1] check block header
-        Block latest = chain.getLatestBlock();
-        if (!Block.validateHeader(latest.getHeader(), header)) {
-            logger.debug("Invalid block header");
+    private boolean isValid(Future<Boolean> validation) {
+        try {
+            return validation.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        } catch (ExecutionException e) {
+            logger.warn("Failed to validate block", e);
             return false;
         }
+    }
+
+    /**
+     * Check the parts of a block which do not depend on the chain state: the
+     * transactions and their signatures, the results, and the vote signatures.
+     * 
+     * @param block
+     * @return
+     */
+    private boolean validateBlock(Block block) {
+        BlockHeader header = block.getHeader();
+        List<Transaction> transactions = block.getTransactions();
 
-        // [2] check transactions and results
-        if (transactions.size() > config.maxBlockSize()
-                || !Block.validateTransactions(header, block.getTransactions())) {
+        // [1] check transactions and results
+        if (transactions.size() > config.maxBlockSize() || !Block.validateTransactions(header, transactions)) {
             logger.debug("Invalid block transactions");
             return false;
         }
@@ -335,38 +848,65 @@ public class SemuxSync implements SyncManager {
             return false;
         }
 
+        // [2] check vote signatures
+        Vote vote = new Vote(VoteType.PRECOMMIT, Vote.VALUE_APPROVE, header.getNumber(), block.getView(),
+                block.getHash());
+        byte[] encoded = vote.getEncoded();
+        for (Signature sig : block.getVotes()) {
+            if (!EdDSA.verify(encoded, sig)) {
+                logger.debug("Invalid BFT vote: signer = {}", Hex.encode(sig.getAddress()));
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Check the parts of a validated block which depend on the chain state, and
+     * apply it to the chain if they are valid.
+     * 
+     * @param block
+     * @return
+     */
+    private boolean applyBlock(Block block) {
+        BlockHeader header = block.getHeader();
+        List<Transaction> transactions = block.getTransactions();
+        long number = header.getNumber();
+
+        // [1] check block header
+        Block latest = chain.getLatestBlock();
+        if (!Block.validateHeader(latest.getHeader(), header)) {
+            logger.debug("Invalid block header");
+            return false;
+        }
+
         AccountState as = chain.getAccountState().track();
         DelegateState ds = chain.getDelegateState().track();
         TransactionExecutor transactionExecutor = new TransactionExecutor(config);
 
-        // [3] evaluate transactions
-        List<TransactionResult> results = transactionExecutor.execute(transactions, as, ds);
+        // [2] evaluate transactions
+        List<TransactionResult> results = transactionExecutor.executeParallel(transactions, as, ds);
         if (!Block.validateResults(header, results)) {
             logger.debug("Invalid transactions");
             return false;
         }
 
-        // [4] evaluate votes
-        List<String> validators = chain.getValidators();
+        // [3] evaluate votes
+        ValidatorSet validators = chain.getValidatorSet();
         int twoThirds = (int) Math.ceil(validators.size() * 2.0 / 3.0);
         if (block.getVotes().size() < twoThirds) {
             logger.debug("Invalid BFT votes: {} < {}", block.getVotes().size(), twoThirds);
             return false;
         }
-
-        Set<String> set = new HashSet<>(validators);
-        Vote vote = new Vote(VoteType.PRECOMMIT, Vote.VALUE_APPROVE, number, block.getView(), block.getHash());
-        byte[] encoded = vote.getEncoded();
         for (Signature sig : block.getVotes()) {
-            String a = Hex.encode(sig.getAddress());
-
-            if (!set.contains(a) || !EdDSA.verify(encoded, sig)) {
-                logger.debug("Invalid BFT vote: signer = {}", a);
+            if (!validators.contains(sig.getAddress())) {
+                logger.debug("Invalid BFT vote: signer = {}", Hex.encode(sig.getAddress()));
                 return false;
             }
         }
 
-        // [5] apply block reward and tx fees
+        // [4] apply block reward and tx fees
         long reward = config.getBlockReward(number);
         for (Transaction tx : block.getTransactions()) {
             reward += tx.getFee();
@@ -375,18 +915,14 @@ public class SemuxSync implements SyncManager {
             as.adjustAvailable(block.getCoinbase(), reward);
         }
 
-        // [6] commit the updates
-        as.commit();
-        ds.commit();
-
         WriteLock writeLock = kernel.getStateLock().writeLock();
         writeLock.lock();
         try {
-            // [7] flush state to disk
-            chain.getAccountState().commit();
-            chain.getDelegateState().commit();
+            // [5] commit the updates
+            as.commit();
+            ds.commit();
 
-            // [8] add block to chain
+            // [6] flush state and add block to chain
             chain.addBlock(block);
         } finally {
             writeLock.unlock();
@@ -394,4 +930,23 @@ public class SemuxSync implements SyncManager {
 
         return true;
     }
+
+    /**
+     * Blocks requested from a channel, from the first number to the last,
+     * exclusive.
+     */
+    private static class Range {
+        private long from;
+        private long to;
+        private long timestamp;
+        private long deadline;
+        private boolean isReassigned;
+
+        Range(long from, long to, long timestamp, long deadline) {
+            this.from = from;
+            this.to = to;
+            this.timestamp = timestamp;
+            this.deadline = deadline;
+        }
+    }
 }
@@ -51,7 +51,8 @@ public interface Blockchain {
     Genesis getGenesis();
 
     /**
-     * Returns block by number.
+     * Returns block by number, or null if the block does not exist or its
+     * transactions have been pruned.
      * 
      * @param number
      * @return
@@ -66,6 +67,16 @@ public interface Blockchain {
      */
     Block getBlock(byte[] hash);
 
+    /**
+     * Returns the encoded header, transactions, results and votes of a block, as
+     * stored, or null if the block does not exist or its transactions have been
+     * pruned.
+     * 
+     * @param number
+     * @return
+     */
+    byte[][] getBlockBytes(long number);
+
     /**
      * Returns block header by block number.
      * 
@@ -83,7 +94,8 @@ public interface Blockchain {
     BlockHeader getBlockHeader(byte[] hash);
 
     /**
-     * Returns transaction by its hash.
+     * Returns transaction by its hash, or null if the transaction does not exist
+     * or has been pruned.
      * 
      * @param hash
      * @return
@@ -107,7 +119,8 @@ public interface Blockchain {
     long getTransactionBlockNumber(byte[] hash);
 
     /**
-     * Returns the total number of transactions from/to the given address.
+     * Returns the total number of transactions from/to the given address,
+     * including the pruned ones.
      * 
      * @param address
      *            account address
@@ -116,7 +129,18 @@ public interface Blockchain {
     int getTransactionCount(byte[] address);
 
     /**
-     * Returns transactions from/to an address.
+     * Returns the index of the oldest transaction from/to the given address which
+     * has not been pruned. Transactions below it are no longer listed.
+     * 
+     * @param address
+     *            account address
+     * @return
+     */
+    int getFirstTransactionIndex(byte[] address);
+
+    /**
+     * Returns transactions from/to an address. Transactions below
+     * {@link #getFirstTransactionIndex(byte[])} have been pruned and are left out.
      * 
      * @param address
      *            account address
@@ -129,12 +153,52 @@ public interface Blockchain {
     List<Transaction> getTransactions(byte[] address, int from, int to);
 
     /**
-     * Add a block to the chain.
+     * Returns the most recent transactions of an account, newest first.
+     * 
+     * @param address
+     *            account address
+     * @param limit
+     *            the maximum number of transactions
+     * @return
+     */
+    List<Transaction> getLatestTransactions(byte[] address, int limit);
+
+    /**
+     * Add a block to the chain. Pending updates of the account state and
+     * delegate state are flushed along with the block.
      * 
      * @param block
      */
     void addBlock(Block block);
 
+    /**
+     * Returns the number of the last block whose transactions have been pruned,
+     * or zero if no block is pruned.
+     * 
+     * @return
+     */
+    long getPrunedBlockNumber();
+
+    /**
+     * Returns the number of the last block whose transactions have been indexed
+     * by hash and by account. The indexes may fall behind the latest block.
+     * 
+     * @return
+     */
+    long getIndexedBlockNumber();
+
+    /**
+     * Indexes the committed blocks which have not been indexed yet, on the
+     * calling thread.
+     */
+    void flushIndex();
+
+    /**
+     * Stops the background tasks of the blockchain, and waits for the open read
+     * views to be closed. No read view can be opened afterwards.
+     */
+    void stop();
+
     /**
      * Returns account state.
      * 
@@ -149,6 +213,19 @@ public interface Blockchain {
      */
     DelegateState getDelegateState();
 
+    /**
+     * Opens a read-only view of the chain state, pinned to the latest block.
+     * Readers of the view neither block nor are blocked by block
+     * application.<br>
+     * <br>
+     * NOTE: be sure to close the view after use.
+     * 
+     * @return
+     * @throws IllegalStateException
+     *             if the blockchain has been stopped
+     */
+    ReadView openReadView();
+
     /**
      * Returns the validator set based on current state.
      * 
@@ -156,6 +233,14 @@ public interface Blockchain {
      */
     List<String> getValidators();
 
+    /**
+     * Returns the current validator set. The set is immutable and replaced as a
+     * whole when the validators change, so it can be held for a block height.
+     * 
+     * @return
+     */
+    ValidatorSet getValidatorSet();
+
     /**
      * Returns the statistics of a validator.
      * 
@@ -165,9 +250,12 @@ public interface Blockchain {
     ValidatorStats getValidatorStats(byte[] address);
 
     /**
-     * Register a blockchain listener.
+     * Register a blockchain listener. Listeners are notified asynchronously, in
+     * block order; a listener which falls behind skips the older blocks.
      * 
+     * @param name
+     *            the name of the listener, used by its thread and in logs
      * @param listener
      */
-    void addListener(BlockchainListener listener);
+    void addListener(String name, BlockchainListener listener);
 }
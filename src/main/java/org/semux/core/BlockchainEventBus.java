@@ -0,0 +1,252 @@
+/**
+ * Copyright (c) 2017 The Semux Developers
+ *
+ * Distributed under the MIT software license, see the accompanying file
+ * LICENSE or https://opensource.org/licenses/mit-license.php
+ */
+package org.semux.core;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Delivers block events to listeners off the block commit path.
+ * <p>
+ * Each listener has its own single-threaded executor, so it receives the
+ * blocks in order, and a bounded number of pending events. The publisher is
+ * never blocked, as it holds the chain: when a listener falls that far behind,
+ * its pending events are coalesced into one
+ * {@link BlockchainListener#onLatestBlock(Block, long)} event, which tells it
+ * how many blocks it has not seen one by one.
+ */
+public class BlockchainEventBus {
+
+    private static final Logger logger = LoggerFactory.getLogger(BlockchainEventBus.class);
+
+    private List<Subscription> subscriptions = new CopyOnWriteArrayList<>();
+
+    /**
+     * Registers a listener.
+     *
+     * @param name
+     *            the name of the listener, used by its thread and in logs
+     * @param listener
+     * @param capacity
+     *            the maximum number of events pending delivery
+     */
+    public void register(String name, BlockchainListener listener, int capacity) {
+        subscriptions.add(new Subscription(name, listener, capacity));
+    }
+
+    /**
+     * Publishes a block to all the listeners.
+     *
+     * @param block
+     */
+    public void publish(Block block) {
+        for (Subscription s : subscriptions) {
+            s.publish(block);
+        }
+    }
+
+    /**
+     * Returns the subscriptions, along with their delivery statistics.
+     *
+     * @return
+     */
+    public List<Subscription> getSubscriptions() {
+        return Collections.unmodifiableList(new ArrayList<>(subscriptions));
+    }
+
+    /**
+     * Stops delivering events, waiting for the pending ones.
+     */
+    public void stop() {
+        for (Subscription s : subscriptions) {
+            s.stop();
+        }
+    }
+
+    /**
+     * A listener, its executor and delivery statistics.
+     */
+    public static class Subscription {
+        private BlockchainListener listener;
+        private String name;
+        private ExecutorService exec;
+        private int capacity;
+        private Deque<Event> pending = new ArrayDeque<>();
+        private boolean isDelivering;
+        private boolean isStopped;
+
+        private AtomicLong published = new AtomicLong(0);
+        private AtomicLong delivered = new AtomicLong(0);
+        private AtomicLong skipped = new AtomicLong(0);
+        private volatile long lastDelay;
+        private volatile long maxDelay;
+
+        Subscription(String name, BlockchainListener listener, int capacity) {
+            this.listener = listener;
+            this.name = name;
+            this.capacity = capacity;
+            this.exec = Executors.newSingleThreadExecutor(r -> {
+                Thread t = new Thread(r, "chain-event-" + name);
+                t.setDaemon(true);
+                return t;
+            });
+        }
+
+        synchronized void publish(Block block) {
+            if (isStopped) {
+                logger.debug("Listener {} is stopped, not publishing block #{}", name, block.getNumber());
+                return;
+            }
+            published.incrementAndGet();
+
+            long behind = 0;
+            if (pending.size() >= capacity) {
+                // the pending blocks are only reported as skipped before the latest one
+                for (Event e : pending) {
+                    behind += e.skipped + 1;
+                }
+                skipped.addAndGet(pending.size());
+                pending.clear();
+                logger.warn("Listener {} is {} blocks behind, coalescing them into block #{}", name, behind,
+                        block.getNumber());
+            }
+            pending.addLast(new Event(block, behind));
+
+            if (!isDelivering) {
+                isDelivering = true;
+                exec.submit(this::deliver);
+            }
+        }
+
+        /**
+         * Delivers the pending events, in order, until there is none.
+         */
+        private void deliver() {
+            while (true) {
+                Event event;
+                synchronized (this) {
+                    event = pending.pollFirst();
+                    if (event == null) {
+                        isDelivering = false;
+                        return;
+                    }
+                }
+
+                Block block = event.block;
+                try {
+                    if (event.skipped > 0) {
+                        listener.onLatestBlock(block, event.skipped);
+                    } else {
+                        listener.onBlockAdded(block);
+                    }
+                } catch (Exception e) {
+                    logger.error("Listener " + name + " failed on block #" + block.getNumber(), e);
+                } finally {
+                    lastDelay = System.currentTimeMillis() - event.timestamp;
+                    maxDelay = Math.max(maxDelay, lastDelay);
+                    delivered.incrementAndGet();
+                }
+            }
+        }
+
+        void stop() {
+            synchronized (this) {
+                isStopped = true;
+            }
+            exec.shutdown();
+            try {
+                exec.awaitTermination(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                logger.error("Interrupted while waiting for listener {} to stop", name);
+            }
+        }
+
+        /**
+         * Returns the name of the listener.
+         *
+         * @return
+         */
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * Returns the number of events published but not yet delivered.
+         *
+         * @return
+         */
+        public long getLag() {
+            return published.get() - delivered.get() - skipped.get();
+        }
+
+        /**
+         * Returns the number of blocks which were coalesced into a later one, as
+         * the listener fell behind.
+         *
+         * @return
+         */
+        public long getSkipped() {
+            return skipped.get();
+        }
+
+        /**
+         * Returns the number of events delivered.
+         *
+         * @return
+         */
+        public long getDelivered() {
+            return delivered.get();
+        }
+
+        /**
+         * Returns the time from publication to the end of delivery of the last
+         * event, in milliseconds.
+         *
+         * @return
+         */
+        public long getLastDelay() {
+            return lastDelay;
+        }
+
+        /**
+         * Returns the longest time from publication to the end of delivery of an
+         * event, in milliseconds.
+         *
+         * @return
+         */
+        public long getMaxDelay() {
+            return maxDelay;
+        }
+    }
+
+    /**
+     * A block pending delivery, and the number of blocks coalesced into it.
+     */
+    private static class Event {
+        private Block block;
+        private long skipped;
+        private long timestamp;
+
+        Event(Block block, long skipped) {
+            this.block = block;
+            this.skipped = skipped;
+            this.timestamp = System.currentTimeMillis();
+        }
+    }
+}
@@ -8,8 +8,19 @@ package org.semux.core;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Map.Entry;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.apache.commons.lang3.tuple.Pair;
 import org.semux.config.Config;
@@ -25,12 +36,18 @@ import org.semux.crypto.Hex;
 import org.semux.db.DBFactory;
 import org.semux.db.DBName;
 import org.semux.db.KVDB;
+import org.semux.util.ByteArray;
 import org.semux.util.Bytes;
+import org.semux.util.ClosableIterator;
 import org.semux.util.SimpleDecoder;
 import org.semux.util.SimpleEncoder;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+
 /**
  * Blockchain implementation.
  * 
@@ -42,19 +59,52 @@ import org.slf4j.LoggerFactory;
  * [2, address] => [validator_stats]
  * 
  * [3, block_hash] => [block_number]
- * [4, transaction_hash] => [block_number, from, to]
+ * [4, transaction_hash] => [block_number, transaction_index]
  * [5, address, n] => [transaction] OR [transaction_hash]
+ * 
+ * [6] => [pruned_block_number]
+ * [7] => [indexed_block_number]
+ * [8, address] => [first_transaction_index]
  * </pre>
  *
  * <pre>
  * block DB structure:
  * 
- * [0, block_number] => [block_header]
- * [1, block_number] => [block_transactions]
- * [2, block_number] => [block_results]
- * [3, block_number] => [block_votes]
+ * [4, block_number, 0] => [block_header]
+ * [4, block_number, 1] => [number_of_transactions]
+ * [4, block_number, 1, i] => [transaction]
+ * [4, block_number, 2] => [number_of_results]
+ * [4, block_number, 2, i] => [result]
+ * [4, block_number, 3] => [block_votes]
  * </pre>
  * 
+ * The parts of a block are adjacent, so a block is read with one scan, while a
+ * transaction or a result is read on its own. Blocks written by earlier
+ * versions hold their transactions and results as one value, located in the
+ * transaction index by offsets <code>[block_number, from, to]</code>, possibly
+ * under the legacy keys <code>[part, block_number]</code>.
+ * 
+ * A block is committed as one write batch per database: block data first, then
+ * the account and delegate state, and finally the index batch, which carries
+ * the latest block number. A block is not considered added until the index
+ * batch lands.
+ * <p>
+ * When pruning is enabled, a background task drops the transactions and results
+ * of blocks older than the configured depth, along with their transaction and
+ * account indexes. Headers and votes are kept. Pruned blocks read as missing.
+ * <p>
+ * The transaction and account indexes are secondary: a background task builds
+ * them from the committed blocks, one batch of blocks at a time, and records
+ * the last indexed block in the same batch. They can be turned off entirely.
+ * <p>
+ * Listeners are notified of added blocks asynchronously, each in order and on
+ * its own thread, so slow listeners do not hold up block commit. A listener
+ * which falls too far behind is handed the latest block, along with the number
+ * of blocks it skipped.
+ * <p>
+ * Decoded blocks and headers are cached by number, and block numbers by hash.
+ * Blocks enter the cache when added, so the recent blocks that peers and the
+ * consensus ask for are decoded at most once.
  */
 public class BlockchainImpl implements Blockchain {
 
@@ -66,11 +116,56 @@ public class BlockchainImpl implements Blockchain {
     protected static final byte TYPE_BLOCK_HASH = 3;
     protected static final byte TYPE_TRANSACTION_HASH = 4;
     protected static final byte TYPE_ACCOUNT_TRANSACTION = 5;
+    protected static final byte TYPE_PRUNED_BLOCK_NUMBER = 6;
+    protected static final byte TYPE_INDEXED_BLOCK_NUMBER = 7;
+    protected static final byte TYPE_FIRST_ACCOUNT_TRANSACTION = 8;
 
     protected static final byte TYPE_BLOCK_HEADER = 0;
     protected static final byte TYPE_BLOCK_TRANSACTIONS = 1;
     protected static final byte TYPE_BLOCK_RESULTS = 2;
     protected static final byte TYPE_BLOCK_VOTES = 3;
+    protected static final byte TYPE_BLOCK = 4;
+
+    /**
+     * Length of a transaction location by block number and index; older
+     * locations hold two offsets instead.
+     */
+    private static final int ITEM_LOCATION_LENGTH = 12;
+
+    private static final int PRUNE_BATCH_SIZE = 64;
+    private static final int INDEX_BATCH_SIZE = 64;
+
+    /**
+     * Number of blocks a listener may fall behind before its pending blocks are
+     * coalesced into the latest one.
+     */
+    private static final int LISTENER_QUEUE_SIZE = 16;
+
+    /**
+     * Number of block hashes cached.
+     */
+    private static final int HASH_CACHE_SIZE = 16 * 1024;
+
+    private static final ThreadFactory pruneThreadFactory = new ThreadFactory() {
+        private AtomicInteger cnt = new AtomicInteger(0);
+
+        @Override
+        public Thread newThread(Runnable r) {
+            return new Thread(r, "chain-pruner-" + cnt.getAndIncrement());
+        }
+    };
+
+    private static final ThreadFactory indexThreadFactory = new ThreadFactory() {
+        private AtomicInteger cnt = new AtomicInteger(0);
+
+        @Override
+        public Thread newThread(Runnable r) {
+            // an interrupted batch is redone on the next start
+            Thread t = new Thread(r, "chain-indexer-" + cnt.getAndIncrement());
+            t.setDaemon(true);
+            return t;
+        }
+    };
 
     protected enum StatsType {
         FORGED, HIT, MISSED
@@ -80,14 +175,37 @@ public class BlockchainImpl implements Blockchain {
 
     private KVDB indexDB;
     private KVDB blockDB;
+    private KVDB accountDB;
+    private KVDB delegateDB;
+    private KVDB voteDB;
 
-    private AccountState accountState;
-    private DelegateState delegateState;
+    private AccountStateImpl accountState;
+    private DelegateStateImpl delegateState;
 
     private Genesis genesis;
-    private Block latestBlock;
+    private volatile Block latestBlock;
+
+    private Cache<Long, Block> blockCache;
+    private Cache<Long, BlockHeader> headerCache;
+    private Cache<ByteArray, Long> hashCache;
+
+    private volatile ValidatorSet validatorSet;
 
-    private List<BlockchainListener> listeners = new ArrayList<>();
+    private volatile long prunedBlockNumber;
+    private ExecutorService pruner;
+    private AtomicBoolean isPruning = new AtomicBoolean(false);
+
+    private volatile long indexedBlockNumber;
+    private ExecutorService indexer;
+    private AtomicBoolean isIndexing = new AtomicBoolean(false);
+    private final Object indexLock = new Object();
+
+    private BlockchainEventBus eventBus = new BlockchainEventBus();
+
+    // the read views keep the databases open until closed
+    private int openViews;
+    private boolean isStopped;
+    private final Object viewLock = new Object();
 
     /**
      * Create a blockchain instance.
@@ -99,9 +217,30 @@ public class BlockchainImpl implements Blockchain {
 
         this.indexDB = factory.getDB(DBName.INDEX);
         this.blockDB = factory.getDB(DBName.BLOCK);
-
-        this.accountState = new AccountStateImpl(factory.getDB(DBName.ACCOUNT));
-        this.delegateState = new DelegateStateImpl(this, factory.getDB(DBName.DELEGATE), factory.getDB(DBName.VOTE));
+        this.accountDB = factory.getDB(DBName.ACCOUNT);
+        this.delegateDB = factory.getDB(DBName.DELEGATE);
+        this.voteDB = factory.getDB(DBName.VOTE);
+
+        DelegateStateImpl.upgrade(delegateDB);
+
+        this.accountState = new AccountStateImpl(accountDB);
+        this.delegateState = new DelegateStateImpl(this, delegateDB, voteDB);
+
+        // decoded objects take about twice the size of their encoding
+        this.blockCache = Caffeine.newBuilder()
+                .maximumWeight(config.dbDecodedCacheSize())
+                .<Long, Block>weigher((k, v) -> 2 * (v.toBytesHeader().length + v.toBytesTransactions().length
+                        + v.toBytesResults().length) + 128 * v.getVotes().size())
+                .recordStats()
+                .build();
+        this.headerCache = Caffeine.newBuilder()
+                .maximumWeight(config.dbDecodedCacheSize() / 8)
+                .<Long, BlockHeader>weigher((k, v) -> 2 * v.toBytes().length)
+                .recordStats()
+                .build();
+        this.hashCache = Caffeine.newBuilder()
+                .maximumSize(HASH_CACHE_SIZE)
+                .build();
 
         this.genesis = Genesis.load(config.dataDir());
 
@@ -111,18 +250,36 @@ public class BlockchainImpl implements Blockchain {
             for (Premine p : genesis.getPremines().values()) {
                 accountState.adjustAvailable(p.getAddress(), p.getAmount() * Unit.SEM);
             }
-            accountState.commit();
 
             // delegates
             for (Entry<String, byte[]> e : genesis.getDelegates().entrySet()) {
                 delegateState.register(e.getValue(), Bytes.of(e.getKey()), 0);
             }
-            delegateState.commit();
 
-            // add block
+            // add block, which also flushes the state
             addBlock(genesis);
         } else {
             latestBlock = getBlock(Bytes.toLong(number));
+
+            long latest = latestBlock.getNumber();
+            validatorSet = new ValidatorSet(latest - latest % config.getValidatorUpdateInterval(),
+                    readValidators(indexDB));
+
+            recover();
+        }
+
+        byte[] pruned = indexDB.get(Bytes.of(TYPE_PRUNED_BLOCK_NUMBER));
+        prunedBlockNumber = (pruned == null) ? 0 : Bytes.toLong(pruned);
+        if (config.dbPruneDepth() > 0) {
+            pruner = Executors.newSingleThreadExecutor(pruneThreadFactory);
+        }
+
+        // databases of earlier versions are indexed up to the latest block
+        byte[] indexed = indexDB.get(Bytes.of(TYPE_INDEXED_BLOCK_NUMBER));
+        indexedBlockNumber = (indexed == null) ? latestBlock.getNumber() : Bytes.toLong(indexed);
+        if (config.dbIndexTransactions()) {
+            indexer = Executors.newSingleThreadExecutor(indexThreadFactory);
+            scheduleIndexing();
         }
     }
 
@@ -153,18 +310,47 @@ public class BlockchainImpl implements Blockchain {
 
     @Override
     public long getBlockNumber(byte[] hash) {
-        byte[] number = indexDB.get(Bytes.merge(TYPE_BLOCK_HASH, hash));
-        return (number == null) ? -1 : Bytes.toLong(number);
+        Long number = hashCache.getIfPresent(ByteArray.of(hash));
+        return (number != null) ? number : readBlockNumber(indexDB, hash);
     }
 
     @Override
     public Block getBlock(long number) {
-        byte[] header = blockDB.get(Bytes.merge(TYPE_BLOCK_HEADER, Bytes.of(number)));
-        byte[] transactions = blockDB.get(Bytes.merge(TYPE_BLOCK_TRANSACTIONS, Bytes.of(number)));
-        byte[] results = blockDB.get(Bytes.merge(TYPE_BLOCK_RESULTS, Bytes.of(number)));
-        byte[] votes = blockDB.get(Bytes.merge(TYPE_BLOCK_VOTES, Bytes.of(number)));
+        Block block = blockCache.getIfPresent(number);
+        if (block != null) {
+            return block;
+        }
+
+        byte[][] parts = readBlockParts(number);
+        byte[] header = parts[TYPE_BLOCK_HEADER];
+        byte[] transactions = parts[TYPE_BLOCK_TRANSACTIONS];
 
-        return (header == null) ? null : Block.fromBytes(header, transactions, results, votes);
+        // a pruned block has no transactions
+        if (header == null || transactions == null) {
+            return null;
+        }
+        block = Block.fromBytes(header, transactions, parts[TYPE_BLOCK_RESULTS], parts[TYPE_BLOCK_VOTES]);
+        cacheBlock(block);
+        return block;
+    }
+
+    @Override
+    public byte[][] getBlockBytes(long number) {
+        Block block = blockCache.getIfPresent(number);
+        if (block != null) {
+            return new byte[][] { block.toBytesHeader(), block.toBytesTransactions(), block.toBytesResults(),
+                    block.toBytesVotes() };
+        }
+
+        byte[][] parts = readBlockParts(number);
+        if (parts[TYPE_BLOCK_HEADER] == null || parts[TYPE_BLOCK_TRANSACTIONS] == null) {
+            return null;
+        }
+        if (parts[TYPE_BLOCK_VOTES] == null) {
+            // no view and no votes
+            parts[TYPE_BLOCK_VOTES] = Bytes.merge(Bytes.of(0), Bytes.of(0));
+        }
+        return parts;
     }
 
     @Override
@@ -175,8 +361,21 @@ public class BlockchainImpl implements Blockchain {
 
     @Override
     public BlockHeader getBlockHeader(long number) {
-        byte[] header = blockDB.get(Bytes.merge(TYPE_BLOCK_HEADER, Bytes.of(number)));
-        return (header == null) ? null : BlockHeader.fromBytes(header);
+        BlockHeader header = headerCache.getIfPresent(number);
+        if (header == null) {
+            Block block = blockCache.getIfPresent(number);
+            if (block != null) {
+                return block.getHeader();
+            }
+
+            byte[] bytes = readBlockPart(number, TYPE_BLOCK_HEADER);
+            if (bytes == null) {
+                return null;
+            }
+            header = BlockHeader.fromBytes(bytes);
+            headerCache.put(number, header);
+        }
+        return header;
     }
 
     @Override
@@ -196,10 +395,17 @@ public class BlockchainImpl implements Blockchain {
 
             SimpleDecoder dec = new SimpleDecoder(bytes);
             long number = dec.readLong();
+            if (bytes.length == ITEM_LOCATION_LENGTH) {
+                byte[] transaction = blockDB.get(getBlockItemKey(number, TYPE_BLOCK_TRANSACTIONS, dec.readInt()));
+                return (transaction == null) ? null : Transaction.fromBytes(transaction);
+            }
             int start = dec.readInt();
             dec.readInt();
 
-            byte[] transactions = blockDB.get(Bytes.merge(TYPE_BLOCK_TRANSACTIONS, Bytes.of(number)));
+            byte[] transactions = readBlockPart(number, TYPE_BLOCK_TRANSACTIONS);
+            if (transactions == null) {
+                return null; // pruned
+            }
             dec = new SimpleDecoder(transactions, start);
             return Transaction.fromBytes(dec.readBytes());
         }
@@ -218,10 +424,17 @@ public class BlockchainImpl implements Blockchain {
 
             SimpleDecoder dec = new SimpleDecoder(bytes);
             long number = dec.readLong();
+            if (bytes.length == ITEM_LOCATION_LENGTH) {
+                byte[] result = blockDB.get(getBlockItemKey(number, TYPE_BLOCK_RESULTS, dec.readInt()));
+                return (result == null) ? null : TransactionResult.fromBytes(result);
+            }
             dec.readInt();
             int start = dec.readInt();
 
-            byte[] results = blockDB.get(Bytes.merge(TYPE_BLOCK_RESULTS, Bytes.of(number)));
+            byte[] results = readBlockPart(number, TYPE_BLOCK_RESULTS);
+            if (results == null) {
+                return null; // pruned
+            }
             dec = new SimpleDecoder(results, start);
             return TransactionResult.fromBytes(dec.readBytes());
         }
@@ -243,7 +456,6 @@ public class BlockchainImpl implements Blockchain {
     @Override
     public synchronized void addBlock(Block block) {
         long number = block.getNumber();
-        byte[] hash = block.getHash();
 
         if (number != genesis.getNumber() && number != latestBlock.getNumber() + 1) {
             logger.error("Adding wrong block: number = {}, expected = {}", number, latestBlock.getNumber() + 1);
@@ -251,65 +463,383 @@ public class BlockchainImpl implements Blockchain {
         }
 
         // [1] update block
-        blockDB.put(Bytes.merge(TYPE_BLOCK_HEADER, Bytes.of(number)), block.toBytesHeader());
-        blockDB.put(Bytes.merge(TYPE_BLOCK_TRANSACTIONS, Bytes.of(number)), block.toBytesTransactions());
-        blockDB.put(Bytes.merge(TYPE_BLOCK_RESULTS, Bytes.of(number)), block.toBytesResults());
-        blockDB.put(Bytes.merge(TYPE_BLOCK_VOTES, Bytes.of(number)), block.toBytesVotes());
+        List<Pair<byte[], byte[]>> blockUpdates = new ArrayList<>();
+        blockUpdates.add(Pair.of(getBlockKey(number, TYPE_BLOCK_HEADER), block.toBytesHeader()));
+        List<Transaction> transactions = block.getTransactions();
+        blockUpdates.add(Pair.of(getBlockKey(number, TYPE_BLOCK_TRANSACTIONS), Bytes.of(transactions.size())));
+        for (int i = 0; i < transactions.size(); i++) {
+            byte[] key = getBlockItemKey(number, TYPE_BLOCK_TRANSACTIONS, i);
+            blockUpdates.add(Pair.of(key, transactions.get(i).toBytes()));
+        }
+        List<TransactionResult> results = block.getResults();
+        blockUpdates.add(Pair.of(getBlockKey(number, TYPE_BLOCK_RESULTS), Bytes.of(results.size())));
+        for (int i = 0; i < results.size(); i++) {
+            blockUpdates.add(Pair.of(getBlockItemKey(number, TYPE_BLOCK_RESULTS, i), results.get(i).toBytes()));
+        }
+        blockUpdates.add(Pair.of(getBlockKey(number, TYPE_BLOCK_VOTES), block.toBytesVotes()));
+        blockDB.updateBatch(blockUpdates);
+        cacheBlock(block);
 
-        indexDB.put(Bytes.merge(TYPE_BLOCK_HASH, hash), Bytes.of(number));
+        // [2] flush state, one batch per database, each marked with the block number
+        accountState.commit(number);
+        delegateState.commit(number);
 
-        // [2] update transaction indices
-        List<Transaction> txs = block.getTransactions();
-        List<Pair<Integer, Integer>> txIndices = block.getTransactionIndices();
-        long reward = config.getBlockReward(number);
+        // [3] update the index, which marks the block as fully committed
+        commitIndex(block);
 
-        for (int i = 0; i < txs.size(); i++) {
-            Transaction tx = txs.get(i);
-            reward += tx.getFee();
+        eventBus.publish(block);
 
-            SimpleEncoder enc = new SimpleEncoder();
-            enc.writeLong(number);
-            enc.writeInt(txIndices.get(i).getLeft());
-            enc.writeInt(txIndices.get(i).getRight());
+        scheduleIndexing();
+        schedulePruning();
+    }
 
-            indexDB.put(Bytes.merge(TYPE_TRANSACTION_HASH, tx.getHash()), enc.toBytes());
+    /**
+     * Completes the block whose state was committed while its index batch was
+     * not, if the node stopped in between.
+     * <p>
+     * Each state database records the number of the block it belongs to in the
+     * same batch as the state, so a state one block ahead of the index holds a
+     * block which must not be applied again. If only some of the state databases
+     * are ahead, the state cannot be recovered.
+     */
+    private void recover() {
+        long latest = latestBlock.getNumber();
+        long[] delegate = delegateState.getBlockNumbers();
+        long[] numbers = { accountState.getBlockNumber(), delegate[0], delegate[1] };
+
+        int ahead = 0;
+        for (long n : numbers) {
+            if (n == latest + 1) {
+                ahead++;
+            } else if (n != latest && n != -1) {
+                throw new BlockchainException("The state does not belong to the latest block #" + latest);
+            }
+        }
 
-            // [3] update transaction_by_account index
-            addTransactionToAccount(tx, tx.getFrom());
-            if (!Arrays.equals(tx.getFrom(), tx.getTo())) {
-                addTransactionToAccount(tx, tx.getTo());
+        if (ahead == numbers.length) {
+            Block block = getBlock(latest + 1);
+            if (block == null) {
+                throw new BlockchainException("The state belongs to missing block #" + (latest + 1));
             }
+            logger.warn("Block #{} was applied to the state but not indexed, completing it", block.getNumber());
+            commitIndex(block);
+        } else if (ahead > 0) {
+            throw new BlockchainException("The state was partially committed at block #" + (latest + 1)
+                    + ", restore it from a snapshot or resync");
         }
+    }
 
-        if (number != genesis.getNumber()) {
-            // [4] coinbase transaction
-            Transaction tx = new Transaction(TransactionType.COINBASE, block.getCoinbase(), reward, 0,
-                    block.getNumber(), block.getTimestamp(), Bytes.EMPTY_BYTES).sign(new EdDSA());
-            indexDB.put(Bytes.merge(TYPE_TRANSACTION_HASH, tx.getHash()), tx.toBytes());
-            addTransactionToAccount(tx, block.getCoinbase());
+    /**
+     * Updates the index with a block whose state has been committed, and makes
+     * it the latest block.
+     * 
+     * @param block
+     */
+    private void commitIndex(Block block) {
+        long number = block.getNumber();
+        byte[] hash = block.getHash();
 
-            // [5] update validator statistics
+        Map<ByteArray, byte[]> indexUpdates = new LinkedHashMap<>();
+        indexUpdates.put(ByteArray.of(Bytes.merge(TYPE_BLOCK_HASH, hash)), Bytes.of(number));
+
+        if (number != genesis.getNumber()) {
+            // update validator statistics, which depend on the current validator set
             List<String> validators = getValidators();
             String primary = config.getPrimaryValidator(validators, number, 0);
-            adjustValidatorStats(block.getCoinbase(), StatsType.FORGED, 1);
+            adjustValidatorStats(indexUpdates, block.getCoinbase(), StatsType.FORGED, 1);
             if (primary.equals(Hex.encode(block.getCoinbase()))) {
-                adjustValidatorStats(Hex.decode(primary), StatsType.HIT, 1);
+                adjustValidatorStats(indexUpdates, Hex.decode(primary), StatsType.HIT, 1);
             } else {
-                adjustValidatorStats(Hex.decode(primary), StatsType.MISSED, 1);
+                adjustValidatorStats(indexUpdates, Hex.decode(primary), StatsType.MISSED, 1);
             }
         }
 
-        // [6] update validator set
+        // update validator set
+        ValidatorSet newValidatorSet = null;
         if (number % config.getValidatorUpdateInterval() == 0) {
-            updateValidators(block.getNumber());
+            newValidatorSet = updateValidators(indexUpdates, block.getNumber());
         }
 
-        // [7] update latest_block
+        // update latest_block, which marks the block as fully committed
+        indexUpdates.put(ByteArray.of(Bytes.of(TYPE_LATEST_BLOCK_NUMBER)), Bytes.of(number));
+        writeBatch(indexDB, indexUpdates);
+
+        if (newValidatorSet != null) {
+            validatorSet = newValidatorSet;
+        }
         latestBlock = block;
-        indexDB.put(Bytes.of(TYPE_LATEST_BLOCK_NUMBER), Bytes.of(number));
+    }
+
+    /**
+     * Returns the hit, miss and eviction statistics of the decoded block cache.
+     * 
+     * @return
+     */
+    public CacheStats getBlockCacheStats() {
+        return blockCache.stats();
+    }
+
+    /**
+     * Returns the hit, miss and eviction statistics of the decoded header cache.
+     * 
+     * @return
+     */
+    public CacheStats getHeaderCacheStats() {
+        return headerCache.stats();
+    }
+
+    private void cacheBlock(Block block) {
+        blockCache.put(block.getNumber(), block);
+        hashCache.put(ByteArray.of(block.getHash()), block.getNumber());
+    }
 
-        for (BlockchainListener listener : listeners) {
-            listener.onBlockAdded(block);
+    @Override
+    public long getPrunedBlockNumber() {
+        return prunedBlockNumber;
+    }
+
+    @Override
+    public long getIndexedBlockNumber() {
+        return indexedBlockNumber;
+    }
+
+    @Override
+    public void stop() {
+        for (ExecutorService executor : new ExecutorService[] { indexer, pruner }) {
+            if (executor != null) {
+                executor.shutdown();
+                try {
+                    executor.awaitTermination(1, TimeUnit.MINUTES);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    logger.error("Interrupted while waiting for the background tasks to stop");
+                }
+            }
+        }
+        eventBus.stop();
+
+        synchronized (viewLock) {
+            isStopped = true;
+            while (openViews > 0) {
+                try {
+                    viewLock.wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    logger.error("Interrupted while waiting for the read views to close");
+                    break;
+                }
+            }
+        }
+    }
+
+    /**
+     * Starts an indexing task if the indexes are behind the latest block and no
+     * task is running.
+     */
+    protected void scheduleIndexing() {
+        if (indexer != null && !indexer.isShutdown() && indexedBlockNumber < latestBlock.getNumber()
+                && isIndexing.compareAndSet(false, true)) {
+            indexer.submit(() -> {
+                try {
+                    indexToLatest(true);
+                } catch (Exception e) {
+                    logger.error("Failed to index blocks", e);
+                } finally {
+                    isIndexing.set(false);
+                }
+
+                // blocks added while the flag was set
+                scheduleIndexing();
+            });
+        }
+    }
+
+    @Override
+    public void flushIndex() {
+        indexToLatest(false);
+    }
+
+    private void indexToLatest(boolean stopOnShutdown) {
+        synchronized (indexLock) {
+            long target;
+            while (indexedBlockNumber < (target = latestBlock.getNumber())
+                    && !(stopOnShutdown && indexer.isShutdown())) {
+                index(indexedBlockNumber + 1, Math.min(target, indexedBlockNumber + INDEX_BATCH_SIZE));
+            }
+        }
+    }
+
+    /**
+     * Indexes the transactions of the blocks within [from, to] by hash and by
+     * account. The indexed block number is written in the same batch, so an
+     * interrupted batch is simply redone.
+     * 
+     * @param from
+     * @param to
+     */
+    protected void index(long from, long to) {
+        Map<ByteArray, byte[]> indexUpdates = new LinkedHashMap<>();
+
+        for (long number = from; number <= to; number++) {
+            Block block = getBlock(number);
+            if (block == null) {
+                continue; // pruned, or imported from a snapshot
+            }
+
+            List<Transaction> txs = block.getTransactions();
+            long reward = config.getBlockReward(number);
+
+            for (int i = 0; i < txs.size(); i++) {
+                Transaction tx = txs.get(i);
+                reward += tx.getFee();
+
+                SimpleEncoder enc = new SimpleEncoder();
+                enc.writeLong(number);
+                enc.writeInt(i);
+                indexUpdates.put(ByteArray.of(Bytes.merge(TYPE_TRANSACTION_HASH, tx.getHash())), enc.toBytes());
+
+                addTransactionToAccount(indexUpdates, tx, tx.getFrom());
+                if (!Arrays.equals(tx.getFrom(), tx.getTo())) {
+                    addTransactionToAccount(indexUpdates, tx, tx.getTo());
+                }
+            }
+
+            if (number != genesis.getNumber()) {
+                // coinbase transaction
+                Transaction tx = new Transaction(TransactionType.COINBASE, block.getCoinbase(), reward, 0,
+                        block.getNumber(), block.getTimestamp(), Bytes.EMPTY_BYTES).sign(new EdDSA());
+                indexUpdates.put(ByteArray.of(Bytes.merge(TYPE_TRANSACTION_HASH, tx.getHash())), tx.toBytes());
+                addTransactionToAccount(indexUpdates, tx, block.getCoinbase());
+            }
+        }
+
+        indexUpdates.put(ByteArray.of(Bytes.of(TYPE_INDEXED_BLOCK_NUMBER)), Bytes.of(to));
+        writeBatch(indexDB, indexUpdates);
+        indexedBlockNumber = to;
+
+        logger.debug("Indexed blocks from {} to {}", from, to);
+    }
+
+    /**
+     * Starts a pruning task if enough blocks have fallen behind the prune depth
+     * and no task is running.
+     */
+    protected void schedulePruning() {
+        // the indexes of a block are dropped along with its body
+        long target = Math.min(latestBlock.getNumber() - config.dbPruneDepth(),
+                (indexer != null) ? indexedBlockNumber : Long.MAX_VALUE);
+        if (pruner != null && !pruner.isShutdown() && target >= prunedBlockNumber + PRUNE_BATCH_SIZE
+                && isPruning.compareAndSet(false, true)) {
+            pruner.submit(() -> {
+                try {
+                    while (prunedBlockNumber < target && !pruner.isShutdown()) {
+                        prune(prunedBlockNumber + 1, Math.min(target, prunedBlockNumber + PRUNE_BATCH_SIZE));
+                    }
+                } catch (Exception e) {
+                    logger.error("Failed to prune blocks", e);
+                } finally {
+                    isPruning.set(false);
+                }
+            });
+        }
+    }
+
+    /**
+     * Prunes the bodies and indexes of the blocks within [from, to].
+     * <p>
+     * Indexes go first, so a reader never finds an index entry of a missing
+     * body; the pruned block number is written last, so an interrupted batch is
+     * simply redone.
+     * 
+     * @param from
+     * @param to
+     */
+    protected void prune(long from, long to) {
+        Map<ByteArray, byte[]> indexUpdates = new LinkedHashMap<>();
+        List<Pair<byte[], byte[]>> blockUpdates = new ArrayList<>();
+        Set<ByteArray> addresses = new HashSet<>();
+
+        for (long number = from; number <= to; number++) {
+            Block block = getBlock(number);
+            if (block != null) {
+                for (Transaction tx : block.getTransactions()) {
+                    indexUpdates.put(ByteArray.of(Bytes.merge(TYPE_TRANSACTION_HASH, tx.getHash())), null);
+                    addresses.add(ByteArray.of(tx.getFrom()));
+                    addresses.add(ByteArray.of(tx.getTo()));
+                }
+                addresses.add(ByteArray.of(block.getCoinbase()));
+            }
+
+            for (byte part : new byte[] { TYPE_BLOCK_TRANSACTIONS, TYPE_BLOCK_RESULTS }) {
+                // the part, and its items if any
+                ClosableIterator<Entry<byte[], byte[]>> itr = blockDB.prefixIterator(getBlockKey(number, part));
+                try {
+                    while (itr.hasNext()) {
+                        blockUpdates.add(Pair.of(itr.next().getKey(), null));
+                    }
+                } finally {
+                    itr.close();
+                }
+                blockUpdates.add(Pair.of(Bytes.merge(part, Bytes.of(number)), null));
+            }
+        }
+
+        for (ByteArray address : addresses) {
+            pruneAccountTransactions(indexUpdates, address.getData(), to);
+        }
+
+        writeBatch(indexDB, indexUpdates);
+        blockDB.updateBatch(blockUpdates);
+        for (long number = from; number <= to; number++) {
+            blockCache.invalidate(number);
+        }
+        indexDB.put(Bytes.of(TYPE_PRUNED_BLOCK_NUMBER), Bytes.of(to));
+        prunedBlockNumber = to;
+
+        logger.debug("Pruned blocks from {} to {}", from, to);
+    }
+
+    /**
+     * Removes the oldest entries of an account's transaction index, up to the
+     * given block. The entries are in block order, so the scan stops at the
+     * first newer transaction. The transaction count is kept, and the index of
+     * the first retained transaction is recorded instead.
+     * 
+     * @param updates
+     * @param address
+     * @param to
+     */
+    private void pruneAccountTransactions(Map<ByteArray, byte[]> updates, byte[] address, long to) {
+        byte[] prefix = Bytes.merge(TYPE_ACCOUNT_TRANSACTION, address);
+        int first = -1;
+        ClosableIterator<Entry<byte[], byte[]>> itr = indexDB.prefixIterator(prefix);
+        try {
+            while (itr.hasNext()) {
+                Entry<byte[], byte[]> e = itr.next();
+                if (e.getKey().length != prefix.length + 4) {
+                    continue; // transaction count
+                }
+
+                ByteArray hashKey = ByteArray.of(Bytes.merge(TYPE_TRANSACTION_HASH, e.getValue()));
+                byte[] location = updates.containsKey(hashKey) ? null : indexDB.get(hashKey.getData());
+                if (location != null) {
+                    // the nonce of a coinbase transaction is its block number
+                    long number = (location.length > 64) ? Transaction.fromBytes(location).getNonce()
+                            : Bytes.toLong(Arrays.copyOf(location, 8));
+                    if (number > to) {
+                        break;
+                    }
+                    updates.put(hashKey, null);
+                }
+                updates.put(ByteArray.of(e.getKey()), null);
+                first = Bytes.toInt(Arrays.copyOfRange(e.getKey(), prefix.length, e.getKey().length)) + 1;
+            }
+        } finally {
+            itr.close();
+        }
+
+        if (first >= 0) {
+            updates.put(ByteArray.of(Bytes.merge(TYPE_FIRST_ACCOUNT_TRANSACTION, address)), Bytes.of(first));
         }
     }
 
@@ -319,52 +849,103 @@ public class BlockchainImpl implements Blockchain {
     }
 
     @Override
-    public void addListener(BlockchainListener listener) {
-        listeners.add(listener);
+    public void addListener(String name, BlockchainListener listener) {
+        eventBus.register(name, listener, LISTENER_QUEUE_SIZE);
+    }
+
+    /**
+     * Returns the bus delivering block events to the listeners.
+     * 
+     * @return
+     */
+    public BlockchainEventBus getEventBus() {
+        return eventBus;
     }
 
     @Override
     public int getTransactionCount(byte[] address) {
-        byte[] cnt = indexDB.get(Bytes.merge(TYPE_ACCOUNT_TRANSACTION, address));
-        return (cnt == null) ? 0 : Bytes.toInt(cnt);
+        return readTransactionCount(indexDB, address);
+    }
+
+    @Override
+    public int getFirstTransactionIndex(byte[] address) {
+        byte[] first = indexDB.get(Bytes.merge(TYPE_FIRST_ACCOUNT_TRANSACTION, address));
+        return (first == null) ? 0 : Bytes.toInt(first);
     }
 
     @Override
     public List<Transaction> getTransactions(byte[] address, int from, int to) {
         List<Transaction> list = new ArrayList<>();
+        from = Math.max(0, from);
+        if (from >= to) {
+            return list;
+        }
 
-        int total = getTransactionCount(address);
-        for (int i = from; i < total && i < to; i++) {
-            byte[] key = getNthTransactionIndexKey(address, i);
-            byte[] value = indexDB.get(key);
-            list.add(getTransaction(value));
+        // the N-th transaction keys of an account are contiguous, so one range scan does
+        List<byte[]> hashes = new ArrayList<>();
+        ClosableIterator<Entry<byte[], byte[]>> itr = indexDB.iterator(getNthTransactionIndexKey(address, from),
+                getNthTransactionIndexKey(address, to));
+        try {
+            while (itr.hasNext()) {
+                hashes.add(itr.next().getValue());
+            }
+        } finally {
+            itr.close();
         }
 
-        return list;
+        return getTransactions(hashes);
     }
 
     @Override
-    public List<String> getValidators() {
-        List<String> validators = new ArrayList<>();
+    public List<Transaction> getLatestTransactions(byte[] address, int limit) {
+        List<byte[]> hashes = new ArrayList<>();
+
+        // walks the N-th transaction keys backwards, skipping the count key which
+        // shares the prefix
+        byte[] prefix = Bytes.merge(TYPE_ACCOUNT_TRANSACTION, address);
+        ClosableIterator<Entry<byte[], byte[]>> itr = indexDB.reverseIterator(prefix);
+        try {
+            while (hashes.size() < limit && itr.hasNext()) {
+                Entry<byte[], byte[]> e = itr.next();
+                if (e.getKey().length == prefix.length + 4) {
+                    hashes.add(e.getValue());
+                }
+            }
+        } finally {
+            itr.close();
+        }
 
-        byte[] v = indexDB.get(Bytes.of(TYPE_VALIDATORS));
-        if (v != null) {
-            SimpleDecoder dec = new SimpleDecoder(v);
-            int n = dec.readInt();
-            for (int i = 0; i < n; i++) {
-                validators.add(dec.readString());
+        return getTransactions(hashes);
+    }
+
+    @Override
+    public synchronized ReadView openReadView() {
+        synchronized (viewLock) {
+            if (isStopped) {
+                throw new IllegalStateException("The blockchain has been stopped");
             }
+            openViews++;
         }
 
-        return validators;
+        // block application is serialized on this monitor, so all the snapshots
+        // are taken at the same height
+        return new SnapshotReadView(latestBlock.getNumber(), indexDB.snapshot(), accountDB.snapshot(),
+                delegateDB.snapshot(), voteDB.snapshot(), delegateState.getRanking());
     }
 
     @Override
-    public ValidatorStats getValidatorStats(byte[] address) {
-        byte[] key = Bytes.merge(TYPE_VALIDATOR_STATS, address);
-        byte[] value = indexDB.get(key);
+    public List<String> getValidators() {
+        return validatorSet.getValidators();
+    }
 
-        return (value == null) ? new ValidatorStats(0, 0, 0) : ValidatorStats.fromBytes(value);
+    @Override
+    public ValidatorSet getValidatorSet() {
+        return validatorSet;
+    }
+
+    @Override
+    public ValidatorStats getValidatorStats(byte[] address) {
+        return readValidatorStats(indexDB, address);
     }
 
     /**
@@ -373,12 +954,25 @@ public class BlockchainImpl implements Blockchain {
      * @param number
      */
     protected void updateValidators(long number) {
+        Map<ByteArray, byte[]> updates = new LinkedHashMap<>();
+        ValidatorSet newValidatorSet = updateValidators(updates, number);
+        writeBatch(indexDB, updates);
+        validatorSet = newValidatorSet;
+    }
+
+    /**
+     * Computes the validator set and stages it in the given index updates. The
+     * set is returned rather than published, so that it becomes visible only
+     * once the updates are written.
+     * 
+     * @param updates
+     * @param number
+     * @return the new validator set
+     */
+    protected ValidatorSet updateValidators(Map<ByteArray, byte[]> updates, long number) {
         List<String> validators = new ArrayList<>();
 
-        List<Delegate> delegates = delegateState.getDelegates();
-        int max = Math.min(delegates.size(), config.getNumberOfValidators(number));
-        for (int i = 0; i < max; i++) {
-            Delegate d = delegates.get(i);
+        for (Delegate d : delegateState.getTopDelegates(config.getNumberOfValidators(number))) {
             validators.add(Hex.encode(d.getAddress()));
         }
 
@@ -387,7 +981,9 @@ public class BlockchainImpl implements Blockchain {
         for (String v : validators) {
             enc.writeString(v);
         }
-        indexDB.put(Bytes.of(TYPE_VALIDATORS), enc.toBytes());
+        updates.put(ByteArray.of(Bytes.of(TYPE_VALIDATORS)), enc.toBytes());
+
+        return new ValidatorSet(number, validators);
     }
 
     /**
@@ -401,8 +997,27 @@ public class BlockchainImpl implements Blockchain {
      *            difference
      */
     protected void adjustValidatorStats(byte[] address, StatsType type, long delta) {
+        Map<ByteArray, byte[]> updates = new LinkedHashMap<>();
+        adjustValidatorStats(updates, address, type, delta);
+        writeBatch(indexDB, updates);
+    }
+
+    /**
+     * Adjusts validator statistics and stages the result in the given index
+     * updates.
+     * 
+     * @param updates
+     *            pending index updates
+     * @param address
+     *            validator address
+     * @param type
+     *            stats type
+     * @param delta
+     *            difference
+     */
+    protected void adjustValidatorStats(Map<ByteArray, byte[]> updates, byte[] address, StatsType type, long delta) {
         byte[] key = Bytes.merge(TYPE_VALIDATOR_STATS, address);
-        byte[] value = indexDB.get(key);
+        byte[] value = get(indexDB, updates, key);
 
         ValidatorStats stats = (value == null) ? new ValidatorStats(0, 0, 0) : ValidatorStats.fromBytes(value);
 
@@ -420,29 +1035,176 @@ public class BlockchainImpl implements Blockchain {
             break;
         }
 
-        indexDB.put(key, stats.toBytes());
+        updates.put(ByteArray.of(key), stats.toBytes());
     }
 
     /**
-     * Sets the total number of transaction of an account.
+     * Adds a transaction to an account and stages the result in the given index
+     * updates.
      * 
+     * @param updates
+     *            pending index updates
+     * @param tx
      * @param address
-     * @param total
      */
-    protected void setTransactionCount(byte[] address, int total) {
-        indexDB.put(Bytes.merge(TYPE_ACCOUNT_TRANSACTION, address), Bytes.of(total));
+    protected void addTransactionToAccount(Map<ByteArray, byte[]> updates, Transaction tx, byte[] address) {
+        byte[] key = Bytes.merge(TYPE_ACCOUNT_TRANSACTION, address);
+        byte[] cnt = get(indexDB, updates, key);
+        int total = (cnt == null) ? 0 : Bytes.toInt(cnt);
+
+        updates.put(ByteArray.of(getNthTransactionIndexKey(address, total)), tx.getHash());
+        updates.put(ByteArray.of(key), Bytes.of(total + 1));
     }
 
     /**
-     * Adds a transaction to an account.
+     * Looks up a list of transactions with one batched read of the index and one
+     * of the blocks they belong to.
      * 
-     * @param tx
-     * @param address
+     * @param hashes
+     * @return
+     */
+    private List<Transaction> getTransactions(List<byte[]> hashes) {
+        List<byte[]> keys = new ArrayList<>();
+        for (byte[] hash : hashes) {
+            keys.add(Bytes.merge(TYPE_TRANSACTION_HASH, hash));
+        }
+        List<byte[]> locations = indexDB.multiGet(keys);
+
+        // transactions are read one by one, except for the blocks of earlier
+        // versions, whose transactions are read once per block
+        List<byte[]> itemKeys = new ArrayList<>();
+        Map<Long, Integer> numbers = new HashMap<>();
+        List<byte[]> blockKeys = new ArrayList<>();
+        for (byte[] location : locations) {
+            if (location == null || location.length > 64) {
+                continue;
+            }
+
+            SimpleDecoder dec = new SimpleDecoder(location);
+            long number = dec.readLong();
+            if (location.length == ITEM_LOCATION_LENGTH) {
+                itemKeys.add(getBlockItemKey(number, TYPE_BLOCK_TRANSACTIONS, dec.readInt()));
+            } else if (!numbers.containsKey(number)) {
+                numbers.put(number, blockKeys.size());
+                blockKeys.add(getBlockKey(number, TYPE_BLOCK_TRANSACTIONS));
+            }
+        }
+        List<byte[]> items = blockDB.multiGet(itemKeys);
+        List<byte[]> blocks = blockDB.multiGet(blockKeys);
+
+        List<Transaction> list = new ArrayList<>();
+        int item = 0;
+        for (byte[] location : locations) {
+            if (location == null) {
+                continue;
+            } else if (location.length > 64) {
+                // coinbase transaction
+                list.add(Transaction.fromBytes(location));
+                continue;
+            } else if (location.length == ITEM_LOCATION_LENGTH) {
+                byte[] transaction = items.get(item++);
+                if (transaction != null) {
+                    list.add(Transaction.fromBytes(transaction));
+                }
+                continue;
+            }
+
+            SimpleDecoder dec = new SimpleDecoder(location);
+            long number = dec.readLong();
+            int start = dec.readInt();
+
+            int idx = numbers.get(number);
+            byte[] transactions = blocks.get(idx);
+            if (transactions == null) {
+                transactions = readBlockPart(number, TYPE_BLOCK_TRANSACTIONS);
+                if (transactions == null) {
+                    continue; // pruned
+                }
+                blocks.set(idx, transactions);
+            }
+            dec = new SimpleDecoder(transactions, start);
+            list.add(Transaction.fromBytes(dec.readBytes()));
+        }
+
+        return list;
+    }
+
+    /**
+     * Returns the key of a part of a block.
+     * 
+     * @param number
+     * @param part
+     * @return
+     */
+    protected static byte[] getBlockKey(long number, byte part) {
+        return Bytes.merge(Bytes.merge(TYPE_BLOCK, Bytes.of(number)), part);
+    }
+
+    /**
+     * Returns the key of a transaction or a result of a block.
+     * 
+     * @param number
+     * @param part
+     * @param index
+     * @return
      */
-    protected void addTransactionToAccount(Transaction tx, byte[] address) {
-        int total = getTransactionCount(address);
-        indexDB.put(getNthTransactionIndexKey(address, total), tx.getHash());
-        setTransactionCount(address, total + 1);
+    protected static byte[] getBlockItemKey(long number, byte part, int index) {
+        return Bytes.merge(getBlockKey(number, part), Bytes.of(index));
+    }
+
+    /**
+     * Reads all the parts of a block with one scan. The transactions and results
+     * stored one by one are joined into their block encoding.
+     * 
+     * @param number
+     * @return the parts, indexed by type
+     */
+    private byte[][] readBlockParts(long number) {
+        byte[][] parts = new byte[4][];
+        SimpleEncoder[] items = new SimpleEncoder[4];
+        int[] counts = new int[4];
+
+        byte[] prefix = Bytes.merge(TYPE_BLOCK, Bytes.of(number));
+        ClosableIterator<Entry<byte[], byte[]>> itr = blockDB.prefixIterator(prefix);
+        try {
+            while (itr.hasNext()) {
+                Entry<byte[], byte[]> e = itr.next();
+                byte part = e.getKey()[prefix.length];
+                if (e.getKey().length == prefix.length + 1) {
+                    parts[part] = e.getValue();
+                } else {
+                    if (items[part] == null) {
+                        items[part] = new SimpleEncoder();
+                    }
+                    items[part].writeBytes(e.getValue());
+                    counts[part]++;
+                }
+            }
+        } finally {
+            itr.close();
+        }
+
+        for (byte part : new byte[] { TYPE_BLOCK_TRANSACTIONS, TYPE_BLOCK_RESULTS }) {
+            if (items[part] != null && parts[part] != null) {
+                parts[part] = Bytes.merge(Bytes.of(counts[part]), items[part].toBytes());
+            }
+        }
+
+        if (parts[TYPE_BLOCK_HEADER] == null) {
+            // written by an earlier version
+            List<byte[]> keys = new ArrayList<>();
+            for (byte part = 0; part < parts.length; part++) {
+                keys.add(Bytes.merge(part, Bytes.of(number)));
+            }
+            parts = blockDB.multiGet(keys).toArray(parts);
+        }
+
+        return parts;
+    }
+
+    private byte[] readBlockPart(long number, byte part) {
+        byte[] value = blockDB.get(getBlockKey(number, part));
+        return (value != null) ? value : blockDB.get(Bytes.merge(part, Bytes.of(number)));
     }
 
     /**
@@ -456,6 +1218,147 @@ public class BlockchainImpl implements Blockchain {
         return Bytes.merge(Bytes.of(TYPE_ACCOUNT_TRANSACTION), address, Bytes.of(n));
     }
 
+    private static long readBlockNumber(KVDB db, byte[] hash) {
+        byte[] number = db.get(Bytes.merge(TYPE_BLOCK_HASH, hash));
+        return (number == null) ? -1 : Bytes.toLong(number);
+    }
+
+    private static int readTransactionCount(KVDB db, byte[] address) {
+        byte[] cnt = db.get(Bytes.merge(TYPE_ACCOUNT_TRANSACTION, address));
+        return (cnt == null) ? 0 : Bytes.toInt(cnt);
+    }
+
+    private static List<String> readValidators(KVDB db) {
+        List<String> validators = new ArrayList<>();
+
+        byte[] v = db.get(Bytes.of(TYPE_VALIDATORS));
+        if (v != null) {
+            SimpleDecoder dec = new SimpleDecoder(v);
+            int n = dec.readInt();
+            for (int i = 0; i < n; i++) {
+                validators.add(dec.readString());
+            }
+        }
+
+        return validators;
+    }
+
+    private static ValidatorStats readValidatorStats(KVDB db, byte[] address) {
+        byte[] key = Bytes.merge(TYPE_VALIDATOR_STATS, address);
+        byte[] value = db.get(key);
+
+        return (value == null) ? new ValidatorStats(0, 0, 0) : ValidatorStats.fromBytes(value);
+    }
+
+    /**
+     * Reads a key, taking the pending updates into account.
+     * 
+     * @param db
+     * @param updates
+     * @param key
+     * @return
+     */
+    private static byte[] get(KVDB db, Map<ByteArray, byte[]> updates, byte[] key) {
+        ByteArray k = ByteArray.of(key);
+        return updates.containsKey(k) ? updates.get(k) : db.get(key);
+    }
+
+    /**
+     * Writes the pending updates to the database in one batch.
+     * 
+     * @param db
+     * @param updates
+     */
+    private static void writeBatch(KVDB db, Map<ByteArray, byte[]> updates) {
+        List<Pair<byte[], byte[]>> pairs = new ArrayList<>();
+        for (Entry<ByteArray, byte[]> e : updates.entrySet()) {
+            pairs.add(Pair.of(e.getKey().getData(), e.getValue()));
+        }
+        db.updateBatch(pairs);
+    }
+
+    /**
+     * Read view backed by database snapshots.
+     */
+    private class SnapshotReadView implements ReadView {
+        private long number;
+
+        private KVDB indexSnapshot;
+        private KVDB accountSnapshot;
+        private KVDB delegateSnapshot;
+        private KVDB voteSnapshot;
+
+        private AccountState accountView;
+        private DelegateState delegateView;
+
+        private boolean isClosed;
+
+        SnapshotReadView(long number, KVDB indexSnapshot, KVDB accountSnapshot, KVDB delegateSnapshot,
+                KVDB voteSnapshot, List<Delegate> ranking) {
+            this.number = number;
+            this.indexSnapshot = indexSnapshot;
+            this.accountSnapshot = accountSnapshot;
+            this.delegateSnapshot = delegateSnapshot;
+            this.voteSnapshot = voteSnapshot;
+
+            this.accountView = new AccountStateImpl(accountSnapshot);
+            this.delegateView = new DelegateStateImpl(BlockchainImpl.this, delegateSnapshot, voteSnapshot, ranking);
+        }
+
+        @Override
+        public long getBlockNumber() {
+            return number;
+        }
+
+        @Override
+        public long getBlockNumber(byte[] hash) {
+            return readBlockNumber(indexSnapshot, hash);
+        }
+
+        @Override
+        public AccountState getAccountState() {
+            return accountView;
+        }
+
+        @Override
+        public DelegateState getDelegateState() {
+            return delegateView;
+        }
+
+        @Override
+        public int getTransactionCount(byte[] address) {
+            return readTransactionCount(indexSnapshot, address);
+        }
+
+        @Override
+        public List<String> getValidators() {
+            return readValidators(indexSnapshot);
+        }
+
+        @Override
+        public ValidatorStats getValidatorStats(byte[] address) {
+            return readValidatorStats(indexSnapshot, address);
+        }
+
+        @Override
+        public void close() {
+            synchronized (viewLock) {
+                if (isClosed) {
+                    return;
+                }
+                isClosed = true;
+
+                indexSnapshot.close();
+                accountSnapshot.close();
+                delegateSnapshot.close();
+                voteSnapshot.close();
+
+                openViews--;
+                viewLock.notifyAll();
+            }
+        }
+    }
+
     /**
      * Validator statistics.
      *
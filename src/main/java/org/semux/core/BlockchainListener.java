@@ -14,4 +14,16 @@ public interface BlockchainListener {
      * @param block
      */
     void onBlockAdded(Block block);
+
+    /**
+     * Callback when the listener fell behind, and the blocks added since the last
+     * callback were coalesced into the latest one. The skipped blocks are not
+     * delivered.
+     * 
+     * @param block
+     *            the latest block
+     * @param skipped
+     *            the number of blocks before it which were not delivered
+     */
+    void onLatestBlock(Block block, long skipped);
 }
@@ -17,6 +17,8 @@ import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock.ReadLock;
 
 import org.apache.commons.collections4.map.LRUMap;
 import org.apache.commons.lang3.tuple.Pair;
@@ -63,6 +65,7 @@ public class PendingManager implements Runnable, BlockchainListener {
 
     private Blockchain chain;
     private ChannelManager channelMgr;
+    private ReentrantReadWriteLock stateLock;
     private AccountState pendingAS;
     private DelegateState pendingDS;
 
@@ -87,6 +90,11 @@ public class PendingManager implements Runnable, BlockchainListener {
 
     private volatile boolean isRunning;
 
+    /**
+     * Number of the block the pending state was last rebuilt on.
+     */
+    private long blockNumber;
+
     /**
      * Creates a pending manager.
      */
@@ -95,9 +103,11 @@ public class PendingManager implements Runnable, BlockchainListener {
 
         this.chain = kernel.getBlockchain();
         this.channelMgr = kernel.getChannelManager();
+        this.stateLock = kernel.getStateLock();
 
         this.pendingAS = chain.getAccountState().track();
         this.pendingDS = chain.getDelegateState().track();
+        this.blockNumber = chain.getLatestBlockNumber();
 
         this.exec = Executors.newSingleThreadScheduledExecutor(factory);
     }
@@ -114,7 +124,7 @@ public class PendingManager implements Runnable, BlockchainListener {
              */
             this.validateFuture = exec.scheduleAtFixedRate(this, 2, 2, TimeUnit.MILLISECONDS);
 
-            this.chain.addListener(this);
+            this.chain.addListener("pending-mgr", this);
 
             logger.debug("Pending manager started");
             this.isRunning = true;
@@ -191,6 +201,12 @@ public class PendingManager implements Runnable, BlockchainListener {
      * @return
      */
     public synchronized Pair<List<Transaction>, List<TransactionResult>> getTransactionsAndResults(int limit) {
+        // the block event may still be on its way
+        Block latest = chain.getLatestBlock();
+        if (latest.getNumber() > blockNumber) {
+            onBlockAdded(latest);
+        }
+
         List<Transaction> txs = new ArrayList<>();
         List<TransactionResult> res = new ArrayList<>();
 
@@ -245,7 +261,17 @@ public class PendingManager implements Runnable, BlockchainListener {
 
     @Override
     public synchronized void onBlockAdded(Block block) {
-        if (isRunning) {
+        if (!isRunning || block.getNumber() <= blockNumber) {
+            return;
+        }
+
+        // the pending state is rebuilt on the latest state, which may already
+        // include later blocks; the state lock keeps it from being half-applied
+        ReadLock lock = stateLock.readLock();
+        lock.lock();
+        try {
+            blockNumber = Math.max(block.getNumber(), chain.getLatestBlockNumber());
+
             long t1 = System.currentTimeMillis();
 
             // clear transaction pool
@@ -259,9 +285,17 @@ public class PendingManager implements Runnable, BlockchainListener {
 
             long t2 = System.currentTimeMillis();
             logger.debug("Pending tx evaluation: # txs = {} / {},  time =  {} ms", accepted, txs.size(), t2 - t1);
+        } finally {
+            lock.unlock();
         }
     }
 
+    @Override
+    public void onLatestBlock(Block block, long skipped) {
+        // the pending state is rebuilt on the latest state, skipped blocks included
+        onBlockAdded(block);
+    }
+
     @Override
     public synchronized void run() {
         Transaction tx;
@@ -0,0 +1,78 @@
+/**
+ * Copyright (c) 2017 The Semux Developers
+ *
+ * Distributed under the MIT software license, see the accompanying file
+ * LICENSE or https://opensource.org/licenses/mit-license.php
+ */
+package org.semux.core;
+
+import java.util.List;
+
+import org.semux.core.BlockchainImpl.ValidatorStats;
+import org.semux.core.state.AccountState;
+import org.semux.core.state.DelegateState;
+
+/**
+ * A consistent, read-only view of the blockchain state, pinned to one block.
+ * Blocks added after the view was opened are not visible through it.
+ */
+public interface ReadView {
+
+    /**
+     * Returns the number of the block this view is pinned to.
+     * 
+     * @return
+     */
+    long getBlockNumber();
+
+    /**
+     * Returns block number by hash.
+     * 
+     * @param hash
+     * @return
+     */
+    long getBlockNumber(byte[] hash);
+
+    /**
+     * Returns the account state. Updates can be tracked but never committed.
+     * 
+     * @return
+     */
+    AccountState getAccountState();
+
+    /**
+     * Returns the delegate state. Updates can be tracked but never committed.
+     * 
+     * @return
+     */
+    DelegateState getDelegateState();
+
+    /**
+     * Returns the total number of transactions from/to the given address,
+     * including the pruned ones.
+     * 
+     * @param address
+     * @return
+     */
+    int getTransactionCount(byte[] address);
+
+    /**
+     * Returns the validator set.
+     * 
+     * @return
+     */
+    List<String> getValidators();
+
+    /**
+     * Returns the statistics of a validator.
+     * 
+     * @param address
+     * @return
+     */
+    ValidatorStats getValidatorStats(byte[] address);
+
+    /**
+     * Releases the underlying database snapshots.
+     */
+    void close();
+}
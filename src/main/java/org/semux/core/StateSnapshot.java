@@ -0,0 +1,335 @@
+/**
+ * Copyright (c) 2017 The Semux Developers
+ *
+ * Distributed under the MIT software license, see the accompanying file
+ * LICENSE or https://opensource.org/licenses/mit-license.php
+ */
+package org.semux.core;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map.Entry;
+
+import org.apache.commons.lang3.tuple.Pair;
+import org.semux.config.Config;
+import org.semux.core.exception.BlockchainException;
+import org.semux.crypto.Hash;
+import org.semux.db.DBFactory;
+import org.semux.db.DBName;
+import org.semux.db.KVDB;
+import org.semux.util.Bytes;
+import org.semux.util.ClosableIterator;
+import org.semux.util.SimpleDecoder;
+import org.semux.util.SimpleEncoder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Snapshot of the chain state at a block, used to bootstrap a node without
+ * replaying the chain.
+ *
+ * <pre>
+ * file structure:
+ *
+ * [magic, version]
+ * [length, chunk, checksum] ...
+ * [0]
+ * [state_hash]
+ * </pre>
+ *
+ * The first chunk is the block the state belongs to; each of the following
+ * holds a sorted run of entries of one database. The checksum of a chunk is its
+ * hash, and the state hash chains the checksums of all the chunks.
+ * <p>
+ * The checksums only guard against corruption, as anyone can recompute them.
+ * The state hash printed on export is to be published along with the block
+ * hash, and both are pinned on import.
+ * <p>
+ * The account, delegate and vote databases are copied as a whole, along with
+ * the validators and validator statistics of the index database.
+ */
+public class StateSnapshot {
+
+    private static final Logger logger = LoggerFactory.getLogger(StateSnapshot.class);
+
+    private static final int MAGIC = 0x534d5853; // "SMXS"
+    private static final int VERSION = 1;
+
+    /**
+     * Approximate size of the entries of a chunk, in bytes.
+     */
+    private static final int CHUNK_SIZE = 1024 * 1024;
+
+    /**
+     * Upper bound of the length of a chunk, which guards against corrupted
+     * lengths.
+     */
+    private static final int MAX_CHUNK_LENGTH = 64 * 1024 * 1024;
+
+    private static final DBName[] STATE_DBS = { DBName.ACCOUNT, DBName.DELEGATE, DBName.VOTE };
+    private static final byte[][] INDEX_PREFIXES = { Bytes.of(BlockchainImpl.TYPE_VALIDATORS),
+            Bytes.of(BlockchainImpl.TYPE_VALIDATOR_STATS) };
+
+    private Block block;
+    private byte[] stateHash;
+
+    private StateSnapshot(Block block, byte[] stateHash) {
+        this.block = block;
+        this.stateHash = stateHash;
+    }
+
+    /**
+     * Exports the state at the latest block. The node must not be running.
+     *
+     * @param config
+     * @param factory
+     * @param file
+     * @return
+     * @throws IOException
+     */
+    public static StateSnapshot export(Config config, DBFactory factory, File file) throws IOException {
+        BlockchainImpl chain = new BlockchainImpl(config, factory);
+        chain.stop();
+        Block block = chain.getLatestBlock();
+
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+
+            SimpleEncoder enc = new SimpleEncoder();
+            enc.writeBytes(block.toBytesHeader());
+            enc.writeBytes(block.toBytesTransactions());
+            enc.writeBytes(block.toBytesResults());
+            enc.writeBytes(block.toBytesVotes());
+            byte[] stateHash = writeChunk(out, Bytes.EMPTY_HASH, enc.toBytes());
+
+            for (DBName name : STATE_DBS) {
+                stateHash = writeEntries(out, stateHash, name, factory.getDB(name).iterator());
+            }
+            for (byte[] prefix : INDEX_PREFIXES) {
+                stateHash = writeEntries(out, stateHash, DBName.INDEX,
+                        factory.getDB(DBName.INDEX).prefixIterator(prefix));
+            }
+
+            out.writeInt(0);
+            out.write(stateHash);
+
+            return new StateSnapshot(block, stateHash);
+        }
+    }
+
+    /**
+     * Imports a snapshot into empty databases. The snapshot is verified as a
+     * whole, and its block and state against the given hashes, before anything
+     * is written.
+     *
+     * @param factory
+     * @param file
+     * @param blockHash
+     *            the trusted hash of the snapshot block
+     * @param stateHash
+     *            the trusted state hash of the snapshot
+     * @return
+     * @throws IOException
+     */
+    public static StateSnapshot importTo(DBFactory factory, File file, byte[] blockHash, byte[] stateHash)
+            throws IOException {
+        KVDB indexDB = factory.getDB(DBName.INDEX);
+        if (indexDB.get(Bytes.of(BlockchainImpl.TYPE_LATEST_BLOCK_NUMBER)) != null) {
+            throw new BlockchainException("The database is not empty");
+        }
+
+        StateSnapshot snapshot = read(file, null);
+        if (!Arrays.equals(snapshot.getBlock().getHash(), blockHash)) {
+            throw new BlockchainException("The snapshot block does not match the given hash");
+        }
+        if (!Arrays.equals(snapshot.getStateHash(), stateHash)) {
+            throw new BlockchainException("The snapshot state does not match the given hash");
+        }
+
+        read(file, factory);
+
+        Block block = snapshot.getBlock();
+        long number = block.getNumber();
+        List<Pair<byte[], byte[]>> blockUpdates = new ArrayList<>();
+        blockUpdates.add(Pair.of(BlockchainImpl.getBlockKey(number, BlockchainImpl.TYPE_BLOCK_HEADER),
+                block.toBytesHeader()));
+        blockUpdates.add(Pair.of(BlockchainImpl.getBlockKey(number, BlockchainImpl.TYPE_BLOCK_TRANSACTIONS),
+                block.toBytesTransactions()));
+        blockUpdates.add(Pair.of(BlockchainImpl.getBlockKey(number, BlockchainImpl.TYPE_BLOCK_RESULTS),
+                block.toBytesResults()));
+        blockUpdates.add(Pair.of(BlockchainImpl.getBlockKey(number, BlockchainImpl.TYPE_BLOCK_VOTES),
+                block.toBytesVotes()));
+        factory.getDB(DBName.BLOCK).updateBatch(blockUpdates);
+
+        // the earlier blocks are missing, as if pruned, and have nothing to index
+        List<Pair<byte[], byte[]>> indexUpdates = new ArrayList<>();
+        indexUpdates.add(Pair.of(Bytes.merge(BlockchainImpl.TYPE_BLOCK_HASH, block.getHash()), Bytes.of(number)));
+        indexUpdates.add(Pair.of(Bytes.of(BlockchainImpl.TYPE_PRUNED_BLOCK_NUMBER),
+                Bytes.of(Math.max(0, number - 1))));
+        indexUpdates.add(Pair.of(Bytes.of(BlockchainImpl.TYPE_INDEXED_BLOCK_NUMBER), Bytes.of(number)));
+        indexUpdates.add(Pair.of(Bytes.of(BlockchainImpl.TYPE_LATEST_BLOCK_NUMBER), Bytes.of(number)));
+        indexDB.updateBatch(indexUpdates);
+
+        return snapshot;
+    }
+
+    /**
+     * Reads and verifies a snapshot, loading the entries into the databases if a
+     * factory is given.
+     *
+     * @param file
+     * @param factory
+     * @return
+     * @throws IOException
+     */
+    private static StateSnapshot read(File file, DBFactory factory) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                throw new BlockchainException("Unsupported snapshot file");
+            }
+
+            byte[] body = readChunk(in);
+            if (body == null) {
+                throw new BlockchainException("The snapshot has no block");
+            }
+            byte[] stateHash = Hash.h256(Bytes.EMPTY_HASH, Hash.h256(body));
+            SimpleDecoder dec = new SimpleDecoder(body);
+            Block block = Block.fromBytes(dec.readBytes(), dec.readBytes(), dec.readBytes(), dec.readBytes());
+            if (!block.getHeader().validate()) {
+                throw new BlockchainException("The snapshot block is invalid");
+            }
+
+            long entries = 0;
+            while ((body = readChunk(in)) != null) {
+                stateHash = Hash.h256(stateHash, Hash.h256(body));
+                dec = new SimpleDecoder(body);
+                DBName name = DBName.values()[dec.readByte()];
+                int n = dec.readInt();
+
+                List<Pair<byte[], byte[]>> pairs = new ArrayList<>(n);
+                for (int i = 0; i < n; i++) {
+                    byte[] key = dec.readBytes();
+                    byte[] value = dec.readBytes();
+                    if (name == DBName.INDEX && !isIndexKey(key)) {
+                        throw new BlockchainException("Unexpected index entry in the snapshot");
+                    }
+                    pairs.add(Pair.of(key, value));
+                }
+                entries += n;
+
+                if (factory != null) {
+                    // the entries are sorted, so batches append to the tables
+                    factory.getDB(name).updateBatch(pairs);
+                }
+            }
+
+            byte[] expected = new byte[32];
+            in.readFully(expected);
+            if (!Arrays.equals(stateHash, expected)) {
+                throw new BlockchainException("The snapshot state hash does not match");
+            }
+
+            if (factory != null) {
+                logger.info("Imported {} entries of the state at block #{}", entries, block.getNumber());
+            }
+            return new StateSnapshot(block, stateHash);
+        }
+    }
+
+    private static byte[] writeEntries(DataOutputStream out, byte[] stateHash, DBName name,
+            ClosableIterator<Entry<byte[], byte[]>> itr) throws IOException {
+        try {
+            List<Entry<byte[], byte[]>> entries = new ArrayList<>();
+            int size = 0;
+            while (itr.hasNext()) {
+                Entry<byte[], byte[]> e = itr.next();
+                entries.add(e);
+                size += e.getKey().length + e.getValue().length;
+
+                if (size >= CHUNK_SIZE || !itr.hasNext()) {
+                    SimpleEncoder enc = new SimpleEncoder();
+                    enc.writeByte((byte) name.ordinal());
+                    enc.writeInt(entries.size());
+                    for (Entry<byte[], byte[]> entry : entries) {
+                        enc.writeBytes(entry.getKey());
+                        enc.writeBytes(entry.getValue());
+                    }
+                    stateHash = writeChunk(out, stateHash, enc.toBytes());
+
+                    entries.clear();
+                    size = 0;
+                }
+            }
+            return stateHash;
+        } finally {
+            itr.close();
+        }
+    }
+
+    private static byte[] writeChunk(DataOutputStream out, byte[] stateHash, byte[] body) throws IOException {
+        byte[] checksum = Hash.h256(body);
+        out.writeInt(body.length);
+        out.write(body);
+        out.write(checksum);
+        return Hash.h256(stateHash, checksum);
+    }
+
+    /**
+     * Reads a chunk and verifies its checksum, or returns null at the end of the
+     * chunks.
+     */
+    private static byte[] readChunk(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length == 0) {
+            return null;
+        } else if (length < 0 || length > MAX_CHUNK_LENGTH) {
+            throw new BlockchainException("Invalid snapshot chunk length: " + length);
+        }
+
+        byte[] body = new byte[length];
+        byte[] checksum = new byte[32];
+        in.readFully(body);
+        in.readFully(checksum);
+        if (!Arrays.equals(Hash.h256(body), checksum)) {
+            throw new BlockchainException("Corrupted snapshot chunk");
+        }
+        return body;
+    }
+
+    private static boolean isIndexKey(byte[] key) {
+        for (byte[] prefix : INDEX_PREFIXES) {
+            if (key.length >= prefix.length && Arrays.equals(Arrays.copyOf(key, prefix.length), prefix)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns the block the state belongs to.
+     *
+     * @return
+     */
+    public Block getBlock() {
+        return block;
+    }
+
+    /**
+     * Returns the hash chaining the checksums of all the chunks.
+     *
+     * @return
+     */
+    public byte[] getStateHash() {
+        return stateHash;
+    }
+}
@@ -9,12 +9,23 @@ package org.semux.core;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.semux.config.Config;
+import org.semux.core.exception.BlockchainException;
 import org.semux.core.state.Account;
 import org.semux.core.state.AccountState;
 import org.semux.core.state.DelegateState;
+import org.semux.util.ByteArray;
 import org.semux.util.Bytes;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -26,6 +37,26 @@ public class TransactionExecutor {
 
     private static final Logger logger = LoggerFactory.getLogger(TransactionExecutor.class);
 
+    /**
+     * Minimum number of transactions worth executing in parallel.
+     */
+    private static final int PARALLEL_THRESHOLD = 64;
+
+    private static final int PARALLELISM = Runtime.getRuntime().availableProcessors();
+
+    private static final ThreadFactory factory = new ThreadFactory() {
+        private AtomicInteger cnt = new AtomicInteger(0);
+
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread t = new Thread(r, "tx-exec-" + cnt.getAndIncrement());
+            t.setDaemon(true);
+            return t;
+        }
+    };
+
+    private static final ExecutorService exec = Executors.newFixedThreadPool(PARALLELISM, factory);
+
     private Config config;
 
     /**
@@ -54,89 +85,254 @@ public class TransactionExecutor {
         List<TransactionResult> results = new ArrayList<>();
 
         for (Transaction tx : txs) {
-            TransactionResult result = new TransactionResult(false);
-            results.add(result);
-
-            byte[] from = tx.getFrom();
-            byte[] to = tx.getTo();
-            long value = tx.getValue();
-            long nonce = tx.getNonce();
-            long fee = tx.getFee();
-            byte[] data = tx.getData();
-
-            Account acc = as.getAccount(from);
-            long available = acc.getAvailable();
-            long locked = acc.getLocked();
-
-            // check nonce
-            if (nonce != acc.getNonce()) {
-                continue;
-            }
+            results.add(executeTransaction(tx, as, ds));
+        }
 
-            // check transaction fee
-            if (fee < config.minTransactionFee()) {
-                continue;
-            }
+        return results;
+    }
+
+    /**
+     * Execute a list of transactions in parallel, with the same results and state
+     * updates as {@link #execute(List, AccountState, DelegateState)}.
+     * <p>
+     * The transactions are partitioned into groups which share no account, and
+     * all the transactions touching the delegate state into one group. Groups are
+     * executed on their own tracked states, each in block order, and the states
+     * merged afterwards. Small blocks are executed serially.
+     * 
+     * NOTE: transaction format and signature are assumed to be success.
+     * 
+     * @param txs
+     *            transactions
+     * @param as
+     *            account state
+     * @param ds
+     *            delegate state
+     * @return
+     */
+    public List<TransactionResult> executeParallel(List<Transaction> txs, AccountState as, DelegateState ds) {
+        return executeParallel(txs, as, ds, PARALLELISM);
+    }
 
-            switch (tx.getType()) {
-            case TRANSFER: {
-                if (fee <= available && value <= available && value + fee <= available) {
+    /**
+     * Execute a list of transactions in at most the given number of parallel
+     * tasks.
+     * 
+     * @param txs
+     * @param as
+     * @param ds
+     * @param parallelism
+     * @return
+     */
+    protected List<TransactionResult> executeParallel(List<Transaction> txs, AccountState as, DelegateState ds,
+            int parallelism) {
+        if (txs.size() < PARALLEL_THRESHOLD) {
+            return execute(txs, as, ds);
+        }
 
-                    as.adjustAvailable(from, -value - fee);
-                    as.adjustAvailable(to, value);
+        List<List<Integer>> buckets = partition(txs, parallelism);
+        if (buckets.size() < 2) {
+            return execute(txs, as, ds);
+        }
+
+        TransactionResult[] results = new TransactionResult[txs.size()];
+        List<AccountState> accountStates = new ArrayList<>();
+        List<DelegateState> delegateStates = new ArrayList<>();
+        List<Future<?>> futures = new ArrayList<>();
+        for (List<Integer> bucket : buckets) {
+            AccountState bas = as.track();
+            DelegateState bds = ds.track();
+            accountStates.add(bas);
+            delegateStates.add(bds);
 
-                    result.setSuccess(true);
+            futures.add(exec.submit(() -> {
+                for (int i : bucket) {
+                    results[i] = executeTransaction(txs.get(i), bas, bds);
                 }
-                break;
+            }));
+        }
+
+        try {
+            for (Future<?> f : futures) {
+                f.get();
             }
-            case DELEGATE: {
-                if (fee <= available && value <= available && value + fee <= available //
-                        && Arrays.equals(from, to) //
-                        && value >= config.minDelegateFee() //
-                        && data.length <= 16 && Bytes.toString(data).matches("[_a-z0-9]{4,16}") //
-                        && ds.register(to, data)) {
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new BlockchainException("Interrupted while executing transactions", e);
+        } catch (ExecutionException e) {
+            throw new BlockchainException("Failed to execute transactions", e.getCause());
+        }
 
-                    as.adjustAvailable(from, -value - fee);
+        // the buckets touch disjoint keys, so the order of merging is irrelevant
+        for (int i = 0; i < buckets.size(); i++) {
+            accountStates.get(i).commit();
+            delegateStates.get(i).commit();
+        }
 
-                    result.setSuccess(true);
-                }
-                break;
+        return Arrays.asList(results);
+    }
+
+    /**
+     * Partitions transactions into at most the given number of buckets, so that
+     * no two buckets touch the same account or the delegate state. The indices
+     * of each bucket are in block order.
+     * 
+     * @param txs
+     * @param n
+     * @return
+     */
+    protected static List<List<Integer>> partition(List<Transaction> txs, int n) {
+        // union-find over the accounts, and the delegate state as a whole
+        Map<ByteArray, Integer> ids = new HashMap<>();
+        int[] parents = new int[txs.size() * 2 + 1];
+        int delegates = 0;
+        ids.put(ByteArray.of(Bytes.EMPTY_BYTES), delegates);
+        parents[delegates] = delegates;
+
+        int[] roots = new int[txs.size()];
+        for (int i = 0; i < txs.size(); i++) {
+            Transaction tx = txs.get(i);
+            int from = id(ids, parents, tx.getFrom());
+            union(parents, from, id(ids, parents, tx.getTo()));
+            if (tx.getType() != TransactionType.TRANSFER) {
+                union(parents, from, delegates);
             }
-            case VOTE: {
-                if (fee <= available && value <= available && value + fee <= available //
-                        && ds.vote(from, to, value)) {
+            roots[i] = from;
+        }
 
-                    as.adjustAvailable(from, -value - fee);
-                    as.adjustLocked(from, value);
+        Map<Integer, List<Integer>> groups = new HashMap<>();
+        for (int i = 0; i < txs.size(); i++) {
+            groups.computeIfAbsent(find(parents, roots[i]), k -> new ArrayList<>()).add(i);
+        }
 
-                    result.setSuccess(true);
-                }
-                break;
+        // the largest groups first, each into the least loaded bucket
+        List<List<Integer>> sorted = new ArrayList<>(groups.values());
+        sorted.sort((g1, g2) -> Integer.compare(g2.size(), g1.size()));
+        List<List<Integer>> buckets = new ArrayList<>();
+        for (List<Integer> group : sorted) {
+            if (buckets.size() < n) {
+                buckets.add(new ArrayList<>(group));
+            } else {
+                buckets.stream().min(Comparator.comparingInt(List::size)).get().addAll(group);
             }
-            case UNVOTE: {
-                if (fee <= available //
-                        && value <= locked //
-                        && ds.unvote(from, to, value)) {
+        }
+        for (List<Integer> bucket : buckets) {
+            Collections.sort(bucket);
+        }
 
-                    as.adjustAvailable(from, value - fee);
-                    as.adjustLocked(from, -value);
+        return buckets;
+    }
 
-                    result.setSuccess(true);
-                }
-                break;
+    private static int id(Map<ByteArray, Integer> ids, int[] parents, byte[] address) {
+        return ids.computeIfAbsent(ByteArray.of(address), k -> {
+            int id = ids.size();
+            parents[id] = id;
+            return id;
+        });
+    }
+
+    private static int find(int[] parents, int x) {
+        while (parents[x] != x) {
+            parents[x] = parents[parents[x]];
+            x = parents[x];
+        }
+        return x;
+    }
+
+    private static void union(int[] parents, int x, int y) {
+        parents[find(parents, x)] = find(parents, y);
+    }
+
+    /**
+     * Execute a transaction.
+     * 
+     * @param tx
+     * @param as
+     * @param ds
+     * @return
+     */
+    private TransactionResult executeTransaction(Transaction tx, AccountState as, DelegateState ds) {
+        TransactionResult result = new TransactionResult(false);
+
+        byte[] from = tx.getFrom();
+        byte[] to = tx.getTo();
+        long value = tx.getValue();
+        long nonce = tx.getNonce();
+        long fee = tx.getFee();
+        byte[] data = tx.getData();
+
+        Account acc = as.getAccount(from);
+        long available = acc.getAvailable();
+        long locked = acc.getLocked();
+
+        // check nonce
+        if (nonce != acc.getNonce()) {
+            return result;
+        }
+
+        // check transaction fee
+        if (fee < config.minTransactionFee()) {
+            return result;
+        }
+
+        switch (tx.getType()) {
+        case TRANSFER: {
+            if (fee <= available && value <= available && value + fee <= available) {
+
+                as.adjustAvailable(from, -value - fee);
+                as.adjustAvailable(to, value);
+
+                result.setSuccess(true);
             }
-            default:
-                logger.debug("Unsupported transaction type: {}", tx.getType());
-                break;
+            break;
+        }
+        case DELEGATE: {
+            if (fee <= available && value <= available && value + fee <= available //
+                    && Arrays.equals(from, to) //
+                    && value >= config.minDelegateFee() //
+                    && data.length <= 16 && Bytes.toString(data).matches("[_a-z0-9]{4,16}") //
+                    && ds.register(to, data)) {
+
+                as.adjustAvailable(from, -value - fee);
+
+                result.setSuccess(true);
             }
+            break;
+        }
+        case VOTE: {
+            if (fee <= available && value <= available && value + fee <= available //
+                    && ds.vote(from, to, value)) {
+
+                as.adjustAvailable(from, -value - fee);
+                as.adjustLocked(from, value);
 
-            // increase nonce if success
-            if (result.isSuccess()) {
-                as.increaseNonce(from);
+                result.setSuccess(true);
             }
+            break;
         }
+        case UNVOTE: {
+            if (fee <= available //
+                    && value <= locked //
+                    && ds.unvote(from, to, value)) {
 
-        return results;
+                as.adjustAvailable(from, value - fee);
+                as.adjustLocked(from, -value);
+
+                result.setSuccess(true);
+            }
+            break;
+        }
+        default:
+            logger.debug("Unsupported transaction type: {}", tx.getType());
+            break;
+        }
+
+        // increase nonce if success
+        if (result.isSuccess()) {
+            as.increaseNonce(from);
+        }
+
+        return result;
     }
 
     /**
@@ -0,0 +1,121 @@
+/**
+ * Copyright (c) 2017 The Semux Developers
+ *
+ * Distributed under the MIT software license, see the accompanying file
+ * LICENSE or https://opensource.org/licenses/mit-license.php
+ */
+package org.semux.core;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.semux.crypto.Hex;
+import org.semux.util.ByteArray;
+
+/**
+ * An immutable validator set, indexed by address and by hex-encoded address.
+ * <p>
+ * A set is versioned by the number of the block it was computed at; a new set
+ * replaces the old one as a whole, so readers always see a consistent set.
+ */
+public class ValidatorSet {
+
+    private final long number;
+    private final List<String> validators;
+    private final Map<String, Integer> hexIndex = new HashMap<>();
+    private final Map<ByteArray, Integer> addressIndex = new HashMap<>();
+
+    /**
+     * Create a validator set.
+     *
+     * @param number
+     *            the block number the set was computed at
+     * @param validators
+     *            hex-encoded validator addresses, in order
+     */
+    public ValidatorSet(long number, List<String> validators) {
+        this.number = number;
+        this.validators = Collections.unmodifiableList(new ArrayList<>(validators));
+
+        for (int i = 0; i < validators.size(); i++) {
+            hexIndex.put(validators.get(i), i);
+            addressIndex.put(ByteArray.of(Hex.decode(validators.get(i))), i);
+        }
+    }
+
+    /**
+     * Returns the number of the block this set was computed at, which serves as
+     * its version.
+     *
+     * @return
+     */
+    public long getNumber() {
+        return number;
+    }
+
+    /**
+     * Returns the hex-encoded validator addresses, in order.
+     *
+     * @return an unmodifiable list
+     */
+    public List<String> getValidators() {
+        return validators;
+    }
+
+    /**
+     * Returns the number of validators.
+     *
+     * @return
+     */
+    public int size() {
+        return validators.size();
+    }
+
+    /**
+     * Returns whether a hex-encoded address is a validator.
+     *
+     * @param address
+     * @return
+     */
+    public boolean contains(String address) {
+        return hexIndex.containsKey(address);
+    }
+
+    /**
+     * Returns whether an address is a validator.
+     *
+     * @param address
+     * @return
+     */
+    public boolean contains(byte[] address) {
+        return addressIndex.containsKey(ByteArray.of(address));
+    }
+
+    /**
+     * Returns the position of a hex-encoded address in the set, or -1.
+     *
+     * @param address
+     * @return
+     */
+    public int indexOf(String address) {
+        return hexIndex.getOrDefault(address, -1);
+    }
+
+    /**
+     * Returns the position of an address in the set, or -1.
+     *
+     * @param address
+     * @return
+     */
+    public int indexOf(byte[] address) {
+        return addressIndex.getOrDefault(ByteArray.of(address), -1);
+    }
+
+    @Override
+    public String toString() {
+        return "ValidatorSet [number=" + number + ", validators=" + validators + "]";
+    }
+}
@@ -6,10 +6,12 @@
  */
 package org.semux.core.state;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
-import java.util.Map.Entry;
 import java.util.concurrent.ConcurrentHashMap;
 
+import org.apache.commons.lang3.tuple.Pair;
 import org.semux.db.KVDB;
 import org.semux.util.ByteArray;
 import org.semux.util.Bytes;
@@ -23,7 +25,19 @@ import org.semux.util.Bytes;
  * [0, address] => [account_object]
  * [1, address] => [code]
  * [2, address, storage_key] = [storage_value]
+ * [0xff] => [block_number]
  * </pre>
+ * 
+ * Each layer holds the decoded accounts it has modified, keyed by address.
+ * An account is decoded once when a layer first modifies it, and encoded only
+ * when the root layer writes it to the database. The modified accounts of a
+ * layer are its journal: committing hands them to the previous layer, and
+ * rolling back drops them.
+ * <p>
+ * The accounts held by the layers are never changed: a modification replaces
+ * the account of the layer with an updated copy. Layers may therefore share
+ * account instances, and a reader of another layer never sees a half-updated
+ * account.
  */
 public class AccountStateImpl implements AccountState {
 
@@ -31,13 +45,18 @@ public class AccountStateImpl implements AccountState {
     protected static final byte TYPE_CODE = 1;
     protected static final byte TYPE_STORAGE = 2;
 
+    /**
+     * Key of the number of the block the state on the database belongs to.
+     */
+    protected static final byte[] BLOCK_NUMBER_KEY = { (byte) 0xff };
+
     protected KVDB accountDB;
     protected AccountStateImpl prev;
 
     /**
-     * All updates, or deletes if the value is null.
+     * Accounts modified in this layer, by address.
      */
-    protected final Map<ByteArray, byte[]> updates = new ConcurrentHashMap<>();
+    protected final Map<ByteArray, Account> accounts = new ConcurrentHashMap<>();
 
     /**
      * Create an {@link AccountState} that work directly on a database.
@@ -59,44 +78,27 @@ public class AccountStateImpl implements AccountState {
 
     @Override
     public Account getAccount(byte[] address) {
-        ByteArray k = getKey(TYPE_ACCOUNT, address);
-
-        if (updates.containsKey(k)) {
-            byte[] v = updates.get(k);
-            return v == null ? new Account(address, 0, 0, 0) : Account.fromBytes(address, v);
-        } else if (prev != null) {
-            return prev.getAccount(address);
-        } else {
-            byte[] v = accountDB.get(k.getData());
-            return v == null ? new Account(address, 0, 0, 0) : Account.fromBytes(address, v);
-        }
+        Account acc = findAccount(ByteArray.of(address));
+        return (acc == null) ? new Account(address, 0, 0, 0)
+                : new Account(address, acc.getAvailable(), acc.getLocked(), acc.getNonce());
     }
 
     @Override
     public void increaseNonce(byte[] address) {
-        ByteArray k = getKey(TYPE_ACCOUNT, address);
-
-        Account acc = getAccount(address);
-        acc.setNonce(acc.getNonce() + 1);
-        updates.put(k, acc.toBytes());
+        Account acc = currentAccount(address);
+        putAccount(new Account(address, acc.getAvailable(), acc.getLocked(), acc.getNonce() + 1));
     }
 
     @Override
     public void adjustAvailable(byte[] address, long delta) {
-        ByteArray k = getKey(TYPE_ACCOUNT, address);
-
-        Account acc = getAccount(address);
-        acc.setAvailable(acc.getAvailable() + delta);
-        updates.put(k, acc.toBytes());
+        Account acc = currentAccount(address);
+        putAccount(new Account(address, acc.getAvailable() + delta, acc.getLocked(), acc.getNonce()));
     }
 
     @Override
     public void adjustLocked(byte[] address, long delta) {
-        ByteArray k = getKey(TYPE_ACCOUNT, address);
-
-        Account acc = getAccount(address);
-        acc.setLocked(acc.getLocked() + delta);
-        updates.put(k, acc.toBytes());
+        Account acc = currentAccount(address);
+        putAccount(new Account(address, acc.getAvailable(), acc.getLocked() + delta, acc.getNonce()));
     }
 
     @Override
@@ -131,28 +133,100 @@ public class AccountStateImpl implements AccountState {
 
     @Override
     public void commit() {
-        synchronized (updates) {
+        synchronized (accounts) {
             if (prev == null) {
-                for (Map.Entry<ByteArray, byte[]> entry : updates.entrySet()) {
-                    if (entry.getValue() == null) {
-                        accountDB.delete(entry.getKey().getData());
-                    } else {
-                        accountDB.put(entry.getKey().getData(), entry.getValue());
-                    }
-                }
+                accountDB.updateBatch(getBatch());
             } else {
-                for (Entry<ByteArray, byte[]> e : updates.entrySet()) {
-                    prev.updates.put(e.getKey(), e.getValue());
-                }
+                // the accounts are no longer used by this layer, so they are handed over
+                prev.accounts.putAll(accounts);
             }
 
-            updates.clear();
+            accounts.clear();
         }
     }
 
+    /**
+     * Commits the state on the database along with the number of the block it
+     * belongs to, in the same batch.
+     * 
+     * @param number
+     */
+    public void commit(long number) {
+        if (prev != null) {
+            throw new IllegalStateException("Only the state on the database belongs to a block");
+        }
+
+        synchronized (accounts) {
+            List<Pair<byte[], byte[]>> batch = getBatch();
+            batch.add(Pair.of(BLOCK_NUMBER_KEY, Bytes.of(number)));
+            accountDB.updateBatch(batch);
+
+            accounts.clear();
+        }
+    }
+
+    /**
+     * Returns the number of the block the state on the database belongs to, or
+     * -1 if it was last committed by an earlier version.
+     * 
+     * @return
+     */
+    public long getBlockNumber() {
+        byte[] number = accountDB.get(BLOCK_NUMBER_KEY);
+        return (number == null) ? -1 : Bytes.toLong(number);
+    }
+
     @Override
     public void rollback() {
-        updates.clear();
+        accounts.clear();
+    }
+
+    private List<Pair<byte[], byte[]>> getBatch() {
+        List<Pair<byte[], byte[]>> batch = new ArrayList<>();
+        for (Account acc : accounts.values()) {
+            batch.add(Pair.of(getKey(TYPE_ACCOUNT, acc.getAddress()).getData(), acc.toBytes()));
+        }
+        return batch;
+    }
+
+    /**
+     * Looks up an account through the layers, without copying it. The account
+     * must not be changed.
+     * 
+     * @param address
+     * @return the account, or null if it does not exist
+     */
+    protected Account findAccount(ByteArray address) {
+        Account acc = accounts.get(address);
+        if (acc != null) {
+            return acc;
+        } else if (prev != null) {
+            return prev.findAccount(address);
+        } else {
+            byte[] v = accountDB.get(getKey(TYPE_ACCOUNT, address.getData()).getData());
+            return (v == null) ? null : Account.fromBytes(address.getData(), v);
+        }
+    }
+
+    /**
+     * Returns the current account to base a modification on, or an empty one.
+     * The account must not be changed.
+     * 
+     * @param address
+     * @return
+     */
+    protected Account currentAccount(byte[] address) {
+        Account acc = findAccount(ByteArray.of(address));
+        return (acc == null) ? new Account(address, 0, 0, 0) : acc;
+    }
+
+    /**
+     * Replaces the account of this layer with an updated copy.
+     * 
+     * @param acc
+     */
+    protected void putAccount(Account acc) {
+        accounts.put(ByteArray.of(acc.getAddress()), acc);
     }
 
     protected ByteArray getKey(byte type, byte[] address) {
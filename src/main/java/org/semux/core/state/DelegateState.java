@@ -87,12 +87,29 @@ public interface DelegateState {
     Delegate getDelegateByAddress(byte[] address);
 
     /**
-     * Returns all delegates.
+     * Returns all delegates, in ranking order.
      * 
      * @return
      */
     List<Delegate> getDelegates();
 
+    /**
+     * Returns the delegates with the most votes, in ranking order.
+     * 
+     * @param n
+     *            the maximum number of delegates
+     * @return
+     */
+    List<Delegate> getTopDelegates(int n);
+
+    /**
+     * Returns the position of a delegate in the ranking, starting from zero.
+     * 
+     * @param address
+     * @return the rank, or -1 if there is no such delegate
+     */
+    int getRank(byte[] address);
+
     /**
      * Returns a snapshot and starts tracking updates.
      */
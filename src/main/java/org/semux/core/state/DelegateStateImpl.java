@@ -8,12 +8,17 @@ package org.semux.core.state;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.NavigableSet;
+import java.util.TreeSet;
 import java.util.concurrent.ConcurrentHashMap;
 
+import org.apache.commons.lang3.tuple.Pair;
 import org.semux.core.Blockchain;
 import org.semux.db.KVDB;
 import org.semux.util.ByteArray;
@@ -28,23 +33,56 @@ import org.slf4j.LoggerFactory;
  * <pre>
  * delegate DB structure:
  * 
- * [name] => [address] // NOTE: assuming name_length != address_length
- * [address] => [delegate_object]
+ * [0, name] => [address]
+ * [1, address] => [delegate_object]
+ * [0xfe] => [schema_version]
+ * [0xff] => [block_number]
  * </pre>
  *
  * <pre>
  * vote DB structure:
  * 
  * [delegate, voter] => vote
+ * [0xff] => [block_number]
  * </pre>
- *
+ * 
+ * The state on the database keeps an index of its delegates ordered by votes,
+ * then name. The index is built from the database on first use and updated
+ * with the delegates of each commit, so listing the delegates does not scan
+ * and decode the database, and tracked states only merge their own updates
+ * into it. The index is also kept as a sorted list, rebuilt on the first query
+ * after a commit which changed it, so the rank of a delegate is found by binary
+ * search and the top N delegates are the head of the list.
  */
 public class DelegateStateImpl implements DelegateState {
 
     protected static final Logger logger = LoggerFactory.getLogger(DelegateStateImpl.class);
 
+    protected static final byte TYPE_NAME = 0;
+    protected static final byte TYPE_ADDRESS = 1;
+
+    /**
+     * Key of the number of the block the state on the database belongs to.
+     */
+    protected static final byte[] BLOCK_NUMBER_KEY = { (byte) 0xff };
+
+    /**
+     * Key of the version of the delegate database layout.
+     */
+    protected static final byte[] SCHEMA_VERSION_KEY = { (byte) 0xfe };
+
+    private static final int SCHEMA_VERSION = 1;
+
     private static final int ADDRESS_LEN = 20;
 
+    /**
+     * Ranking order: votes descending, then name.
+     */
+    private static final Comparator<Delegate> RANKING = (d1, d2) -> {
+        int cmp = Long.compare(d2.getVotes(), d1.getVotes());
+        return (cmp != 0) ? cmp : d1.getNameString().compareTo(d2.getNameString());
+    };
+
     protected Blockchain chain;
     protected KVDB delegateDB;
     protected KVDB voteDB;
@@ -60,6 +98,14 @@ public class DelegateStateImpl implements DelegateState {
      */
     protected final Map<ByteArray, byte[]> voteUpdates = new ConcurrentHashMap<>();
 
+    /**
+     * Ranking index of the delegates on the database, and the delegates in it by
+     * address. Only the state on the database has one.
+     */
+    private NavigableSet<Delegate> ranking;
+    private Map<ByteArray, Delegate> ranked;
+    private volatile List<Delegate> rankingList;
+
     /**
      * Create a DelegateState that work directly on a database.
      * 
@@ -72,6 +118,20 @@ public class DelegateStateImpl implements DelegateState {
         this.voteDB = voteDB;
     }
 
+    /**
+     * Create a DelegateState that work directly on a database, whose delegates
+     * are known to be ranked as given.
+     * 
+     * @param chain
+     * @param delegateDB
+     * @param voteDB
+     * @param ranking
+     */
+    public DelegateStateImpl(Blockchain chain, KVDB delegateDB, KVDB voteDB, List<Delegate> ranking) {
+        this(chain, delegateDB, voteDB);
+        this.rankingList = ranking;
+    }
+
     /**
      * Create an DelegateState based on a previous DelegateState.
      * 
@@ -88,8 +148,8 @@ public class DelegateStateImpl implements DelegateState {
             return false;
         } else {
             Delegate d = new Delegate(address, name, registeredAt, 0);
-            delegateUpdates.put(ByteArray.of(name), address);
-            delegateUpdates.put(ByteArray.of(address), d.toBytes());
+            delegateUpdates.put(getNameKey(name), address);
+            delegateUpdates.put(getAddressKey(address), d.toBytes());
 
             return true;
         }
@@ -111,7 +171,7 @@ public class DelegateStateImpl implements DelegateState {
         } else {
             voteUpdates.put(key, Bytes.of(value + v));
             d.setVotes(d.getVotes() + v);
-            delegateUpdates.put(ByteArray.of(delegate), d.toBytes());
+            delegateUpdates.put(getAddressKey(delegate), d.toBytes());
             return true;
         }
     }
@@ -128,7 +188,7 @@ public class DelegateStateImpl implements DelegateState {
 
             Delegate d = getDelegateByAddress(delegate);
             d.setVotes(d.getVotes() - v);
-            delegateUpdates.put(ByteArray.of(delegate), d.toBytes());
+            delegateUpdates.put(getAddressKey(delegate), d.toBytes());
 
             return true;
         }
@@ -141,7 +201,7 @@ public class DelegateStateImpl implements DelegateState {
 
     @Override
     public Delegate getDelegateByName(byte[] name) {
-        ByteArray k = ByteArray.of(name);
+        ByteArray k = getNameKey(name);
 
         if (delegateUpdates.containsKey(k)) {
             byte[] v = delegateUpdates.get(k);
@@ -156,39 +216,44 @@ public class DelegateStateImpl implements DelegateState {
 
     @Override
     public Delegate getDelegateByAddress(byte[] address) {
-        ByteArray k = ByteArray.of(address);
+        ByteArray k = getAddressKey(address);
 
         if (delegateUpdates.containsKey(k)) {
             byte[] v = delegateUpdates.get(k);
-            return v == null ? null : Delegate.fromBytes(k.getData(), v);
+            return v == null ? null : Delegate.fromBytes(address, v);
         } else if (prev != null) {
             return prev.getDelegateByAddress(address);
         } else {
             byte[] v = delegateDB.get(k.getData());
-            return v == null ? null : Delegate.fromBytes(k.getData(), v);
+            return v == null ? null : Delegate.fromBytes(address, v);
         }
     }
 
     @Override
     public List<Delegate> getDelegates() {
+        return getTopDelegates(Integer.MAX_VALUE);
+    }
+
+    @Override
+    public List<Delegate> getTopDelegates(int n) {
         long t1 = System.nanoTime();
 
-        // traverse all cached update, all the way to database.
+        // collect the delegates updated on top of the database, and merge them
+        // into the ranking
         Map<ByteArray, Delegate> map = new HashMap<>();
-        getDelegates(map);
-
-        // sort the results
-        List<Delegate> list = new ArrayList<>(map.values());
-        list.sort((d1, d2) -> {
-            int cmp = Long.compare(d2.getVotes(), d1.getVotes());
-            return (cmp != 0) ? cmp : d1.getNameString().compareTo(d2.getNameString());
-        });
+        List<Delegate> list = getUpdatedDelegates(map).getTopDelegates(map, n);
 
         long t2 = System.nanoTime();
         logger.trace("Get delegates duration: {} μs", (t2 - t1) / 1000L);
         return list;
     }
 
+    @Override
+    public int getRank(byte[] address) {
+        Map<ByteArray, Delegate> map = new HashMap<>();
+        return getUpdatedDelegates(map).getRank(map, ByteArray.of(address));
+    }
+
     @Override
     public DelegateState track() {
         return new DelegateStateImpl(this);
@@ -196,15 +261,34 @@ public class DelegateStateImpl implements DelegateState {
 
     @Override
     public void commit() {
+        commit(null);
+    }
+
+    /**
+     * Commits the state on the database along with the number of the block it
+     * belongs to, in the same batch for each database.
+     * 
+     * @param number
+     */
+    public void commit(long number) {
+        if (prev != null) {
+            throw new IllegalStateException("Only the state on the database belongs to a block");
+        }
+        commit(Bytes.of(number));
+    }
+
+    private void commit(byte[] number) {
         synchronized (delegateUpdates) {
             if (prev == null) {
+                List<Pair<byte[], byte[]>> batch = new ArrayList<>();
                 for (Map.Entry<ByteArray, byte[]> entry : delegateUpdates.entrySet()) {
-                    if (entry.getValue() == null) {
-                        delegateDB.delete(entry.getKey().getData());
-                    } else {
-                        delegateDB.put(entry.getKey().getData(), entry.getValue());
-                    }
+                    batch.add(Pair.of(entry.getKey().getData(), entry.getValue()));
                 }
+                if (number != null) {
+                    batch.add(Pair.of(BLOCK_NUMBER_KEY, number));
+                }
+                delegateDB.updateBatch(batch);
+                updateRanking(delegateUpdates);
             } else {
                 for (Entry<ByteArray, byte[]> e : delegateUpdates.entrySet()) {
                     prev.delegateUpdates.put(e.getKey(), e.getValue());
@@ -216,13 +300,14 @@ public class DelegateStateImpl implements DelegateState {
 
         synchronized (voteUpdates) {
             if (prev == null) {
+                List<Pair<byte[], byte[]>> batch = new ArrayList<>();
                 for (Map.Entry<ByteArray, byte[]> entry : voteUpdates.entrySet()) {
-                    if (entry.getValue() == null) {
-                        voteDB.delete(entry.getKey().getData());
-                    } else {
-                        voteDB.put(entry.getKey().getData(), entry.getValue());
-                    }
+                    batch.add(Pair.of(entry.getKey().getData(), entry.getValue()));
                 }
+                if (number != null) {
+                    batch.add(Pair.of(BLOCK_NUMBER_KEY, number));
+                }
+                voteDB.updateBatch(batch);
             } else {
                 for (Entry<ByteArray, byte[]> e : voteUpdates.entrySet()) {
                     prev.voteUpdates.put(e.getKey(), e.getValue());
@@ -240,37 +325,247 @@ public class DelegateStateImpl implements DelegateState {
     }
 
     /**
-     * Recursively compute the delegates.
+     * Returns the numbers of the blocks the delegate and the vote databases
+     * belong to, or -1 for a database last committed by an earlier version.
+     * 
+     * @return
+     */
+    public long[] getBlockNumbers() {
+        byte[] delegate = delegateDB.get(BLOCK_NUMBER_KEY);
+        byte[] vote = voteDB.get(BLOCK_NUMBER_KEY);
+        return new long[] { (delegate == null) ? -1 : Bytes.toLong(delegate),
+                (vote == null) ? -1 : Bytes.toLong(vote) };
+    }
+
+    /**
+     * Collects the delegates updated in this state and the previous ones, by
+     * address, with null for removed delegates.
      * 
      * @param map
+     * @return the state on the database
      */
-    protected void getDelegates(Map<ByteArray, Delegate> map) {
+    protected DelegateStateImpl getUpdatedDelegates(Map<ByteArray, Delegate> map) {
         for (Map.Entry<ByteArray, byte[]> entry : delegateUpdates.entrySet()) {
-            /* filter address */
-            if (entry.getKey().length() == ADDRESS_LEN && !map.containsKey(entry.getKey())) {
-                if (entry.getValue() == null) {
-                    map.put(entry.getKey(), null);
-                } else {
-                    map.put(entry.getKey(), Delegate.fromBytes(entry.getKey().getData(), entry.getValue()));
+            byte[] key = entry.getKey().getData();
+            if (key[0] == TYPE_ADDRESS) {
+                ByteArray address = ByteArray.of(Arrays.copyOfRange(key, 1, key.length));
+                if (!map.containsKey(address)) {
+                    byte[] v = entry.getValue();
+                    map.put(address, (v == null) ? null : Delegate.fromBytes(address.getData(), v));
                 }
             }
         }
 
-        if (prev != null) {
-            prev.getDelegates(map);
-        } else {
-            ClosableIterator<Entry<byte[], byte[]>> itr = delegateDB.iterator();
-            while (itr.hasNext()) {
-                Entry<byte[], byte[]> entry = itr.next();
-                ByteArray k = ByteArray.of(entry.getKey());
-                byte[] v = entry.getValue();
+        return (prev != null) ? prev.getUpdatedDelegates(map) : this;
+    }
 
-                if (k.length() == ADDRESS_LEN && !map.containsKey(k)) {
-                    map.put(k, Delegate.fromBytes(k.getData(), v));
+    /**
+     * Returns the delegates on the database, in ranking order. The delegates are
+     * shared with the ranking index, and must not be modified.
+     * 
+     * @return an unmodifiable list
+     */
+    public synchronized List<Delegate> getRanking() {
+        if (rankingList == null) {
+            if (ranking == null) {
+                ranking = new TreeSet<>(RANKING);
+                ranked = new HashMap<>();
+
+                ClosableIterator<Entry<byte[], byte[]>> itr = delegateDB.prefixIterator(Bytes.of(TYPE_ADDRESS));
+                try {
+                    while (itr.hasNext()) {
+                        Entry<byte[], byte[]> e = itr.next();
+                        byte[] address = Arrays.copyOfRange(e.getKey(), 1, e.getKey().length);
+                        Delegate d = Delegate.fromBytes(address, e.getValue());
+                        ranking.add(d);
+                        ranked.put(ByteArray.of(address), d);
+                    }
+                } finally {
+                    itr.close();
                 }
             }
+            rankingList = Collections.unmodifiableList(new ArrayList<>(ranking));
+        }
+        return rankingList;
+    }
+
+    /**
+     * Merges the given updated delegates into the ranking of the database, up to
+     * the given number of delegates. The ranking is only walked up to the last
+     * delegate returned.
+     * 
+     * @param updates
+     *            the updated delegates by address, with null for removed ones
+     * @param n
+     * @return copies of the delegates, in ranking order
+     */
+    private synchronized List<Delegate> getTopDelegates(Map<ByteArray, Delegate> updates, int n) {
+        List<Delegate> index = getRanking();
+
+        List<Delegate> updated = new ArrayList<>();
+        for (Delegate d : updates.values()) {
+            if (d != null) {
+                updated.add(d);
+            }
+        }
+        updated.sort(RANKING);
+
+        List<Delegate> list = new ArrayList<>(Math.min(n, index.size() + updated.size()));
+        int i = 0;
+        for (Delegate d : index) {
+            if (list.size() >= n) {
+                break;
+            }
+            if (updates.containsKey(ByteArray.of(d.getAddress()))) {
+                continue;
+            }
+            while (i < updated.size() && list.size() < n && RANKING.compare(updated.get(i), d) < 0) {
+                list.add(updated.get(i++));
+            }
+            if (list.size() < n) {
+                list.add(copy(d));
+            }
+        }
+        while (i < updated.size() && list.size() < n) {
+            list.add(updated.get(i++));
+        }
+
+        return list;
+    }
+
+    /**
+     * Finds the rank of a delegate, by binary search of the ranking of the
+     * database, corrected by the given updated delegates.
+     * 
+     * @param updates
+     *            the updated delegates by address, with null for removed ones
+     * @param address
+     * @return the rank, or -1 if there is no such delegate
+     */
+    private synchronized int getRank(Map<ByteArray, Delegate> updates, ByteArray address) {
+        List<Delegate> index = getRanking();
+
+        Delegate d = updates.containsKey(address) ? updates.get(address) : getRankedDelegate(address);
+        if (d == null) {
+            return -1;
+        }
+
+        int i = Collections.binarySearch(index, d, RANKING);
+        int rank = (i >= 0) ? i : -i - 1;
+
+        // the updated delegates move from their ranked place to their new one
+        for (Entry<ByteArray, Delegate> e : updates.entrySet()) {
+            Delegate old = getRankedDelegate(e.getKey());
+            if (old != null && RANKING.compare(old, d) < 0) {
+                rank--;
+            }
+            if (e.getValue() != null && !e.getKey().equals(address) && RANKING.compare(e.getValue(), d) < 0) {
+                rank++;
+            }
+        }
+
+        return rank;
+    }
+
+    /**
+     * Returns a delegate as it is ranked on the database.
+     * 
+     * @param address
+     * @return
+     */
+    private Delegate getRankedDelegate(ByteArray address) {
+        // a state seeded with its ranking reads the delegates from its database
+        return (ranked != null) ? ranked.get(address) : getDelegateByAddress(address.getData());
+    }
+
+    private static Delegate copy(Delegate d) {
+        return new Delegate(d.getAddress().clone(), d.getName().clone(), d.getRegisteredAt(), d.getVotes());
+    }
+
+    /**
+     * Moves the updated delegates within the ranking, if it has been built.
+     * 
+     * @param updates
+     */
+    private synchronized void updateRanking(Map<ByteArray, byte[]> updates) {
+        if (ranking == null) {
+            rankingList = null;
+            return;
+        }
+
+        boolean changed = false;
+        for (Entry<ByteArray, byte[]> e : updates.entrySet()) {
+            byte[] key = e.getKey().getData();
+            if (key[0] != TYPE_ADDRESS) {
+                continue;
+            }
+
+            ByteArray address = ByteArray.of(Arrays.copyOfRange(key, 1, key.length));
+            Delegate old = ranked.remove(address);
+            if (old != null) {
+                ranking.remove(old);
+            }
+            if (e.getValue() != null) {
+                Delegate d = Delegate.fromBytes(address.getData(), e.getValue());
+                ranking.add(d);
+                ranked.put(address, d);
+            }
+            changed = true;
+        }
+
+        if (changed) {
+            rankingList = null;
+        }
+    }
+
+    /**
+     * Moves the delegates of a database written by an earlier version, which
+     * keyed both names and addresses by themselves, under their key types.
+     * Earlier names start with a printable character, and earlier addresses are
+     * one byte shorter than the current keys. The database is only scanned until
+     * its schema version has been written.
+     * 
+     * @param delegateDB
+     */
+    public static void upgrade(KVDB delegateDB) {
+        byte[] version = delegateDB.get(SCHEMA_VERSION_KEY);
+        if (version != null && Bytes.toInt(version) >= SCHEMA_VERSION) {
+            return;
+        }
+
+        List<Pair<byte[], byte[]>> batch = new ArrayList<>();
+
+        ClosableIterator<Entry<byte[], byte[]>> itr = delegateDB.iterator();
+        try {
+            while (itr.hasNext()) {
+                Entry<byte[], byte[]> e = itr.next();
+                byte[] key = e.getKey();
+                if (key.length == ADDRESS_LEN) {
+                    batch.add(Pair.of(key, null));
+                    batch.add(Pair.of(getAddressKey(key).getData(), e.getValue()));
+                } else if (key[0] > TYPE_ADDRESS) {
+                    batch.add(Pair.of(key, null));
+                    batch.add(Pair.of(getNameKey(key).getData(), e.getValue()));
+                }
+            }
+        } finally {
             itr.close();
         }
+
+        int entries = batch.size() / 2;
+        batch.add(Pair.of(SCHEMA_VERSION_KEY, Bytes.of(SCHEMA_VERSION)));
+        delegateDB.updateBatch(batch);
+        if (entries > 0) {
+            logger.info("Upgraded {} delegate entries", entries);
+        }
+    }
+
+    private static ByteArray getNameKey(byte[] name) {
+        return ByteArray.of(Bytes.merge(TYPE_NAME, name));
+    }
+
+    private static ByteArray getAddressKey(byte[] address) {
+        return ByteArray.of(Bytes.merge(TYPE_ADDRESS, address));
     }
 
     /**
@@ -298,19 +593,19 @@ public class DelegateStateImpl implements DelegateState {
     public Map<ByteArray, Long> getVotes(byte[] delegate) {
         Map<ByteArray, Long> result = new HashMap<>();
 
-        ClosableIterator<Entry<byte[], byte[]>> itr = voteDB.iterator(delegate);
-        while (itr.hasNext()) {
-            Entry<byte[], byte[]> e = itr.next();
-            byte[] d = Arrays.copyOf(e.getKey(), 20);
-            byte[] v = Arrays.copyOfRange(e.getKey(), 20, 40);
+        ClosableIterator<Entry<byte[], byte[]>> itr = voteDB.prefixIterator(delegate);
+        try {
+            while (itr.hasNext()) {
+                Entry<byte[], byte[]> e = itr.next();
+                byte[] v = Arrays.copyOfRange(e.getKey(), 20, 40);
 
-            if (!Arrays.equals(delegate, d)) {
-                break;
-            } else if (Bytes.toLong(e.getValue()) != 0) {
-                result.put(ByteArray.of(v), Bytes.toLong(e.getValue()));
+                if (Bytes.toLong(e.getValue()) != 0) {
+                    result.put(ByteArray.of(v), Bytes.toLong(e.getValue()));
+                }
             }
+        } finally {
+            itr.close();
         }
-        itr.close();
 
         return result;
     }
@@ -0,0 +1,190 @@
+/**
+ * Copyright (c) 2017 The Semux Developers
+ *
+ * Distributed under the MIT software license, see the accompanying file
+ * LICENSE or https://opensource.org/licenses/mit-license.php
+ */
+package org.semux.db;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map.Entry;
+import java.util.Optional;
+
+import org.apache.commons.lang3.tuple.Pair;
+import org.semux.util.ByteArray;
+import org.semux.util.ClosableIterator;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+
+/**
+ * A write-through row cache in front of another {@link KVDB}. Point lookups are
+ * cached, including misses; iterators and snapshots go straight to the
+ * underlying database.
+ * <p>
+ * The cache is bounded by the approximate number of bytes of keys and values it
+ * holds. Cached arrays are shared between callers and must not be modified.
+ */
+public class CachingKVDB implements KVDB {
+
+    /**
+     * Approximate per-entry overhead of the cache, in bytes.
+     */
+    private static final int ENTRY_OVERHEAD = 64;
+
+    private KVDB db;
+    private Cache<ByteArray, Optional<byte[]>> cache;
+
+    /**
+     * Creates a caching decorator.
+     *
+     * @param db
+     *            the underlying database
+     * @param maxBytes
+     *            the cache budget in bytes
+     */
+    public CachingKVDB(KVDB db, long maxBytes) {
+        this.db = db;
+        this.cache = Caffeine.newBuilder()
+                .maximumWeight(maxBytes)
+                .<ByteArray, Optional<byte[]>>weigher((k, v) -> ENTRY_OVERHEAD + k.length() + v.map(b -> b.length)
+                        .orElse(0))
+                .recordStats()
+                .build();
+    }
+
+    @Override
+    public byte[] get(byte[] key) {
+        return cache.get(ByteArray.of(key), k -> Optional.ofNullable(db.get(key))).orElse(null);
+    }
+
+    @Override
+    public List<byte[]> multiGet(List<byte[]> keys) {
+        List<byte[]> values = new ArrayList<>(keys.size());
+        List<Integer> missing = new ArrayList<>();
+        for (int i = 0; i < keys.size(); i++) {
+            Optional<byte[]> v = cache.getIfPresent(ByteArray.of(keys.get(i)));
+            values.add(v == null ? null : v.orElse(null));
+            if (v == null) {
+                missing.add(i);
+            }
+        }
+
+        if (!missing.isEmpty()) {
+            List<byte[]> missingKeys = new ArrayList<>(missing.size());
+            for (int i : missing) {
+                missingKeys.add(keys.get(i));
+            }
+            List<byte[]> loaded = db.multiGet(missingKeys);
+            for (int i = 0; i < missing.size(); i++) {
+                values.set(missing.get(i), loaded.get(i));
+                // never replaces a value written in the meantime
+                cache.asMap().putIfAbsent(ByteArray.of(missingKeys.get(i)), Optional.ofNullable(loaded.get(i)));
+            }
+        }
+
+        return values;
+    }
+
+    /*
+     * Writes are serialized so that the database and the cache are always updated
+     * in the same order.
+     */
+
+    @Override
+    public synchronized void put(byte[] key, byte[] value) {
+        db.put(key, value);
+        cache.put(ByteArray.of(key), Optional.of(value));
+    }
+
+    @Override
+    public synchronized void delete(byte[] key) {
+        db.delete(key);
+        cache.put(ByteArray.of(key), Optional.empty());
+    }
+
+    @Override
+    public synchronized void updateBatch(List<Pair<byte[], byte[]>> pairs) {
+        db.updateBatch(pairs);
+        for (Pair<byte[], byte[]> p : pairs) {
+            cache.put(ByteArray.of(p.getLeft()), Optional.ofNullable(p.getRight()));
+        }
+    }
+
+    @Override
+    public ClosableIterator<Entry<byte[], byte[]>> iterator() {
+        return db.iterator();
+    }
+
+    @Override
+    public ClosableIterator<Entry<byte[], byte[]>> iterator(byte[] prefix) {
+        return db.iterator(prefix);
+    }
+
+    @Override
+    public ClosableIterator<Entry<byte[], byte[]>> iterator(byte[] from, byte[] to) {
+        return db.iterator(from, to);
+    }
+
+    @Override
+    public ClosableIterator<Entry<byte[], byte[]>> prefixIterator(byte[] prefix) {
+        return db.prefixIterator(prefix);
+    }
+
+    @Override
+    public ClosableIterator<Entry<byte[], byte[]>> reverseIterator(byte[] prefix) {
+        return db.reverseIterator(prefix);
+    }
+
+    @Override
+    public KVDB snapshot() {
+        return db.snapshot();
+    }
+
+    @Override
+    public void compactRange(byte[] from, byte[] to) {
+        db.compactRange(from, to);
+    }
+
+    @Override
+    public String getProperty(String name) {
+        return db.getProperty(name);
+    }
+
+    @Override
+    public long[] getApproximateSizes(List<Pair<byte[], byte[]>> ranges) {
+        return db.getApproximateSizes(ranges);
+    }
+
+    @Override
+    public void close() {
+        cache.invalidateAll();
+        db.close();
+    }
+
+    @Override
+    public void destroy() {
+        cache.invalidateAll();
+        db.destroy();
+    }
+
+    /**
+     * Returns the hit, miss and eviction statistics of the cache.
+     *
+     * @return
+     */
+    public CacheStats getStats() {
+        return cache.stats();
+    }
+
+    /**
+     * Returns the underlying database.
+     *
+     * @return
+     */
+    public KVDB getDB() {
+        return db;
+    }
+}
@@ -0,0 +1,134 @@
+/**
+ * Copyright (c) 2017 The Semux Developers
+ *
+ * Distributed under the MIT software license, see the accompanying file
+ * LICENSE or https://opensource.org/licenses/mit-license.php
+ */
+package org.semux.db;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.apache.commons.lang3.tuple.Pair;
+
+/**
+ * Size and level layout of a database, parsed from the
+ * <code>leveldb.stats</code> property.
+ */
+public class DBStats {
+
+    /**
+     * A row of the stats table: level, files, size, time, read and written MB.
+     */
+    private static final Pattern LEVEL_ROW = Pattern
+            .compile("^\\s*(\\d+)\\s+(\\d+)\\s+(\\d+)\\s+(\\d+)\\s+(\\d+)\\s+(\\d+)\\s*$", Pattern.MULTILINE);
+
+    private long approximateSize;
+    private List<Integer> levelFiles = new ArrayList<>();
+    private List<Long> levelSizes = new ArrayList<>();
+    private int readAmplification;
+    private double writeAmplification;
+
+    private DBStats() {
+    }
+
+    /**
+     * Collects the stats of a database.
+     *
+     * @param db
+     * @return
+     */
+    public static DBStats of(KVDB db) {
+        DBStats stats = new DBStats();
+        List<Pair<byte[], byte[]>> all = Collections.singletonList(Pair.of(null, null));
+        stats.approximateSize = db.getApproximateSizes(all)[0];
+
+        String property = db.getProperty("leveldb.stats");
+        if (property != null) {
+            stats.parse(property);
+        }
+        return stats;
+    }
+
+    private void parse(String property) {
+        long level0Written = 0;
+        long totalWritten = 0;
+
+        Matcher m = LEVEL_ROW.matcher(property);
+        while (m.find()) {
+            int level = Integer.parseInt(m.group(1));
+            int files = Integer.parseInt(m.group(2));
+            long size = Long.parseLong(m.group(3)) * 1024 * 1024;
+            long written = Long.parseLong(m.group(6));
+
+            // levels without activity are not listed
+            while (levelFiles.size() <= level) {
+                levelFiles.add(0);
+                levelSizes.add(0L);
+            }
+            levelFiles.set(level, files);
+            levelSizes.set(level, size);
+
+            // a lookup may probe every level-0 file, and one file of each other level
+            if (files > 0) {
+                readAmplification += (level == 0) ? files : 1;
+            }
+            if (level == 0) {
+                level0Written = written;
+            }
+            totalWritten += written;
+        }
+
+        // level-0 writes are memtable flushes, i.e. the data written by the user
+        writeAmplification = (level0Written == 0) ? 0 : (double) totalWritten / level0Written;
+    }
+
+    /**
+     * Returns the approximate on-disk size in bytes.
+     *
+     * @return
+     */
+    public long getApproximateSize() {
+        return approximateSize;
+    }
+
+    /**
+     * Returns the number of table files of each level.
+     *
+     * @return
+     */
+    public List<Integer> getLevelFiles() {
+        return levelFiles;
+    }
+
+    /**
+     * Returns the size of each level in bytes, in whole megabytes.
+     *
+     * @return
+     */
+    public List<Long> getLevelSizes() {
+        return levelSizes;
+    }
+
+    /**
+     * Returns the worst-case number of table files a point lookup reads.
+     *
+     * @return
+     */
+    public int getReadAmplification() {
+        return readAmplification;
+    }
+
+    /**
+     * Returns the bytes written by compactions per byte flushed from memory, or
+     * zero if nothing has been flushed since the database was opened.
+     *
+     * @return
+     */
+    public double getWriteAmplification() {
+        return writeAmplification;
+    }
+}
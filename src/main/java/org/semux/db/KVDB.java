@@ -33,6 +33,15 @@ public interface KVDB {
      */
     void put(byte[] key, byte[] value);
 
+    /**
+     * Returns the values of the given keys, read from one consistent view of the
+     * database.
+     * 
+     * @param keys
+     * @return the values, in the order of the keys; null for missing keys
+     */
+    List<byte[]> multiGet(List<byte[]> keys);
+
     /**
      * Deletes the specified key value pair if present.
      * 
@@ -59,7 +68,9 @@ public interface KVDB {
     ClosableIterator<Entry<byte[], byte[]>> iterator();
 
     /**
-     * Returns all the keys which has the given prefix.<br>
+     * Returns all the keys starting from the given one, in ascending order. The
+     * iteration does not stop at the end of the prefix; see
+     * {@link #prefixIterator(byte[])}.<br>
      * <br>
      * NOTE: be sure to close the iterator after iteration.
      *
@@ -67,6 +78,77 @@ public interface KVDB {
      */
     ClosableIterator<Entry<byte[], byte[]>> iterator(byte[] prefix);
 
+    /**
+     * Returns the keys within [from, to), in ascending order.<br>
+     * <br>
+     * NOTE: be sure to close the iterator after iteration.
+     * 
+     * @param from
+     *            the first key, inclusive; null for the first key in the database
+     * @param to
+     *            the last key, exclusive; null for no upper bound
+     * @return
+     */
+    ClosableIterator<Entry<byte[], byte[]>> iterator(byte[] from, byte[] to);
+
+    /**
+     * Returns the keys which have the given prefix, in ascending order.<br>
+     * <br>
+     * NOTE: be sure to close the iterator after iteration.
+     * 
+     * @param prefix
+     * @return
+     */
+    ClosableIterator<Entry<byte[], byte[]>> prefixIterator(byte[] prefix);
+
+    /**
+     * Returns the keys which have the given prefix, in descending order.<br>
+     * <br>
+     * NOTE: be sure to close the iterator after iteration.
+     * 
+     * @param prefix
+     * @return
+     */
+    ClosableIterator<Entry<byte[], byte[]>> reverseIterator(byte[] prefix);
+
+    /**
+     * Returns a read-only view of this database, pinned to its current state.
+     * Later updates are not visible through the view.<br>
+     * <br>
+     * NOTE: be sure to close the snapshot after use.
+     * 
+     * @return
+     */
+    KVDB snapshot();
+
+    /**
+     * Compacts the underlying storage of the keys within [from, to].
+     * 
+     * @param from
+     *            the first key; null for the first key in the database
+     * @param to
+     *            the last key; null for the last key in the database
+     */
+    void compactRange(byte[] from, byte[] to);
+
+    /**
+     * Returns a property of the underlying storage, e.g.
+     * <code>leveldb.stats</code>.
+     * 
+     * @param name
+     * @return the property value, or null if the property is not supported
+     */
+    String getProperty(String name);
+
+    /**
+     * Returns the approximate number of bytes the given key ranges take on disk.
+     * 
+     * @param ranges
+     *            the [from, to) key ranges; a null bound is unbounded
+     * @return the sizes, in the order of the ranges
+     */
+    long[] getApproximateSizes(List<Pair<byte[], byte[]>> ranges);
+
     /**
      * Closes the database.
      */
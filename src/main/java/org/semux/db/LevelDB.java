@@ -10,20 +10,28 @@ import static org.fusesource.leveldbjni.JniDBFactory.factory;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.EnumMap;
 import java.util.List;
 import java.util.Map.Entry;
+import java.util.NoSuchElementException;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 import org.apache.commons.lang3.tuple.Pair;
 import org.fusesource.leveldbjni.JniDBFactory;
-import org.iq80.leveldb.CompressionType;
 import org.iq80.leveldb.DB;
 import org.iq80.leveldb.DBIterator;
 import org.iq80.leveldb.Options;
+import org.iq80.leveldb.Range;
+import org.iq80.leveldb.ReadOptions;
+import org.iq80.leveldb.Snapshot;
 import org.iq80.leveldb.WriteBatch;
+import org.semux.config.Config;
 import org.semux.config.Constants;
 import org.semux.db.exception.LevelDBException;
+import org.semux.util.Bytes;
 import org.semux.util.ClosableIterator;
 import org.semux.util.FileUtil;
 import org.semux.util.SystemUtil;
@@ -38,18 +46,19 @@ public class LevelDB implements KVDB {
     private DB db;
     private boolean isOpened;
 
+    private boolean verifyChecksums;
+    private ReadOptions readOptions;
+
     public LevelDB(File file) {
+        this(file, LevelDBProfile.legacy());
+    }
+
+    public LevelDB(File file, LevelDBProfile profile) {
         this.file = file;
+        this.verifyChecksums = profile.isVerifyChecksums();
+        this.readOptions = new ReadOptions().verifyChecksums(verifyChecksums);
 
-        Options options = new Options();
-        options.createIfMissing(true);
-        options.compressionType(CompressionType.NONE);
-        options.blockSize(4 * 1024 * 1024);
-        options.writeBufferSize(8 * 1024 * 1024);
-        options.cacheSize(64L * 1024L * 1024L);
-        options.paranoidChecks(true);
-        options.verifyChecksums(true);
-        options.maxOpenFiles(128);
+        Options options = profile.toOptions();
 
         File dir = file.getParentFile();
         if (!dir.exists() && !dir.mkdirs()) {
@@ -79,7 +88,21 @@ public class LevelDB implements KVDB {
 
     @Override
     public byte[] get(byte[] key) {
-        return db.get(key);
+        return db.get(key, readOptions);
+    }
+
+    @Override
+    public List<byte[]> multiGet(List<byte[]> keys) {
+        Snapshot snapshot = db.getSnapshot();
+        try {
+            return multiGet(db, new ReadOptions().snapshot(snapshot).verifyChecksums(verifyChecksums), keys);
+        } finally {
+            try {
+                snapshot.close();
+            } catch (IOException e) {
+                logger.error("Failed to release snapshot", e);
+            }
+        }
     }
 
     @Override
@@ -134,9 +157,54 @@ public class LevelDB implements KVDB {
 
     @Override
     public ClosableIterator<Entry<byte[], byte[]>> iterator(byte[] prefix) {
+        return iterator(db.iterator(readOptions), prefix);
+    }
+
+    @Override
+    public ClosableIterator<Entry<byte[], byte[]>> iterator(byte[] from, byte[] to) {
+        return iterator(db.iterator(readOptions), from, to);
+    }
+
+    @Override
+    public ClosableIterator<Entry<byte[], byte[]>> prefixIterator(byte[] prefix) {
+        return iterator(db.iterator(readOptions), prefix, successor(prefix));
+    }
+
+    @Override
+    public ClosableIterator<Entry<byte[], byte[]>> reverseIterator(byte[] prefix) {
+        return reverseIterator(db.iterator(readOptions), prefix);
+    }
+
+    @Override
+    public KVDB snapshot() {
+        return new LevelDBSnapshot(db, verifyChecksums);
+    }
+
+    @Override
+    public void compactRange(byte[] from, byte[] to) {
+        db.compactRange(from, to);
+    }
+
+    @Override
+    public String getProperty(String name) {
+        return db.getProperty(name);
+    }
+
+    @Override
+    public long[] getApproximateSizes(List<Pair<byte[], byte[]>> ranges) {
+        return getApproximateSizes(db, ranges);
+    }
+
+    /**
+     * Wraps a LevelDB iterator, starting from the given prefix if present.
+     * 
+     * @param itr
+     * @param prefix
+     * @return
+     */
+    protected static ClosableIterator<Entry<byte[], byte[]>> iterator(DBIterator itr, byte[] prefix) {
 
         return new ClosableIterator<Entry<byte[], byte[]>>() {
-            DBIterator itr = db.iterator();
 
             private ClosableIterator<Entry<byte[], byte[]>> initialize() {
                 if (prefix != null) {
@@ -168,15 +236,392 @@ public class LevelDB implements KVDB {
         }.initialize();
     }
 
+    /**
+     * Returns the approximate sizes of key ranges, replacing unbounded ends with
+     * the actual key bounds of the database.
+     * 
+     * @param db
+     * @param ranges
+     * @return
+     */
+    protected static long[] getApproximateSizes(DB db, List<Pair<byte[], byte[]>> ranges) {
+        // the upper bound of an unbounded range is any key after the last one
+        byte[] end = null;
+        try (DBIterator itr = db.iterator()) {
+            itr.seekToLast();
+            if (itr.hasNext()) {
+                end = Bytes.merge(itr.peekNext().getKey(), (byte) 0);
+            }
+        } catch (IOException e) {
+            throw new LevelDBException(e);
+        }
+
+        long[] sizes = new long[ranges.size()];
+        for (int i = 0; i < ranges.size(); i++) {
+            byte[] from = ranges.get(i).getLeft();
+            byte[] to = ranges.get(i).getRight();
+            if (end != null) {
+                sizes[i] = db.getApproximateSizes(new Range(from == null ? new byte[0] : from,
+                        to == null ? end : to))[0];
+            }
+        }
+        return sizes;
+    }
+
+    /**
+     * Reads the given keys in ascending order with one iterator. A seek is only
+     * issued when the key is not the one right after the previous hit, so runs
+     * of adjacent keys cost one seek in total.
+     * 
+     * @param db
+     * @param options
+     * @param keys
+     * @return
+     */
+    protected static List<byte[]> multiGet(DB db, ReadOptions options, List<byte[]> keys) {
+        List<byte[]> values = new ArrayList<>(Collections.nCopies(keys.size(), null));
+
+        List<Integer> order = new ArrayList<>();
+        for (int i = 0; i < keys.size(); i++) {
+            order.add(i);
+        }
+        order.sort((i, j) -> compareUnsigned(keys.get(i), keys.get(j)));
+
+        try (DBIterator itr = db.iterator(options)) {
+            boolean positioned = false;
+            byte[] next = null; // the key under the cursor, null at the end
+            byte[] prevKey = null;
+            byte[] prevValue = null;
+
+            for (int i : order) {
+                byte[] key = keys.get(i);
+                if (prevKey != null && Arrays.equals(prevKey, key)) {
+                    values.set(i, prevValue);
+                    continue;
+                }
+
+                if (!positioned || (next != null && compareUnsigned(next, key) < 0)) {
+                    itr.seek(key);
+                    positioned = true;
+                    next = itr.hasNext() ? itr.peekNext().getKey() : null;
+                }
+
+                prevKey = key;
+                prevValue = null;
+                if (next != null && Arrays.equals(next, key)) {
+                    prevValue = itr.next().getValue();
+                    values.set(i, prevValue);
+                    next = itr.hasNext() ? itr.peekNext().getKey() : null;
+                }
+            }
+        } catch (IOException e) {
+            throw new LevelDBException(e);
+        }
+
+        return values;
+    }
+
+    /**
+     * Wraps a LevelDB iterator over the keys within [from, to).
+     * 
+     * @param itr
+     * @param from
+     *            null for the first key
+     * @param to
+     *            null for no upper bound
+     * @return
+     */
+    protected static ClosableIterator<Entry<byte[], byte[]>> iterator(DBIterator itr, byte[] from, byte[] to) {
+        if (from != null) {
+            itr.seek(from);
+        } else {
+            itr.seekToFirst();
+        }
+
+        return new LookaheadIterator(itr) {
+            @Override
+            protected Entry<byte[], byte[]> fetch() {
+                if (!itr.hasNext()) {
+                    return null;
+                }
+                Entry<byte[], byte[]> e = itr.next();
+                return (to == null || compareUnsigned(e.getKey(), to) < 0) ? e : null;
+            }
+        };
+    }
+
+    /**
+     * Wraps a LevelDB iterator over the keys with the given prefix, walking
+     * backwards from the last one.
+     * 
+     * @param itr
+     * @param prefix
+     * @return
+     */
+    protected static ClosableIterator<Entry<byte[], byte[]>> reverseIterator(DBIterator itr, byte[] prefix) {
+        // position the cursor right after the last key with the prefix
+        byte[] end = successor(prefix);
+        if (end != null) {
+            itr.seek(end);
+        }
+        boolean fromLast = (end == null || !itr.hasNext());
+        if (fromLast) {
+            itr.seekToLast();
+        }
+
+        return new LookaheadIterator(itr) {
+            // the cursor sits on the last key when seeking past the end
+            private boolean includeCurrent = fromLast;
+
+            @Override
+            protected Entry<byte[], byte[]> fetch() {
+                Entry<byte[], byte[]> e;
+                if (includeCurrent) {
+                    includeCurrent = false;
+                    e = itr.hasNext() ? itr.peekNext() : null;
+                } else {
+                    e = itr.hasPrev() ? itr.prev() : null;
+                }
+                return (e != null && startsWith(e.getKey(), prefix)) ? e : null;
+            }
+        };
+    }
+
+    /**
+     * Compares two byte arrays lexicographically, as unsigned bytes, which is the
+     * order of the LevelDB keys.
+     *
+     * @param a
+     * @param b
+     * @return
+     */
+    protected static int compareUnsigned(byte[] a, byte[] b) {
+        int n = Math.min(a.length, b.length);
+        for (int i = 0; i < n; i++) {
+            int cmp = Integer.compare(a[i] & 0xff, b[i] & 0xff);
+            if (cmp != 0) {
+                return cmp;
+            }
+        }
+        return Integer.compare(a.length, b.length);
+    }
+
+    /**
+     * Returns the smallest key greater than all keys with the given prefix, or
+     * null if there is no such key.
+     * 
+     * @param prefix
+     * @return
+     */
+    protected static byte[] successor(byte[] prefix) {
+        if (prefix == null) {
+            return null;
+        }
+        for (int i = prefix.length - 1; i >= 0; i--) {
+            if (prefix[i] != (byte) 0xff) {
+                byte[] end = Arrays.copyOf(prefix, i + 1);
+                end[i]++;
+                return end;
+            }
+        }
+        return null;
+    }
+
+    private static boolean startsWith(byte[] key, byte[] prefix) {
+        if (prefix == null) {
+            return true;
+        }
+        if (key.length < prefix.length) {
+            return false;
+        }
+        for (int i = 0; i < prefix.length; i++) {
+            if (key[i] != prefix[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * An iterator which fetches one entry ahead, so that bounds can be checked
+     * before {@link #hasNext()} returns.
+     */
+    private abstract static class LookaheadIterator implements ClosableIterator<Entry<byte[], byte[]>> {
+        private DBIterator itr;
+        private Entry<byte[], byte[]> next;
+        private boolean fetched;
+
+        LookaheadIterator(DBIterator itr) {
+            this.itr = itr;
+        }
+
+        /**
+         * Returns the next entry, or null if the iteration is done.
+         * 
+         * @return
+         */
+        protected abstract Entry<byte[], byte[]> fetch();
+
+        @Override
+        public boolean hasNext() {
+            if (!fetched) {
+                next = fetch();
+                fetched = true;
+            }
+            return next != null;
+        }
+
+        @Override
+        public Entry<byte[], byte[]> next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            fetched = false;
+            return next;
+        }
+
+        @Override
+        public void close() {
+            try {
+                itr.close();
+            } catch (IOException e) {
+                throw new LevelDBException(e);
+            }
+        }
+    }
+
+    /**
+     * A read-only view of a LevelDB database, backed by a LevelDB snapshot.
+     */
+    public static class LevelDBSnapshot implements KVDB {
+
+        private DB db;
+        private Snapshot snapshot;
+        private ReadOptions readOptions;
+
+        public LevelDBSnapshot(DB db, boolean verifyChecksums) {
+            this.db = db;
+            this.snapshot = db.getSnapshot();
+            this.readOptions = new ReadOptions().snapshot(snapshot).verifyChecksums(verifyChecksums);
+        }
+
+        @Override
+        public byte[] get(byte[] key) {
+            return db.get(key, readOptions);
+        }
+
+        @Override
+        public List<byte[]> multiGet(List<byte[]> keys) {
+            return LevelDB.multiGet(db, readOptions, keys);
+        }
+
+        @Override
+        public void put(byte[] key, byte[] value) {
+            throw new UnsupportedOperationException("Snapshot is read-only");
+        }
+
+        @Override
+        public void delete(byte[] key) {
+            throw new UnsupportedOperationException("Snapshot is read-only");
+        }
+
+        @Override
+        public void updateBatch(List<Pair<byte[], byte[]>> pairs) {
+            throw new UnsupportedOperationException("Snapshot is read-only");
+        }
+
+        @Override
+        public ClosableIterator<Entry<byte[], byte[]>> iterator() {
+            return iterator(null);
+        }
+
+        @Override
+        public ClosableIterator<Entry<byte[], byte[]>> iterator(byte[] prefix) {
+            return LevelDB.iterator(db.iterator(readOptions), prefix);
+        }
+
+        @Override
+        public ClosableIterator<Entry<byte[], byte[]>> iterator(byte[] from, byte[] to) {
+            return LevelDB.iterator(db.iterator(readOptions), from, to);
+        }
+
+        @Override
+        public ClosableIterator<Entry<byte[], byte[]>> prefixIterator(byte[] prefix) {
+            return LevelDB.iterator(db.iterator(readOptions), prefix, successor(prefix));
+        }
+
+        @Override
+        public ClosableIterator<Entry<byte[], byte[]>> reverseIterator(byte[] prefix) {
+            return LevelDB.reverseIterator(db.iterator(readOptions), prefix);
+        }
+
+        @Override
+        public KVDB snapshot() {
+            throw new UnsupportedOperationException("Snapshot of a snapshot is not supported");
+        }
+
+        @Override
+        public void compactRange(byte[] from, byte[] to) {
+            throw new UnsupportedOperationException("Snapshot is read-only");
+        }
+
+        @Override
+        public String getProperty(String name) {
+            return db.getProperty(name);
+        }
+
+        @Override
+        public long[] getApproximateSizes(List<Pair<byte[], byte[]>> ranges) {
+            return LevelDB.getApproximateSizes(db, ranges);
+        }
+
+        @Override
+        public void close() {
+            try {
+                snapshot.close();
+            } catch (IOException e) {
+                logger.error("Failed to release snapshot", e);
+            }
+        }
+
+        @Override
+        public void destroy() {
+            throw new UnsupportedOperationException("Snapshot can not be destroyed");
+        }
+    }
+
     public static class LevelDBFactory implements DBFactory {
 
+        private static final String SEGMENTED_DIR_SUFFIX = "-seg";
+
         private EnumMap<DBName, KVDB> databases = new EnumMap<>(DBName.class);
 
         private File dataDir;
+        private Config config;
         private AtomicBoolean open;
 
+        /**
+         * Creates a factory of plain LevelDB databases.
+         * 
+         * @param dataDir
+         */
         public LevelDBFactory(File dataDir) {
+            this(dataDir, null);
+        }
+
+        /**
+         * Creates a factory which stores and caches each database as the config
+         * specifies.
+         * 
+         * @param config
+         */
+        public LevelDBFactory(Config config) {
+            this(config.dataDir(), config);
+        }
+
+        private LevelDBFactory(File dataDir, Config config) {
             this.dataDir = dataDir;
+            this.config = config;
             this.open = new AtomicBoolean(false);
 
             open();
@@ -185,9 +630,18 @@ public class LevelDB implements KVDB {
         protected void open() {
             if (open.compareAndSet(false, true)) {
                 for (DBName name : DBName.values()) {
-                    File file = new File(dataDir,
-                            Constants.DATABASE_DIR + File.separator + name.toString().toLowerCase());
-                    databases.put(name, new LevelDB(file));
+                    String dir = Constants.DATABASE_DIR + File.separator + name.toString().toLowerCase();
+
+                    KVDB db;
+                    if (config != null && config.dbSegmented().contains(name)) {
+                        db = new SegmentedDB(new File(dataDir, dir + SEGMENTED_DIR_SUFFIX));
+                    } else {
+                        db = (config == null) ? new LevelDB(new File(dataDir, dir))
+                                : new LevelDB(new File(dataDir, dir), config.dbProfile(name));
+                    }
+
+                    long cacheSize = (config == null) ? 0 : config.dbCacheSize(name);
+                    databases.put(name, cacheSize > 0 ? new CachingKVDB(db, cacheSize) : db);
                 }
             }
         }
@@ -0,0 +1,144 @@
+/**
+ * Copyright (c) 2017 The Semux Developers
+ *
+ * Distributed under the MIT software license, see the accompanying file
+ * LICENSE or https://opensource.org/licenses/mit-license.php
+ */
+package org.semux.db;
+
+import org.iq80.leveldb.CompressionType;
+import org.iq80.leveldb.Options;
+
+/**
+ * Tuning options of a LevelDB database.
+ * <p>
+ * There is no bloom filter option: leveldbjni 1.8 cannot set a filter policy.
+ * Repeated lookups of absent keys are served by {@link CachingKVDB}, which
+ * caches misses.
+ */
+public class LevelDBProfile {
+
+    private int blockSize;
+    private long blockCacheSize;
+    private int writeBufferSize;
+    private CompressionType compression;
+    private boolean verifyChecksums;
+
+    public LevelDBProfile(int blockSize, long blockCacheSize, int writeBufferSize, CompressionType compression,
+            boolean verifyChecksums) {
+        this.blockSize = blockSize;
+        this.blockCacheSize = blockCacheSize;
+        this.writeBufferSize = writeBufferSize;
+        this.compression = compression;
+        this.verifyChecksums = verifyChecksums;
+    }
+
+    /**
+     * Returns the options all databases used to share: large blocks, no
+     * compression and verified reads.
+     *
+     * @return
+     */
+    public static LevelDBProfile legacy() {
+        return new LevelDBProfile(4 * 1024 * 1024, 64L * 1024 * 1024, 8 * 1024 * 1024, CompressionType.NONE, true);
+    }
+
+    /**
+     * Returns the profile of the index of a {@link SegmentedDB}: small keys and
+     * locations, read by point lookups.
+     *
+     * @return
+     */
+    public static LevelDBProfile segmentIndex() {
+        return new LevelDBProfile(4 * 1024, 8L * 1024 * 1024, 4 * 1024 * 1024, CompressionType.NONE, false);
+    }
+
+    /**
+     * Returns the default profile of a database, based on how it is accessed.
+     *
+     * @param name
+     * @return
+     */
+    public static LevelDBProfile defaultOf(DBName name) {
+        switch (name) {
+        case INDEX:
+        case ACCOUNT:
+            // random point reads: small blocks, so a lookup reads little
+            return new LevelDBProfile(4 * 1024, 32L * 1024 * 1024, 4 * 1024 * 1024, CompressionType.NONE, false);
+        case BLOCK:
+            // sequential writes and range reads of large values
+            return new LevelDBProfile(64 * 1024, 32L * 1024 * 1024, 16 * 1024 * 1024, CompressionType.SNAPPY, true);
+        case DELEGATE:
+            return new LevelDBProfile(4 * 1024, 8L * 1024 * 1024, 4 * 1024 * 1024, CompressionType.NONE, false);
+        case VOTE:
+            // prefix scans over all the voters of a delegate
+            return new LevelDBProfile(64 * 1024, 16L * 1024 * 1024, 4 * 1024 * 1024, CompressionType.NONE, false);
+        default:
+            return legacy();
+        }
+    }
+
+    /**
+     * Creates the LevelDB options of this profile.
+     *
+     * @return
+     */
+    public Options toOptions() {
+        Options options = new Options();
+        options.createIfMissing(true);
+        options.compressionType(compression);
+        options.blockSize(blockSize);
+        options.writeBufferSize(writeBufferSize);
+        options.cacheSize(blockCacheSize);
+        options.paranoidChecks(true);
+        options.verifyChecksums(verifyChecksums);
+        options.maxOpenFiles(128);
+        return options;
+    }
+
+    public int getBlockSize() {
+        return blockSize;
+    }
+
+    public void setBlockSize(int blockSize) {
+        this.blockSize = blockSize;
+    }
+
+    public long getBlockCacheSize() {
+        return blockCacheSize;
+    }
+
+    public void setBlockCacheSize(long blockCacheSize) {
+        this.blockCacheSize = blockCacheSize;
+    }
+
+    public int getWriteBufferSize() {
+        return writeBufferSize;
+    }
+
+    public void setWriteBufferSize(int writeBufferSize) {
+        this.writeBufferSize = writeBufferSize;
+    }
+
+    public CompressionType getCompression() {
+        return compression;
+    }
+
+    public void setCompression(CompressionType compression) {
+        this.compression = compression;
+    }
+
+    public boolean isVerifyChecksums() {
+        return verifyChecksums;
+    }
+
+    public void setVerifyChecksums(boolean verifyChecksums) {
+        this.verifyChecksums = verifyChecksums;
+    }
+
+    @Override
+    public String toString() {
+        return "LevelDBProfile [blockSize=" + blockSize + ", blockCacheSize=" + blockCacheSize + ", writeBufferSize="
+                + writeBufferSize + ", compression=" + compression + ", verifyChecksums=" + verifyChecksums + "]";
+    }
+}
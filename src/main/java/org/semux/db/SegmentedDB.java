@@ -0,0 +1,536 @@
+/**
+ * Copyright (c) 2017 The Semux Developers
+ *
+ * Distributed under the MIT software license, see the accompanying file
+ * LICENSE or https://opensource.org/licenses/mit-license.php
+ */
+package org.semux.db;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.util.AbstractMap.SimpleImmutableEntry;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map.Entry;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.zip.CRC32;
+
+import org.apache.commons.lang3.tuple.Pair;
+import org.semux.db.exception.LevelDBException;
+import org.semux.util.ClosableIterator;
+import org.semux.util.FileUtil;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * An append-only key-value store for data which is written once and in order,
+ * such as blocks. Records are appended to fixed-size, memory-mapped segment
+ * files and are never rewritten, so there is no compaction. A small LevelDB
+ * index maps each key to the location of its value.
+ *
+ * <pre>
+ * segment structure:
+ *
+ * [crc, key_length, value_length, key, value] [crc, ...] ... [0, ...]
+ * </pre>
+ *
+ * A deletion is appended as a tombstone, a record with a value length of -1
+ * and no value, so rebuilding the index does not bring deleted keys back. The
+ * segments are forced to disk before the index refers to them.
+ *
+ * <pre>
+ * index DB structure:
+ *
+ * [key] => [segment, record_offset, value_length]
+ * </pre>
+ *
+ * While the index is rebuilt from the segments, a marker file is kept next to
+ * it, so an interrupted rebuild starts over on the next open.
+ * <p>
+ * Overwritten and deleted values stay in their segments until the database is
+ * destroyed. Pruning would reclaim no space and only add tombstones, so it is
+ * not combined with segmented databases.
+ */
+public class SegmentedDB implements KVDB {
+
+    private static final Logger logger = LoggerFactory.getLogger(SegmentedDB.class);
+
+    public static final int DEFAULT_SEGMENT_SIZE = 64 * 1024 * 1024;
+
+    private static final int RECORD_HEADER_SIZE = 12;
+    private static final int TOMBSTONE = -1;
+    private static final int LOCATION_SIZE = 12;
+    private static final String SEGMENT_SUFFIX = ".seg";
+    private static final String INDEX_DIR = "index";
+    private static final String REBUILD_MARKER = "index.rebuild";
+
+    private File dir;
+    private int segmentSize;
+
+    private LevelDB index;
+    private List<MappedByteBuffer> segments = new CopyOnWriteArrayList<>();
+    private int position;
+
+    // the first segment written since the segments were last forced, or -1
+    private int dirty = -1;
+
+    private boolean isOpened;
+
+    public SegmentedDB(File dir) {
+        this(dir, DEFAULT_SEGMENT_SIZE);
+    }
+
+    public SegmentedDB(File dir, int segmentSize) {
+        this.dir = dir;
+        this.segmentSize = segmentSize;
+
+        if (!dir.exists() && !dir.mkdirs()) {
+            logger.error("Failed to create directory: {}", dir);
+        }
+
+        this.index = new LevelDB(new File(dir, INDEX_DIR), LevelDBProfile.segmentIndex());
+
+        try {
+            for (int i = 0;; i++) {
+                File f = segmentFile(i);
+                if (!f.exists()) {
+                    break;
+                }
+                segments.add(map(f, f.length()));
+            }
+            recover();
+            isOpened = true;
+        } catch (IOException e) {
+            throw new LevelDBException("Failed to open segments: " + dir, e);
+        }
+    }
+
+    @Override
+    public byte[] get(byte[] key) {
+        byte[] location = index.get(key);
+        return (location == null) ? null : read(location);
+    }
+
+    @Override
+    public List<byte[]> multiGet(List<byte[]> keys) {
+        return resolve(index.multiGet(keys));
+    }
+
+    @Override
+    public synchronized void put(byte[] key, byte[] value) {
+        byte[] location = append(key, value);
+        force();
+        index.put(key, location);
+    }
+
+    @Override
+    public synchronized void delete(byte[] key) {
+        append(key, null);
+        force();
+        index.delete(key);
+    }
+
+    @Override
+    public synchronized void updateBatch(List<Pair<byte[], byte[]>> pairs) {
+        // values land on disk first, so the index never points to missing data
+        List<Pair<byte[], byte[]>> locations = new ArrayList<>();
+        for (Pair<byte[], byte[]> p : pairs) {
+            byte[] location = append(p.getLeft(), p.getRight());
+            locations.add(Pair.of(p.getLeft(), p.getRight() == null ? null : location));
+        }
+        force();
+        index.updateBatch(locations);
+    }
+
+    @Override
+    public ClosableIterator<Entry<byte[], byte[]>> iterator() {
+        return iterator(null);
+    }
+
+    @Override
+    public ClosableIterator<Entry<byte[], byte[]>> iterator(byte[] prefix) {
+        return resolve(index.iterator(prefix));
+    }
+
+    @Override
+    public ClosableIterator<Entry<byte[], byte[]>> iterator(byte[] from, byte[] to) {
+        return resolve(index.iterator(from, to));
+    }
+
+    @Override
+    public ClosableIterator<Entry<byte[], byte[]>> prefixIterator(byte[] prefix) {
+        return resolve(index.prefixIterator(prefix));
+    }
+
+    @Override
+    public ClosableIterator<Entry<byte[], byte[]>> reverseIterator(byte[] prefix) {
+        return resolve(index.reverseIterator(prefix));
+    }
+
+    @Override
+    public KVDB snapshot() {
+        return new SegmentedSnapshot(index.snapshot());
+    }
+
+    /**
+     * Compacts the index. Segments are append-only and never compacted.
+     */
+    @Override
+    public void compactRange(byte[] from, byte[] to) {
+        index.compactRange(from, to);
+    }
+
+    @Override
+    public String getProperty(String name) {
+        return index.getProperty(name);
+    }
+
+    /**
+     * Returns the bytes of the records in each range, plus the index size.
+     */
+    @Override
+    public long[] getApproximateSizes(List<Pair<byte[], byte[]>> ranges) {
+        return getApproximateSizes(index, ranges);
+    }
+
+    @Override
+    public synchronized void close() {
+        if (isOpened) {
+            force();
+            segments.clear();
+            index.close();
+            isOpened = false;
+        }
+    }
+
+    @Override
+    public void destroy() {
+        close();
+        FileUtil.recursiveDelete(dir);
+    }
+
+    /**
+     * Reads the value at the given location.
+     *
+     * @param location
+     * @return
+     */
+    protected byte[] read(byte[] location) {
+        ByteBuffer loc = ByteBuffer.wrap(location);
+        int segment = loc.getInt();
+        int offset = loc.getInt();
+
+        ByteBuffer buf = segments.get(segment).duplicate();
+        buf.position(offset);
+        int crc = buf.getInt();
+        byte[] key = new byte[buf.getInt()];
+        byte[] value = new byte[buf.getInt()];
+        buf.get(key);
+        buf.get(value);
+
+        if (crc != checksum(key, value)) {
+            throw new LevelDBException("Corrupted record in segment " + segment + " at " + offset);
+        }
+        return value;
+    }
+
+    /**
+     * Appends a record to the current segment, rolling over to a new segment if
+     * it is full.
+     *
+     * @param key
+     * @param value
+     *            the value, or null for a tombstone
+     * @return the encoded location of the value
+     */
+    protected byte[] append(byte[] key, byte[] value) {
+        byte[] bytes = (value == null) ? new byte[0] : value;
+        int size = RECORD_HEADER_SIZE + key.length + bytes.length;
+
+        try {
+            if (segments.isEmpty() || position + size > segments.get(segments.size() - 1).capacity()) {
+                // a record larger than the segment size gets a segment of its own
+                File f = segmentFile(segments.size());
+                segments.add(map(f, Math.max(segmentSize, size)));
+                position = 0;
+            }
+        } catch (IOException e) {
+            throw new LevelDBException("Failed to create segment", e);
+        }
+
+        int segment = segments.size() - 1;
+        ByteBuffer buf = segments.get(segment).duplicate();
+        buf.position(position);
+        buf.putInt(checksum(key, bytes));
+        buf.putInt(key.length);
+        buf.putInt((value == null) ? TOMBSTONE : bytes.length);
+        buf.put(key);
+        buf.put(bytes);
+
+        int offset = position;
+        position += size;
+        if (dirty < 0) {
+            dirty = segment;
+        }
+
+        return location(segment, offset, bytes.length);
+    }
+
+    /**
+     * Forces the segments written since the last call to disk.
+     */
+    protected void force() {
+        if (dirty >= 0) {
+            for (int i = dirty; i < segments.size(); i++) {
+                segments.get(i).force();
+            }
+            dirty = -1;
+        }
+    }
+
+    /**
+     * Finds the end of the last segment. If the index has been lost, or a previous
+     * rebuild was interrupted, it is rebuilt from the segments.
+     *
+     * @throws IOException
+     */
+    protected void recover() throws IOException {
+        // each segment is indexed in its own batch, so a partial index is not empty
+        File marker = new File(dir, REBUILD_MARKER);
+        boolean rebuild = !segments.isEmpty() && (marker.exists() || isIndexEmpty());
+        if (rebuild) {
+            logger.info("Rebuilding the index of {}", dir);
+            if (!marker.exists() && !marker.createNewFile()) {
+                throw new IOException("Failed to create the rebuild marker: " + marker);
+            }
+        }
+
+        for (int i = rebuild ? 0 : Math.max(0, segments.size() - 1); i < segments.size(); i++) {
+            ByteBuffer buf = segments.get(i).duplicate();
+            List<Pair<byte[], byte[]>> locations = new ArrayList<>();
+
+            while (buf.remaining() >= RECORD_HEADER_SIZE) {
+                int start = buf.position();
+                int crc = buf.getInt();
+                int keyLength = buf.getInt();
+                int valueLength = buf.getInt();
+
+                // an empty or torn record marks the end of the segment
+                boolean isTombstone = valueLength == TOMBSTONE;
+                int length = isTombstone ? 0 : valueLength;
+                if (keyLength <= 0 || length < 0 || keyLength + length > buf.remaining()) {
+                    buf.position(start);
+                    break;
+                }
+                byte[] key = new byte[keyLength];
+                byte[] value = new byte[length];
+                buf.get(key);
+                buf.get(value);
+                if (crc != checksum(key, value)) {
+                    buf.position(start);
+                    break;
+                }
+
+                // the later records of a key, including its tombstone, override the earlier ones
+                if (rebuild) {
+                    locations.add(Pair.of(key, isTombstone ? null : location(i, start, valueLength)));
+                }
+            }
+
+            index.updateBatch(locations);
+            position = buf.position();
+        }
+
+        if (rebuild) {
+            Files.delete(marker.toPath());
+        }
+    }
+
+    private static long[] getApproximateSizes(KVDB index, List<Pair<byte[], byte[]>> ranges) {
+        long[] sizes = index.getApproximateSizes(ranges);
+        for (int i = 0; i < ranges.size(); i++) {
+            ClosableIterator<Entry<byte[], byte[]>> itr = index.iterator(ranges.get(i).getLeft(),
+                    ranges.get(i).getRight());
+            try {
+                while (itr.hasNext()) {
+                    Entry<byte[], byte[]> e = itr.next();
+                    int valueLength = ByteBuffer.wrap(e.getValue()).getInt(8);
+                    sizes[i] += RECORD_HEADER_SIZE + e.getKey().length + valueLength;
+                }
+            } finally {
+                itr.close();
+            }
+        }
+        return sizes;
+    }
+
+    private boolean isIndexEmpty() {
+        ClosableIterator<Entry<byte[], byte[]>> itr = index.iterator();
+        try {
+            return !itr.hasNext();
+        } finally {
+            itr.close();
+        }
+    }
+
+    private static byte[] location(int segment, int offset, int length) {
+        return ByteBuffer.allocate(LOCATION_SIZE).putInt(segment).putInt(offset).putInt(length).array();
+    }
+
+    private File segmentFile(int n) {
+        return new File(dir, String.format("%08d", n) + SEGMENT_SUFFIX);
+    }
+
+    private static MappedByteBuffer map(File file, long size) throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.setLength(size);
+            return raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, size);
+        }
+    }
+
+    private static int checksum(byte[] key, byte[] value) {
+        CRC32 crc = new CRC32();
+        crc.update(key);
+        crc.update(value);
+        return (int) crc.getValue();
+    }
+
+    /**
+     * Maps a list of locations to values, keeping nulls.
+     *
+     * @param locations
+     * @return
+     */
+    private List<byte[]> resolve(List<byte[]> locations) {
+        List<byte[]> values = new ArrayList<>(locations.size());
+        for (byte[] location : locations) {
+            values.add((location == null) ? null : read(location));
+        }
+        return values;
+    }
+
+    /**
+     * Maps the locations returned by an index iterator to values.
+     *
+     * @param itr
+     * @return
+     */
+    private ClosableIterator<Entry<byte[], byte[]>> resolve(ClosableIterator<Entry<byte[], byte[]>> itr) {
+        return new ClosableIterator<Entry<byte[], byte[]>>() {
+            @Override
+            public boolean hasNext() {
+                return itr.hasNext();
+            }
+
+            @Override
+            public Entry<byte[], byte[]> next() {
+                Entry<byte[], byte[]> e = itr.next();
+                return new SimpleImmutableEntry<>(e.getKey(), read(e.getValue()));
+            }
+
+            @Override
+            public void close() {
+                itr.close();
+            }
+        };
+    }
+
+    /**
+     * A read-only view of the segmented database. Segments are never rewritten,
+     * so a snapshot of the index is enough.
+     */
+    private class SegmentedSnapshot implements KVDB {
+
+        private KVDB indexSnapshot;
+
+        SegmentedSnapshot(KVDB indexSnapshot) {
+            this.indexSnapshot = indexSnapshot;
+        }
+
+        @Override
+        public byte[] get(byte[] key) {
+            byte[] location = indexSnapshot.get(key);
+            return (location == null) ? null : read(location);
+        }
+
+        @Override
+        public List<byte[]> multiGet(List<byte[]> keys) {
+            return resolve(indexSnapshot.multiGet(keys));
+        }
+
+        @Override
+        public void put(byte[] key, byte[] value) {
+            throw new UnsupportedOperationException("Snapshot is read-only");
+        }
+
+        @Override
+        public void delete(byte[] key) {
+            throw new UnsupportedOperationException("Snapshot is read-only");
+        }
+
+        @Override
+        public void updateBatch(List<Pair<byte[], byte[]>> pairs) {
+            throw new UnsupportedOperationException("Snapshot is read-only");
+        }
+
+        @Override
+        public ClosableIterator<Entry<byte[], byte[]>> iterator() {
+            return iterator(null);
+        }
+
+        @Override
+        public ClosableIterator<Entry<byte[], byte[]>> iterator(byte[] prefix) {
+            return resolve(indexSnapshot.iterator(prefix));
+        }
+
+        @Override
+        public ClosableIterator<Entry<byte[], byte[]>> iterator(byte[] from, byte[] to) {
+            return resolve(indexSnapshot.iterator(from, to));
+        }
+
+        @Override
+        public ClosableIterator<Entry<byte[], byte[]>> prefixIterator(byte[] prefix) {
+            return resolve(indexSnapshot.prefixIterator(prefix));
+        }
+
+        @Override
+        public ClosableIterator<Entry<byte[], byte[]>> reverseIterator(byte[] prefix) {
+            return resolve(indexSnapshot.reverseIterator(prefix));
+        }
+
+        @Override
+        public KVDB snapshot() {
+            throw new UnsupportedOperationException("Snapshot of a snapshot is not supported");
+        }
+
+        @Override
+        public void compactRange(byte[] from, byte[] to) {
+            throw new UnsupportedOperationException("Snapshot is read-only");
+        }
+
+        @Override
+        public String getProperty(String name) {
+            return indexSnapshot.getProperty(name);
+        }
+
+        @Override
+        public long[] getApproximateSizes(List<Pair<byte[], byte[]>> ranges) {
+            return SegmentedDB.getApproximateSizes(indexSnapshot, ranges);
+        }
+
+        @Override
+        public void close() {
+            indexSnapshot.close();
+        }
+
+        @Override
+        public void destroy() {
+            throw new UnsupportedOperationException("Snapshot can not be destroyed");
+        }
+    }
+}
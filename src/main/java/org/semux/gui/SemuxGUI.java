@@ -9,11 +9,9 @@ package org.semux.gui;
 import java.awt.EventQueue;
 import java.io.File;
 import java.util.ArrayList;
-import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.concurrent.locks.ReentrantReadWriteLock.ReadLock;
 
 import javax.swing.JOptionPane;
 import javax.swing.UIManager;
@@ -30,7 +28,7 @@ import org.semux.cli.CLIOptions;
 import org.semux.config.Constants;
 import org.semux.core.Block;
 import org.semux.core.Blockchain;
-import org.semux.core.Transaction;
+import org.semux.core.ReadView;
 import org.semux.core.Wallet;
 import org.semux.core.state.Account;
 import org.semux.core.state.AccountState;
@@ -166,7 +164,7 @@ public class SemuxGUI extends Launcher {
         // start kernel
         kernel = new Kernel(getConfig(), wallet, wallet.getAccount(getCoinbase()));
         kernel.start();
-        onBlockAdded(kernel.getBlockchain().getLatestBlock());
+        refresh();
 
         // start main frame
         EventQueue.invokeLater(() -> {
@@ -190,11 +188,7 @@ public class SemuxGUI extends Launcher {
                     break;
                 }
 
-                // necessary because when kernel exists, the GUI component is not closed.
-                ReadLock lock = kernel.getStateLock().readLock();
-                lock.lock();
-                onBlockAdded(kernel.getBlockchain().getLatestBlock());
-                lock.unlock();
+                refresh();
             }
 
             logger.info("Data refresh stopped");
@@ -223,10 +217,30 @@ public class SemuxGUI extends Launcher {
         }, "gui-version").start();
     }
 
-    private void onBlockAdded(Block block) {
+    /**
+     * Refreshes the wallet model from a snapshot of the chain state, so block
+     * application is never blocked.
+     */
+    private void refresh() {
         Blockchain chain = kernel.getBlockchain();
-        AccountState as = chain.getAccountState();
-        DelegateState ds = chain.getDelegateState();
+        ReadView view;
+        try {
+            view = chain.openReadView();
+        } catch (IllegalStateException e) {
+            logger.debug("Blockchain stopped, skipping the refresh");
+            return;
+        }
+        try {
+            onBlockAdded(chain.getBlock(view.getBlockNumber()), view);
+        } finally {
+            view.close();
+        }
+    }
+
+    private void onBlockAdded(Block block, ReadView view) {
+        Blockchain chain = kernel.getBlockchain();
+        AccountState as = view.getAccountState();
+        DelegateState ds = view.getDelegateState();
 
         // update latestBlock and isDelegate
         model.setLatestBlock(block);
@@ -240,11 +254,7 @@ public class SemuxGUI extends Launcher {
             was.add(wa);
 
             // most recent transactions of this account
-            byte[] address = wa.getKey().toAddress();
-            int total = chain.getTransactionCount(address);
-            List<Transaction> list = chain.getTransactions(address, Math.max(0, total - TRANSACTION_LIMIT), total);
-            Collections.reverse(list);
-            wa.setTransactions(list);
+            wa.setTransactions(chain.getLatestTransactions(wa.getKey().toAddress(), TRANSACTION_LIMIT));
         }
         model.setAccounts(was);
 
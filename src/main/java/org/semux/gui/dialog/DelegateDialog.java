@@ -14,7 +14,7 @@ import javax.swing.JLabel;
 import javax.swing.JTextArea;
 import javax.swing.LayoutStyle.ComponentPlacement;
 
-import org.semux.core.Block;
+import org.semux.core.BlockHeader;
 import org.semux.crypto.Hex;
 import org.semux.gui.SemuxGUI;
 import org.semux.gui.SwingUtil;
@@ -26,7 +26,7 @@ public class DelegateDialog extends JDialog {
     private static final long serialVersionUID = 1L;
 
     public DelegateDialog(SemuxGUI gui, JFrame parent, WalletDelegate d) {
-        Block block = gui.getKernel().getBlockchain().getBlock(d.getRegisteredAt());
+        BlockHeader block = gui.getKernel().getBlockchain().getBlockHeader(d.getRegisteredAt());
 
         JLabel lblName = new JLabel(GUIMessages.get("Name") + ":");
         JLabel lblAddress = new JLabel(GUIMessages.get("Address") + ":");
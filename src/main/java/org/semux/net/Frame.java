@@ -6,6 +6,9 @@
  */
 package org.semux.net;
 
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+
 /**
  * Represent a frame in the Semux network. Numbers are signed and in big-endian.
  * 
@@ -14,6 +17,9 @@ package org.semux.net;
  * <li>HEADER := SIZE + TYPE + PACKET_ID + PACKET_SIZE</li>
  * <li>BODY := RAW_DATA
  * </ul>
+ * 
+ * The payload of an outgoing frame is usually a slice of the encoded message,
+ * so that it is not copied.
  */
 public class Frame {
     public static final int HEADER_SIZE = 32;
@@ -26,9 +32,13 @@ public class Frame {
     private int packetId; /* 4 bytes */
     private int packetSize; /* 4 bytes */
 
-    private byte[] payload;
+    private ByteBuf payload;
 
     public Frame(int size, byte type, byte network, int packetId, int packetSize, byte[] payload) {
+        this(size, type, network, packetId, packetSize, Unpooled.wrappedBuffer(payload));
+    }
+
+    public Frame(int size, byte type, byte network, int packetId, int packetSize, ByteBuf payload) {
         this.size = size;
         this.type = type;
         this.network = network;
@@ -61,7 +71,7 @@ public class Frame {
         return packetSize;
     }
 
-    public byte[] getPayload() {
+    public ByteBuf getPayload() {
         return payload;
     }
 
@@ -29,6 +29,7 @@ public class Peer {
      * Variables below are not persisted
      */
     private long latency;
+    private double downloadRate;
 
     /**
      * Create a new Peer instance.
@@ -140,6 +141,29 @@ public class Peer {
         this.latency = latency;
     }
 
+    /**
+     * Returns the rate at which blocks have been downloaded from this peer, in
+     * blocks per second, or 0 if none has been.
+     * 
+     * @return
+     */
+    public double getDownloadRate() {
+        return downloadRate;
+    }
+
+    /**
+     * Records a download from this peer into its moving average rate.
+     * 
+     * @param blocks
+     *            the number of blocks received
+     * @param millis
+     *            the time from request to response
+     */
+    public void updateDownloadRate(int blocks, long millis) {
+        double rate = blocks * 1000.0 / Math.max(millis, 1L);
+        downloadRate = (downloadRate == 0) ? rate : 0.7 * downloadRate + 0.3 * rate;
+    }
+
     /**
      * Converts into a byte array.
      * 
@@ -14,6 +14,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.handler.codec.ByteToMessageCodec;
 
@@ -31,19 +32,18 @@ public class SemuxFrameHandler extends ByteToMessageCodec<Frame> {
     protected void encode(ChannelHandlerContext ctx, Frame frame, ByteBuf out) throws Exception {
         // NOTE: write() operation does not flush automatically
 
-        ByteBuf buf = out.alloc().buffer(Frame.HEADER_SIZE + frame.getSize());
+        ByteBuf header = out.alloc().buffer(Frame.HEADER_SIZE);
 
-        int index = buf.writerIndex();
-        buf.writeInt(frame.getSize());
-        buf.writeByte(frame.getType());
-        buf.writeByte(frame.getNetwork());
-        buf.writeInt(frame.getPacketId());
-        buf.writeInt(frame.getPacketSize());
+        int index = header.writerIndex();
+        header.writeInt(frame.getSize());
+        header.writeByte(frame.getType());
+        header.writeByte(frame.getNetwork());
+        header.writeInt(frame.getPacketId());
+        header.writeInt(frame.getPacketSize());
+        header.writerIndex(index + Frame.HEADER_SIZE);
 
-        buf.writerIndex(index + Frame.HEADER_SIZE);
-        buf.writeBytes(frame.getPayload());
-
-        ctx.write(buf);
+        // the payload is written as a component, not copied
+        ctx.write(Unpooled.wrappedBuffer(header, frame.getPayload()));
     }
 
     @Override
@@ -21,6 +21,8 @@ import org.semux.net.msg.MessageFactory;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.handler.codec.MessageToMessageCodec;
 
@@ -45,26 +47,29 @@ public class SemuxMessageHandler extends MessageToMessageCodec<Frame, Message> {
 
     @Override
     protected void encode(ChannelHandlerContext ctx, Message msg, List<Object> out) throws Exception {
-        byte[] encoded = msg.getEncoded();
+        // the parts are wrapped, not copied
+        ByteBuf encoded = Unpooled.wrappedBuffer(msg.getEncodedParts());
         int packetId = count.incrementAndGet() % Integer.MAX_VALUE;
-        int packetSize = encoded.length;
+        int packetSize = encoded.readableBytes();
         byte type = msg.getCode().toByte();
         byte network = config.networkId();
 
         if (packetSize > config.netMaxPacketSize()) {
             logger.error("Invalid packet size, max = {}, actual = {}", config.netMaxPacketSize(), packetSize);
+            encoded.release();
             return;
         }
 
         int limit = config.netMaxFrameSize();
-        int total = (encoded.length - 1) / limit + 1;
+        int total = (packetSize - 1) / limit + 1;
         for (int i = 0; i < total; i++) {
-            byte[] payload = new byte[(i < total - 1) ? limit : encoded.length % limit];
-            System.arraycopy(encoded, i * limit, payload, 0, payload.length);
+            int size = (i < total - 1) ? limit : packetSize - i * limit;
+            ByteBuf payload = encoded.retainedSlice(i * limit, size);
 
-            Frame f = new Frame(payload.length, type, network, packetId, packetSize, payload);
+            Frame f = new Frame(size, type, network, packetId, packetSize, payload);
             out.add(f);
         }
+        encoded.release();
     }
 
     @Override
@@ -125,7 +130,7 @@ public class SemuxMessageHandler extends MessageToMessageCodec<Frame, Message> {
         byte[] buffer = new byte[packetSize];
         int pos = 0;
         for (Frame frame : frames) {
-            System.arraycopy(frame.getPayload(), 0, buffer, pos, frame.getSize());
+            frame.getPayload().getBytes(0, buffer, pos, frame.getSize());
             pos += frame.getSize();
         }
 
@@ -6,6 +6,8 @@
  */
 package org.semux.net;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ScheduledFuture;
@@ -29,8 +31,10 @@ import org.semux.net.msg.ReasonCode;
 import org.semux.net.msg.consensus.BFTNewHeightMessage;
 import org.semux.net.msg.consensus.BlockHeaderMessage;
 import org.semux.net.msg.consensus.BlockMessage;
+import org.semux.net.msg.consensus.BlocksMessage;
 import org.semux.net.msg.consensus.GetBlockHeaderMessage;
 import org.semux.net.msg.consensus.GetBlockMessage;
+import org.semux.net.msg.consensus.GetBlocksMessage;
 import org.semux.net.msg.p2p.DisconnectMessage;
 import org.semux.net.msg.p2p.GetNodesMessage;
 import org.semux.net.msg.p2p.HelloMessage;
@@ -52,6 +56,10 @@ public class SemuxP2pHandler extends SimpleChannelInboundHandler<Message> {
 
     private final static Logger logger = LoggerFactory.getLogger(SemuxP2pHandler.class);
 
+    private static final int MAX_BLOCKS_PER_MESSAGE = 128;
+
+    private static final int MAX_HEADERS_PER_MESSAGE = 1024;
+
     private static ScheduledExecutorService exec = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
         private AtomicInteger cnt = new AtomicInteger(0);
 
@@ -162,7 +170,7 @@ public class SemuxP2pHandler extends SimpleChannelInboundHandler<Message> {
                 error = ReasonCode.BAD_PROTOCOL;
             } else if (client.getPeerId().equals(peer.getPeerId()) || channelMgr.isActivePeer(peer.getPeerId())) {
                 error = ReasonCode.DUPLICATE_PEER_ID;
-            } else if (chain.getValidators().contains(peer.getPeerId()) // validator
+            } else if (chain.getValidatorSet().contains(peer.getPeerId()) // validator
                     && channelMgr.isActiveIP(channel.getRemoteIp()) // connected
                     && config.networkId() == Constants.MAIN_NET_ID) { // main net
                 error = ReasonCode.BAD_PEER;
@@ -234,8 +242,10 @@ public class SemuxP2pHandler extends SimpleChannelInboundHandler<Message> {
         case GET_BLOCK: {
             if (isHandshakeDone) {
                 GetBlockMessage m = (GetBlockMessage) msg;
-                Block block = chain.getBlock(m.getNumber());
-                channel.getMessageQueue().sendMessage(new BlockMessage(block));
+                // the stored block is sent as is, without decoding
+                byte[][] parts = chain.getBlockBytes(m.getNumber());
+                channel.getMessageQueue().sendMessage((parts == null) ? new BlockMessage((Block) null)
+                        : new BlockMessage(parts[0], parts[1], parts[2], parts[3]));
             }
             break;
         }
@@ -245,11 +255,23 @@ public class SemuxP2pHandler extends SimpleChannelInboundHandler<Message> {
             }
             break;
         }
+        case GET_BLOCKS: {
+            if (isHandshakeDone) {
+                GetBlocksMessage m = (GetBlocksMessage) msg;
+                channel.getMessageQueue().sendMessage(new BlocksMessage(getBlocksBytes(m.getFrom(), m.getCount())));
+            }
+            break;
+        }
+        case BLOCKS: {
+            if (isHandshakeDone) {
+                sync.onMessage(channel, msg);
+            }
+            break;
+        }
         case GET_BLOCK_HEADER: {
             if (isHandshakeDone) {
                 GetBlockHeaderMessage m = (GetBlockHeaderMessage) msg;
-                BlockHeader header = chain.getBlockHeader(m.getNumber());
-                channel.getMessageQueue().sendMessage(new BlockHeaderMessage(header));
+                channel.getMessageQueue().sendMessage(new BlockHeaderMessage(getHeaders(m.getNumber(), m.getCount())));
             }
             break;
         }
@@ -278,6 +300,53 @@ public class SemuxP2pHandler extends SimpleChannelInboundHandler<Message> {
         }
     }
 
+    /**
+     * Reads the stored blocks of a range, as many as fit in one packet.
+     * 
+     * @param from
+     * @param count
+     * @return
+     */
+    private byte[][][] getBlocksBytes(long from, int count) {
+        List<byte[][]> blocks = new ArrayList<>();
+        int size = 4;
+        for (long n = from; n < from + Math.min(count, MAX_BLOCKS_PER_MESSAGE); n++) {
+            byte[][] parts = chain.getBlockBytes(n);
+            if (parts == null || size + BlocksMessage.getEncodedSize(parts) > config.netMaxPacketSize()) {
+                break;
+            }
+            blocks.add(parts);
+            size += BlocksMessage.getEncodedSize(parts);
+        }
+
+        return blocks.toArray(new byte[0][][]);
+    }
+
+    /**
+     * Reads the headers of a range, as many as fit in one packet.
+     * 
+     * @param from
+     * @param count
+     * @return
+     */
+    private List<BlockHeader> getHeaders(long from, int count) {
+        List<BlockHeader> headers = new ArrayList<>();
+        int size = 0;
+        for (long n = from; n < from + Math.min(count, MAX_HEADERS_PER_MESSAGE); n++) {
+            BlockHeader header = chain.getBlockHeader(n);
+            if (header == null) {
+                break;
+            }
+            size += 4 + header.toBytes().length;
+            if (size > config.netMaxPacketSize()) {
+                break;
+            }
+            headers.add(header);
+        }
+
+        return headers;
+    }
+
     /**
      * Checks if a HELLO message is success.
      *
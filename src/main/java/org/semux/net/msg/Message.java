@@ -50,6 +50,16 @@ public abstract class Message {
         return encoded;
     }
 
+    /**
+     * Get the encoded data as a sequence of segments, which are sent in order
+     * without being joined.
+     * 
+     * @return
+     */
+    public byte[][] getEncodedParts() {
+        return new byte[][] { getEncoded() };
+    }
+
     /**
      * Get the message code
      * 
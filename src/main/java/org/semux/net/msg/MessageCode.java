@@ -76,6 +76,16 @@ public enum MessageCode {
      */
     BLOCK_HEADER(0x33),
 
+    /**
+     * [0x34] Request a range of blocks from the peer.
+     */
+    GET_BLOCKS(0x34),
+
+    /**
+     * [0x35] Response containing a range of blocks.
+     */
+    BLOCKS(0x35),
+
     // =======================================
     // [0x40, 0x4f] Reserved for BFT
     // =======================================
@@ -12,8 +12,10 @@ import org.semux.net.msg.consensus.BFTProposalMessage;
 import org.semux.net.msg.consensus.BFTVoteMessage;
 import org.semux.net.msg.consensus.BlockHeaderMessage;
 import org.semux.net.msg.consensus.BlockMessage;
+import org.semux.net.msg.consensus.BlocksMessage;
 import org.semux.net.msg.consensus.GetBlockHeaderMessage;
 import org.semux.net.msg.consensus.GetBlockMessage;
+import org.semux.net.msg.consensus.GetBlocksMessage;
 import org.semux.net.msg.p2p.DisconnectMessage;
 import org.semux.net.msg.p2p.GetNodesMessage;
 import org.semux.net.msg.p2p.HelloMessage;
@@ -65,6 +67,10 @@ public class MessageFactory {
                 return new GetBlockHeaderMessage(encoded);
             case BLOCK_HEADER:
                 return new BlockHeaderMessage(encoded);
+            case GET_BLOCKS:
+                return new GetBlocksMessage(encoded);
+            case BLOCKS:
+                return new BlocksMessage(encoded);
 
             case BFT_NEW_HEIGHT:
                 return new BFTNewHeightMessage(encoded);
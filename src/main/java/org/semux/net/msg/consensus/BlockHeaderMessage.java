@@ -6,6 +6,10 @@
  */
 package org.semux.net.msg.consensus;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
 import org.semux.core.BlockHeader;
 import org.semux.net.msg.Message;
 import org.semux.net.msg.MessageCode;
@@ -13,36 +17,64 @@ import org.semux.util.Bytes;
 import org.semux.util.SimpleDecoder;
 import org.semux.util.SimpleEncoder;
 
+/**
+ * Response to a GET_BLOCK_HEADER message, containing consecutive headers from
+ * the requested number on. The headers after the first are appended to the
+ * single header response, so peers which do not read them see one header.
+ */
 public class BlockHeaderMessage extends Message {
 
-    private BlockHeader header;
+    private List<BlockHeader> headers;
 
     public BlockHeaderMessage(BlockHeader header) {
-        super(MessageCode.GET_BLOCK_HEADER, null);
+        this((header == null) ? Collections.emptyList() : Collections.singletonList(header));
+    }
 
-        this.header = header;
+    public BlockHeaderMessage(List<BlockHeader> headers) {
+        super(MessageCode.BLOCK_HEADER, null);
+
+        this.headers = headers;
 
         SimpleEncoder enc = new SimpleEncoder();
-        enc.writeBytes(header == null ? Bytes.EMPTY_BYTES : header.toBytes());
+        if (headers.isEmpty()) {
+            enc.writeBytes(Bytes.EMPTY_BYTES);
+        }
+        for (BlockHeader header : headers) {
+            enc.writeBytes(header.toBytes());
+        }
         this.encoded = enc.toBytes();
     }
 
     public BlockHeaderMessage(byte[] encoded) {
-        super(MessageCode.GET_BLOCK, null);
+        super(MessageCode.BLOCK_HEADER, null);
 
         this.encoded = encoded;
+        this.headers = new ArrayList<>();
 
         SimpleDecoder dec = new SimpleDecoder(encoded);
-        byte[] bytes = dec.readBytes();
-        this.header = (bytes.length == 0) ? null : BlockHeader.fromBytes(bytes);
+        while (dec.getReadIndex() < encoded.length) {
+            byte[] bytes = dec.readBytes();
+            if (bytes.length != 0) {
+                headers.add(BlockHeader.fromBytes(bytes));
+            }
+        }
     }
 
+    /**
+     * Returns the first header, or null if there is none.
+     * 
+     * @return
+     */
     public BlockHeader getHeader() {
-        return header;
+        return headers.isEmpty() ? null : headers.get(0);
+    }
+
+    public List<BlockHeader> getHeaders() {
+        return Collections.unmodifiableList(headers);
     }
 
     @Override
     public String toString() {
-        return "BlockHeaderMessage [header=" + header + "]";
+        return "BlockHeaderMessage [headers=" + headers.size() + ", first=" + getHeader() + "]";
     }
 }
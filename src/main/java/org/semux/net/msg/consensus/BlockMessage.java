@@ -17,6 +17,11 @@ public class BlockMessage extends Message {
 
     private Block block;
 
+    /**
+     * Length-prefixed parts of a block that has not been decoded.
+     */
+    private byte[][] parts;
+
     public BlockMessage(Block block) {
         super(MessageCode.BLOCK, null);
 
@@ -46,12 +51,49 @@ public class BlockMessage extends Message {
         }
     }
 
+    /**
+     * Create a block message from the encoded parts of a block, without decoding
+     * them.
+     * 
+     * @param header
+     * @param transactions
+     * @param results
+     * @param votes
+     */
+    public BlockMessage(byte[] header, byte[] transactions, byte[] results, byte[] votes) {
+        super(MessageCode.BLOCK, null);
+
+        this.encoded = null;
+        this.parts = new byte[][] { Bytes.of(header.length), header, Bytes.of(transactions.length), transactions,
+                Bytes.of(results.length), results, Bytes.of(votes.length), votes };
+    }
+
     public Block getBlock() {
+        if (block == null && parts != null) {
+            block = Block.fromBytes(parts[1], parts[3], parts[5], parts[7]);
+        }
         return block;
     }
 
+    @Override
+    public byte[] getEncoded() {
+        if (encoded == null) {
+            SimpleEncoder enc = new SimpleEncoder();
+            for (int i = 1; i < parts.length; i += 2) {
+                enc.writeBytes(parts[i]);
+            }
+            encoded = enc.toBytes();
+        }
+        return encoded;
+    }
+
+    @Override
+    public byte[][] getEncodedParts() {
+        return (parts != null) ? parts : super.getEncodedParts();
+    }
+
     @Override
     public String toString() {
-        return "BlockMessage [block=" + block + "]";
+        return "BlockMessage [block=" + getBlock() + "]";
     }
 }
@@ -0,0 +1,135 @@
+/**
+ * Copyright (c) 2017 The Semux Developers
+ *
+ * Distributed under the MIT software license, see the accompanying file
+ * LICENSE or https://opensource.org/licenses/mit-license.php
+ */
+package org.semux.net.msg.consensus;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.semux.core.Block;
+import org.semux.net.msg.Message;
+import org.semux.net.msg.MessageCode;
+import org.semux.util.Bytes;
+import org.semux.util.SimpleDecoder;
+import org.semux.util.SimpleEncoder;
+
+/**
+ * Response to a GET_BLOCKS message, containing consecutive blocks from the
+ * requested number on. It may hold fewer blocks than requested, or none.
+ */
+public class BlocksMessage extends Message {
+
+    private List<Block> blocks;
+
+    /**
+     * Length-prefixed parts of blocks that have not been decoded, preceded by the
+     * number of blocks.
+     */
+    private byte[][] parts;
+
+    public BlocksMessage(List<Block> blocks) {
+        super(MessageCode.BLOCKS, null);
+
+        this.blocks = blocks;
+
+        SimpleEncoder enc = new SimpleEncoder();
+        enc.writeInt(blocks.size());
+        for (Block block : blocks) {
+            enc.writeBytes(block.toBytesHeader());
+            enc.writeBytes(block.toBytesTransactions());
+            enc.writeBytes(block.toBytesResults());
+            enc.writeBytes(block.toBytesVotes());
+        }
+        this.encoded = enc.toBytes();
+    }
+
+    public BlocksMessage(byte[] encoded) {
+        super(MessageCode.BLOCKS, null);
+
+        this.encoded = encoded;
+
+        SimpleDecoder dec = new SimpleDecoder(encoded);
+        int n = dec.readInt();
+        this.blocks = new ArrayList<>();
+        for (int i = 0; i < n; i++) {
+            byte[] header = dec.readBytes();
+            byte[] transactions = dec.readBytes();
+            byte[] results = dec.readBytes();
+            byte[] votes = dec.readBytes();
+            blocks.add(Block.fromBytes(header, transactions, results, votes));
+        }
+    }
+
+    /**
+     * Create a blocks message from the encoded parts of blocks, as returned by
+     * {@link org.semux.core.Blockchain#getBlockBytes(long)}, without decoding
+     * them.
+     * 
+     * @param blocks
+     */
+    public BlocksMessage(byte[][][] blocks) {
+        super(MessageCode.BLOCKS, null);
+
+        this.encoded = null;
+        this.parts = new byte[1 + blocks.length * 8][];
+        this.parts[0] = Bytes.of(blocks.length);
+        for (int i = 0; i < blocks.length; i++) {
+            for (int j = 0; j < 4; j++) {
+                parts[1 + i * 8 + j * 2] = Bytes.of(blocks[i][j].length);
+                parts[2 + i * 8 + j * 2] = blocks[i][j];
+            }
+        }
+    }
+
+    /**
+     * Returns the size of a block in this message, from its encoded parts.
+     * 
+     * @param parts
+     * @return
+     */
+    public static int getEncodedSize(byte[][] parts) {
+        int size = 0;
+        for (byte[] part : parts) {
+            size += 4 + part.length;
+        }
+        return size;
+    }
+
+    public List<Block> getBlocks() {
+        if (blocks == null && parts != null) {
+            List<Block> list = new ArrayList<>();
+            for (int i = 1; i < parts.length; i += 8) {
+                list.add(Block.fromBytes(parts[i + 1], parts[i + 3], parts[i + 5], parts[i + 7]));
+            }
+            blocks = list;
+        }
+        return Collections.unmodifiableList(blocks);
+    }
+
+    @Override
+    public byte[] getEncoded() {
+        if (encoded == null) {
+            SimpleEncoder enc = new SimpleEncoder();
+            enc.writeInt((parts.length - 1) / 8);
+            for (int i = 2; i < parts.length; i += 2) {
+                enc.writeBytes(parts[i]);
+            }
+            encoded = enc.toBytes();
+        }
+        return encoded;
+    }
+
+    @Override
+    public byte[][] getEncodedParts() {
+        return (parts != null) ? parts : super.getEncodedParts();
+    }
+
+    @Override
+    public String toString() {
+        return "BlocksMessage [size=" + getBlocks().size() + "]";
+    }
+}
@@ -13,32 +13,56 @@ import org.semux.util.SimpleEncoder;
 
 public class GetBlockHeaderMessage extends Message {
     private long number;
+    private int count;
 
     public GetBlockHeaderMessage(long number) {
-        super(MessageCode.GET_BLOCK_HEADER, BlockMessage.class);
+        this(number, 1);
+    }
+
+    /**
+     * Create a request for the headers from a number on. The count is appended
+     * to the single header request, so peers which do not read it reply with
+     * one header.
+     * 
+     * @param number
+     *            the number of the first header
+     * @param count
+     *            the maximum number of headers
+     */
+    public GetBlockHeaderMessage(long number, int count) {
+        super(MessageCode.GET_BLOCK_HEADER, BlockHeaderMessage.class);
 
         this.number = number;
+        this.count = count;
 
         SimpleEncoder enc = new SimpleEncoder();
         enc.writeLong(number);
+        if (count != 1) {
+            enc.writeInt(count);
+        }
         this.encoded = enc.toBytes();
     }
 
     public GetBlockHeaderMessage(byte[] encoded) {
-        super(MessageCode.GET_BLOCK_HEADER, BlockMessage.class);
+        super(MessageCode.GET_BLOCK_HEADER, BlockHeaderMessage.class);
 
         this.encoded = encoded;
 
         SimpleDecoder dec = new SimpleDecoder(encoded);
         this.number = dec.readLong();
+        this.count = (dec.getReadIndex() < encoded.length) ? dec.readInt() : 1;
     }
 
     public long getNumber() {
         return number;
     }
 
+    public int getCount() {
+        return count;
+    }
+
     @Override
     public String toString() {
-        return "GetBlockHeaderMessage [number=" + number + "]";
+        return "GetBlockHeaderMessage [number=" + number + ", count=" + count + "]";
     }
 }
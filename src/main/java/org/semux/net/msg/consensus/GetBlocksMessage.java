@@ -0,0 +1,58 @@
+/**
+ * Copyright (c) 2017 The Semux Developers
+ *
+ * Distributed under the MIT software license, see the accompanying file
+ * LICENSE or https://opensource.org/licenses/mit-license.php
+ */
+package org.semux.net.msg.consensus;
+
+import org.semux.net.msg.Message;
+import org.semux.net.msg.MessageCode;
+import org.semux.util.SimpleDecoder;
+import org.semux.util.SimpleEncoder;
+
+public class GetBlocksMessage extends Message {
+    private long from;
+    private int count;
+
+    /**
+     * Create a request for the blocks from a number on.
+     * 
+     * @param from
+     *            the number of the first block
+     * @param count
+     *            the maximum number of blocks
+     */
+    public GetBlocksMessage(long from, int count) {
+        super(MessageCode.GET_BLOCKS, BlocksMessage.class);
+        this.from = from;
+        this.count = count;
+
+        SimpleEncoder enc = new SimpleEncoder();
+        enc.writeLong(from);
+        enc.writeInt(count);
+        this.encoded = enc.toBytes();
+    }
+
+    public GetBlocksMessage(byte[] encoded) {
+        super(MessageCode.GET_BLOCKS, BlocksMessage.class);
+        this.encoded = encoded;
+
+        SimpleDecoder dec = new SimpleDecoder(encoded);
+        this.from = dec.readLong();
+        this.count = dec.readInt();
+    }
+
+    public long getFrom() {
+        return from;
+    }
+
+    public int getCount() {
+        return count;
+    }
+
+    @Override
+    public String toString() {
+        return "GetBlocksMessage [from=" + from + ", count=" + count + "]";
+    }
+}
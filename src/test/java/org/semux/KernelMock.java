@@ -19,6 +19,7 @@ import org.semux.core.PendingManager;
 import org.semux.core.Wallet;
 import org.semux.core.WalletLockedException;
 import org.semux.crypto.EdDSA;
+import org.semux.db.DBFactory;
 import org.semux.net.ChannelManager;
 import org.semux.net.NodeManager;
 import org.semux.net.PeerClient;
@@ -43,6 +44,10 @@ public class KernelMock extends Kernel {
         }
     }
 
+    public void setDbFactory(DBFactory dbFactory) {
+        this.dbFactory = dbFactory;
+    }
+
     public void setBlockchain(Blockchain chain) {
         this.chain = chain;
     }
@@ -24,6 +24,7 @@ import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map.Entry;
+import java.util.concurrent.CountDownLatch;
 
 import org.junit.After;
 import org.junit.Before;
@@ -36,6 +37,7 @@ import org.semux.api.response.DoTransactionResponse;
 import org.semux.api.response.GetAccountResponse;
 import org.semux.api.response.GetAccountTransactionsResponse;
 import org.semux.api.response.GetBlockResponse;
+import org.semux.api.response.GetDbStatsResponse;
 import org.semux.api.response.GetDelegateResponse;
 import org.semux.api.response.GetDelegatesResponse;
 import org.semux.api.response.GetInfoResponse;
@@ -66,6 +68,11 @@ import org.semux.core.state.AccountState;
 import org.semux.core.state.DelegateState;
 import org.semux.crypto.EdDSA;
 import org.semux.crypto.Hex;
+import org.semux.db.DBFactory;
+import org.semux.db.DBName;
+import org.semux.db.KVDB;
+import org.semux.db.MemoryDB;
+import org.semux.db.MemoryDB.MemoryDBFactory;
 import org.semux.net.ChannelManager;
 import org.semux.net.NodeManager;
 import org.semux.net.Peer;
@@ -148,6 +155,7 @@ public class ApiHandlerTest {
         assertTrue(response.success);
         assertNotNull(response.info);
         assertEquals(0, response.info.latestBlockNumber);
+        assertEquals(0, response.info.indexedBlockNumber);
     }
 
     @Test
@@ -313,6 +321,7 @@ public class ApiHandlerTest {
         TransactionResult res = new TransactionResult(true);
         Block block = createBlock(chain, Collections.singletonList(tx), Collections.singletonList(res));
         chain.addBlock(block);
+        chain.flushIndex();
 
         String uri = "/get_account_transactions?address=" + Hex.encode(tx.getFrom()) + "&from=0&to=1024";
         GetAccountTransactionsResponse response = request(uri, GetAccountTransactionsResponse.class);
@@ -326,6 +335,7 @@ public class ApiHandlerTest {
         TransactionResult res = new TransactionResult(true);
         Block block = createBlock(chain, Collections.singletonList(tx), Collections.singletonList(res));
         chain.addBlock(block);
+        chain.flushIndex();
 
         String uri = "/get_transaction?hash=" + Hex.encode(tx.getHash());
         GetTransactionResponse response = request(uri, GetTransactionResponse.class);
@@ -400,6 +410,7 @@ public class ApiHandlerTest {
         DelegateState ds = chain.getDelegateState();
         ds.register(key2.toAddress(), Bytes.of("test"));
         ds.vote(key.toAddress(), key2.toAddress(), 200L);
+        ds.commit();
 
         String uri = "/get_vote?voter=" + key.toAddressString() + "&delegate=" + key2.toAddressString();
         GetVoteResponse response = request(uri, GetVoteResponse.class);
@@ -422,6 +433,53 @@ public class ApiHandlerTest {
         assertEquals(200L, response.votes.get(Hex.PREF + voterKey.toAddressString()).longValue());
     }
 
+    @Test
+    public void testGetDbStats() throws IOException {
+        GetDbStatsResponse response = request("/get_db_stats", GetDbStatsResponse.class);
+        assertTrue(response.success);
+        assertEquals(DBName.values().length, response.stats.size());
+        assertNotNull(response.stats.get(DBName.BLOCK.name()).levelFiles);
+        assertNotNull(response.caches.get("DECODED_BLOCK").hitRate);
+    }
+
+    @Test
+    public void testCompactDbInvalidName() throws IOException {
+        assertFalse(request("/compact_db?name=not_a_db", ApiHandlerResponse.class).success);
+    }
+
+    @Test
+    public void testCompactDbWhileCompacting() throws IOException {
+        CountDownLatch latch = new CountDownLatch(1);
+        KVDB db = new MemoryDB() {
+            @Override
+            public void compactRange(byte[] from, byte[] to) {
+                try {
+                    latch.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        };
+        DBFactory factory = new MemoryDBFactory() {
+            @Override
+            public KVDB getDB(DBName name) {
+                return db;
+            }
+        };
+
+        DBFactory original = api.getKernel().getDbFactory();
+        api.getKernel().setDbFactory(factory);
+        try {
+            assertTrue(request("/compact_db?name=block", ApiHandlerResponse.class).success);
+
+            // one compaction at a time
+            assertFalse(request("/compact_db?name=block", ApiHandlerResponse.class).success);
+        } finally {
+            latch.countDown();
+            api.getKernel().setDbFactory(original);
+        }
+    }
+
     @Test
     public void testListAccounts() throws IOException {
         String uri = "/list_accounts";
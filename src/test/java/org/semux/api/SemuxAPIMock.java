@@ -35,6 +35,7 @@ public class SemuxAPIMock {
         if (isRunning.compareAndSet(false, true)) {
             new Thread(() -> {
                 kernel = new KernelMock();
+                kernel.setDbFactory(dbFactory);
                 kernel.setBlockchain(new BlockchainImpl(kernel.getConfig(), dbFactory));
                 kernel.setChannelManager(new ChannelManager(kernel));
                 kernel.setPendingManager(new PendingManager(kernel));
@@ -65,6 +66,7 @@ public class SemuxAPIMock {
     public synchronized void stop() {
         if (isRunning.compareAndSet(true, false)) {
             server.stop();
+            kernel.getBlockchain().stop();
 
             long timestamp = System.currentTimeMillis();
             while (System.currentTimeMillis() - timestamp < 30000) {
@@ -7,24 +7,43 @@
 package org.semux.bench;
 
 import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map.Entry;
+import java.util.Random;
 
+import org.apache.commons.lang3.tuple.Pair;
 import org.semux.config.Constants;
+import org.semux.db.DBName;
 import org.semux.db.LevelDB;
+import org.semux.db.LevelDBProfile;
 import org.semux.util.Bytes;
+import org.semux.util.ClosableIterator;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+/**
+ * Compares the legacy LevelDB options with the per-database profiles, on a
+ * workload shaped like each database of a chain.
+ */
 public class DBPerformance {
     private static final Logger logger = LoggerFactory.getLogger(DBPerformance.class);
 
     private static final int REPEAT = 100_000;
 
-    private static LevelDB getTestDB() {
-        return new LevelDB(new File(Constants.DEFAULT_DATA_DIR, "test"));
+    private static final int BLOCKS = 20_000;
+    private static final int ACCOUNTS = 200_000;
+    private static final int DELEGATES = 100;
+    private static final int VOTERS_PER_DELEGATE = 500;
+
+    private static Random random = new Random(0);
+
+    private static LevelDB getTestDB(String name, LevelDBProfile profile) {
+        return new LevelDB(new File(Constants.DEFAULT_DATA_DIR, "test-" + name), profile);
     }
 
     public static void testWrite() {
-        LevelDB db = getTestDB();
+        LevelDB db = getTestDB("write", LevelDBProfile.legacy());
         try {
             long t1 = System.nanoTime();
             for (int i = 0; i < REPEAT; i++) {
@@ -35,30 +54,122 @@ public class DBPerformance {
             long t2 = System.nanoTime();
             logger.info("Perf_db_write: " + (t2 - t1) / 1_000 / REPEAT + " μs/time");
         } finally {
-            db.close();
+            db.destroy();
         }
     }
 
-    public static void testRead() {
-        LevelDB db = getTestDB();
+    /**
+     * Blocks are appended in order and read back in ranges.
+     */
+    public static void testBlock(String label, LevelDBProfile profile) {
+        LevelDB db = getTestDB("block", profile);
         try {
             long t1 = System.nanoTime();
-            for (int i = 0; i < REPEAT; i++) {
-                byte[] key = Bytes.random(256);
-                db.get(key);
+            for (int n = 0; n < BLOCKS; n++) {
+                List<Pair<byte[], byte[]>> batch = new ArrayList<>();
+                for (byte part = 0; part < 4; part++) {
+                    byte[] key = Bytes.merge(Bytes.merge((byte) 4, Bytes.of((long) n)), part);
+                    batch.add(Pair.of(key, Bytes.random(part == 1 ? 4096 : 512)));
+                }
+                db.updateBatch(batch);
+            }
+            long t2 = System.nanoTime();
+
+            for (int i = 0; i < REPEAT / 100; i++) {
+                long n = random.nextInt(BLOCKS - 100);
+                ClosableIterator<Entry<byte[], byte[]>> itr = db.iterator(Bytes.merge((byte) 4, Bytes.of(n)),
+                        Bytes.merge((byte) 4, Bytes.of(n + 100)));
+                while (itr.hasNext()) {
+                    itr.next();
+                }
+                itr.close();
+            }
+            long t3 = System.nanoTime();
+
+            logger.info("Perf_db_block_{}: write {} μs/block, range read {} μs/100 blocks", label,
+                    (t2 - t1) / 1_000 / BLOCKS, (t3 - t2) / 1_000 / (REPEAT / 100));
+        } finally {
+            db.destroy();
+        }
+    }
+
+    /**
+     * Accounts and indexes are read at random, and half of the lookups miss.
+     */
+    public static void testPointRead(String label, LevelDBProfile profile) {
+        LevelDB db = getTestDB("point", profile);
+        try {
+            List<byte[]> keys = new ArrayList<>();
+            List<Pair<byte[], byte[]>> batch = new ArrayList<>();
+            for (int i = 0; i < ACCOUNTS; i++) {
+                byte[] key = Bytes.random(20);
+                keys.add(key);
+                batch.add(Pair.of(key, Bytes.random(40)));
+                if (batch.size() == 1000) {
+                    db.updateBatch(batch);
+                    batch.clear();
+                }
+            }
+
+            // large blocks make each read slow, so fewer are measured
+            int reads = REPEAT / 10;
+            long t1 = System.nanoTime();
+            for (int i = 0; i < reads; i++) {
+                db.get(i % 2 == 0 ? keys.get(random.nextInt(keys.size())) : Bytes.random(20));
             }
             long t2 = System.nanoTime();
-            logger.info("Perf_db_read: " + (t2 - t1) / 1_000 / REPEAT + " μs/time");
+
+            logger.info("Perf_db_point_{}: {} μs/read", label, (t2 - t1) / 1_000 / reads);
         } finally {
-            db.close();
+            db.destroy();
+        }
+    }
+
+    /**
+     * Votes are scanned by delegate.
+     */
+    public static void testPrefixScan(String label, LevelDBProfile profile) {
+        LevelDB db = getTestDB("scan", profile);
+        try {
+            List<byte[]> delegates = new ArrayList<>();
+            for (int i = 0; i < DELEGATES; i++) {
+                byte[] delegate = Bytes.random(20);
+                delegates.add(delegate);
+
+                List<Pair<byte[], byte[]>> batch = new ArrayList<>();
+                for (int j = 0; j < VOTERS_PER_DELEGATE; j++) {
+                    batch.add(Pair.of(Bytes.merge(delegate, Bytes.random(20)), Bytes.of(random.nextLong())));
+                }
+                db.updateBatch(batch);
+            }
+
+            long t1 = System.nanoTime();
+            for (int i = 0; i < REPEAT / 100; i++) {
+                ClosableIterator<Entry<byte[], byte[]>> itr = db
+                        .prefixIterator(delegates.get(random.nextInt(delegates.size())));
+                while (itr.hasNext()) {
+                    itr.next();
+                }
+                itr.close();
+            }
+            long t2 = System.nanoTime();
+
+            logger.info("Perf_db_scan_{}: {} μs/delegate", label, (t2 - t1) / 1_000 / (REPEAT / 100));
+        } finally {
+            db.destroy();
         }
     }
 
     public static void main(String[] args) {
         testWrite();
-        testRead();
 
-        LevelDB db = getTestDB();
-        db.destroy();
+        testBlock("legacy", LevelDBProfile.legacy());
+        testBlock("profile", LevelDBProfile.defaultOf(DBName.BLOCK));
+
+        testPointRead("legacy", LevelDBProfile.legacy());
+        testPointRead("profile", LevelDBProfile.defaultOf(DBName.ACCOUNT));
+
+        testPrefixScan("legacy", LevelDBProfile.legacy());
+        testPrefixScan("profile", LevelDBProfile.defaultOf(DBName.VOTE));
     }
 }
@@ -7,15 +7,50 @@
 package org.semux.config;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Properties;
+
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.semux.db.DBName;
 
 public class DevNetConfigTest {
 
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
     @Test
     public void testNetworkId() {
         Config config = new DevNetConfig(Constants.DEFAULT_DATA_DIR);
         assertEquals(Constants.DEV_NET_ID, config.networkId());
     }
 
+    @Test
+    public void testUnknownDbOption() throws IOException {
+        Properties props = new Properties();
+        props.setProperty("db.blockSize.x", "1024");
+        for (DBName name : DBName.values()) {
+            props.setProperty("db.blockSize." + name.name().toLowerCase(), "8192");
+        }
+        props.setProperty("db.indexTransactions", "false");
+
+        File dir = new File(folder.getRoot(), Constants.CONFIG_DIR);
+        dir.mkdirs();
+        try (FileOutputStream out = new FileOutputStream(new File(dir, "semux.properties"))) {
+            props.store(out, null);
+        }
+
+        // an unknown database is logged and skipped, the other options still apply
+        Config config = new DevNetConfig(folder.getRoot().getAbsolutePath());
+        for (DBName name : DBName.values()) {
+            assertEquals(8192, config.dbProfile(name).getBlockSize());
+        }
+        assertFalse(config.dbIndexTransactions());
+    }
+
 }
@@ -10,6 +10,7 @@ import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.Random;
 
@@ -17,14 +18,17 @@ import org.junit.AfterClass;
 import org.junit.Assert;
 import org.junit.BeforeClass;
 import org.junit.ClassRule;
+import org.junit.Rule;
 import org.junit.Test;
 import org.semux.KernelMock;
 import org.semux.core.Block;
 import org.semux.core.BlockHeader;
+import org.semux.core.Blockchain;
 import org.semux.core.BlockchainImpl;
 import org.semux.core.PendingManager;
 import org.semux.core.Transaction;
 import org.semux.core.TransactionResult;
+import org.semux.core.TransactionType;
 import org.semux.crypto.EdDSA;
 import org.semux.crypto.EdDSA.Signature;
 import org.semux.crypto.Hash;
@@ -41,6 +45,9 @@ public class SemuxBFTTest {
     @ClassRule
     public static TemporaryDBRule temporaryDBFactory = new TemporaryDBRule();
 
+    @Rule
+    public TemporaryDBRule chainDBFactory = new TemporaryDBRule();
+
     private static final Logger logger = LoggerFactory.getLogger(SemuxBFTTest.class);
 
     private static KernelMock kernel;
@@ -134,6 +141,42 @@ public class SemuxBFTTest {
         assertEquals(1.0 / validators.size(), (double) repeat / blocks, 0.05);
     }
 
+    @Test
+    public void testApplyValidatedBlock() {
+        KernelMock kernel2 = new KernelMock();
+        kernel2.setBlockchain(new BlockchainImpl(kernel2.getConfig(), chainDBFactory));
+        kernel2.setChannelManager(new ChannelManager(kernel2));
+        kernel2.setPendingManager(new PendingManager(kernel2));
+        kernel2.setSyncManager(new SemuxSync(kernel2));
+        SemuxBFT bft2 = new SemuxBFT(kernel2);
+
+        Blockchain chain = kernel2.getBlockchain();
+        EdDSA key = new EdDSA();
+        byte[] to = Bytes.random(20);
+        long fee = kernel2.getConfig().minTransactionFee();
+        chain.getAccountState().adjustAvailable(key.toAddress(), 100 + fee);
+
+        Transaction tx = new Transaction(TransactionType.TRANSFER, to, 100, fee, 0, System.currentTimeMillis(),
+                Bytes.EMPTY_BYTES).sign(key);
+        List<Transaction> transactions = Collections.singletonList(tx);
+        List<TransactionResult> results = Collections.singletonList(new TransactionResult(true));
+        Block genesis = chain.getLatestBlock();
+        BlockHeader header = new BlockHeader(1, Bytes.random(20), genesis.getHash(), genesis.getTimestamp() + 1,
+                MerkleUtil.computeTransactionsRoot(transactions), MerkleUtil.computeResultsRoot(results),
+                Bytes.EMPTY_HASH, Bytes.EMPTY_BYTES);
+        assertTrue(bft2.validateBlock(header, transactions));
+
+        // an update behind the back of consensus, which re-execution would keep
+        chain.getAccountState().adjustAvailable(to, 7);
+
+        // the updates of the validation are committed as they are
+        bft2.applyBlock(new Block(header, transactions, results));
+        assertEquals(1, chain.getLatestBlockNumber());
+        assertEquals(0, chain.getAccountState().getAccount(key.toAddress()).getAvailable());
+        assertEquals(100, chain.getAccountState().getAccount(to).getAvailable());
+        chain.stop();
+    }
+
     @AfterClass
     public static void teardown() throws InterruptedException {
         bft.stop();
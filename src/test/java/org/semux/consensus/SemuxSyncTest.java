@@ -0,0 +1,51 @@
+/**
+ * Copyright (c) 2017 The Semux Developers
+ *
+ * Distributed under the MIT software license, see the accompanying file
+ * LICENSE or https://opensource.org/licenses/mit-license.php
+ */
+package org.semux.consensus;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+import org.semux.crypto.EdDSA;
+import org.semux.net.Channel;
+import org.semux.net.Peer;
+
+public class SemuxSyncTest {
+
+    @Test
+    public void testSortByDownloadRate() {
+        Channel fast = createChannel(1000);
+        Channel slow = createChannel(1);
+        Channel unknown = createChannel(0);
+
+        int fastFirst = 0;
+        int slowFirst = 0;
+        for (int i = 0; i < 100; i++) {
+            List<Channel> list = SemuxSync.sortByDownloadRate(Arrays.asList(slow, unknown, fast));
+            assertEquals(3, list.size());
+            assertTrue(list.containsAll(Arrays.asList(slow, unknown, fast)));
+            fastFirst += (list.get(0) == fast) ? 1 : 0;
+            slowFirst += (list.get(0) == slow) ? 1 : 0;
+        }
+        assertTrue(fastFirst > 40);
+        assertTrue(slowFirst < 10);
+    }
+
+    private Channel createChannel(int blocksPerSecond) {
+        Peer peer = new Peer("127.0.0.1", 5161, (short) 0, "client", new EdDSA().toAddressString(), 0);
+        if (blocksPerSecond > 0) {
+            peer.updateDownloadRate(blocksPerSecond, 1000);
+        }
+
+        Channel channel = new Channel();
+        channel.onActive(peer);
+        return channel;
+    }
+}
@@ -0,0 +1,155 @@
+/**
+ * Copyright (c) 2017 The Semux Developers
+ *
+ * Distributed under the MIT software license, see the accompanying file
+ * LICENSE or https://opensource.org/licenses/mit-license.php
+ */
+package org.semux.core;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+import org.junit.After;
+import org.junit.Test;
+import org.semux.util.Bytes;
+import org.semux.util.MerkleUtil;
+
+public class BlockchainEventBusTest {
+
+    private BlockchainEventBus bus = new BlockchainEventBus();
+
+    @After
+    public void teardown() {
+        bus.stop();
+    }
+
+    @Test
+    public void testOrderedDelivery() {
+        List<Long> numbers = Collections.synchronizedList(new ArrayList<>());
+        bus.register("ordered", listener(block -> numbers.add(block.getNumber())), 100);
+
+        for (long i = 1; i <= 100; i++) {
+            bus.publish(createBlock(i));
+        }
+        bus.stop();
+
+        assertEquals(100, numbers.size());
+        for (int i = 0; i < numbers.size(); i++) {
+            assertEquals(i + 1, numbers.get(i).longValue());
+        }
+        assertEquals(100, bus.getSubscriptions().get(0).getDelivered());
+        assertEquals(0, bus.getSubscriptions().get(0).getLag());
+        assertEquals("ordered", bus.getSubscriptions().get(0).getName());
+    }
+
+    @Test
+    public void testSlowListener() throws InterruptedException {
+        CountDownLatch latch = new CountDownLatch(1);
+        bus.register("slow", listener(block -> {
+            try {
+                latch.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }), 4);
+        List<Long> numbers = Collections.synchronizedList(new ArrayList<>());
+        bus.register("fast", listener(block -> numbers.add(block.getNumber())), 4);
+
+        // publishing does not wait for a slow listener within its capacity
+        for (long i = 1; i <= 4; i++) {
+            bus.publish(createBlock(i));
+        }
+        assertEquals(4, bus.getSubscriptions().get(0).getLag());
+
+        // nor does it hold up the other listeners
+        long deadline = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(5);
+        while (numbers.size() < 4 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(4, numbers.size());
+
+        latch.countDown();
+        bus.stop();
+        assertEquals(0, bus.getSubscriptions().get(0).getLag());
+        assertTrue(bus.getSubscriptions().get(0).getMaxDelay() >= 0);
+    }
+
+    @Test
+    public void testCoalesceStaleEvents() {
+        CountDownLatch latch = new CountDownLatch(1);
+        List<Long> numbers = Collections.synchronizedList(new ArrayList<>());
+        List<Long> latest = Collections.synchronizedList(new ArrayList<>());
+        AtomicLong skipped = new AtomicLong(0);
+        bus.register("stale", new BlockchainListener() {
+            @Override
+            public void onBlockAdded(Block block) {
+                try {
+                    latch.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                numbers.add(block.getNumber());
+            }
+
+            @Override
+            public void onLatestBlock(Block block, long n) {
+                latest.add(block.getNumber());
+                skipped.addAndGet(n);
+            }
+        }, 4);
+
+        // publishing never waits for a listener beyond its capacity
+        for (long i = 1; i <= 100; i++) {
+            bus.publish(createBlock(i));
+        }
+        latch.countDown();
+        bus.stop();
+
+        // every block is either delivered or reported as skipped, and the
+        // listener is told about the latest block
+        assertTrue(latest.contains(100L) || numbers.contains(100L));
+        assertEquals(100, numbers.size() + latest.size() + skipped.get());
+        assertEquals(skipped.get(), bus.getSubscriptions().get(0).getSkipped());
+        assertEquals(0, bus.getSubscriptions().get(0).getLag());
+    }
+
+    @Test
+    public void testPublishAfterStop() {
+        List<Long> numbers = Collections.synchronizedList(new ArrayList<>());
+        bus.register("stopped", listener(block -> numbers.add(block.getNumber())), 4);
+        bus.stop();
+
+        bus.publish(createBlock(1));
+        assertTrue(numbers.isEmpty());
+        assertEquals(0, bus.getSubscriptions().get(0).getLag());
+    }
+
+    private static BlockchainListener listener(Consumer<Block> consumer) {
+        return new BlockchainListener() {
+            @Override
+            public void onBlockAdded(Block block) {
+                consumer.accept(block);
+            }
+
+            @Override
+            public void onLatestBlock(Block block, long skipped) {
+                consumer.accept(block);
+            }
+        };
+    }
+
+    private Block createBlock(long number) {
+        BlockHeader header = new BlockHeader(number, Bytes.random(20), Bytes.random(32), System.currentTimeMillis(),
+                MerkleUtil.computeTransactionsRoot(Collections.emptyList()),
+                MerkleUtil.computeResultsRoot(Collections.emptyList()), Bytes.EMPTY_HASH, Bytes.EMPTY_BYTES);
+        return new Block(header, Collections.emptyList(), Collections.emptyList());
+    }
+}
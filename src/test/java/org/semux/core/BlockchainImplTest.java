@@ -8,15 +8,19 @@ package org.semux.core;
 
 import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotEquals;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 
+import org.junit.After;
 import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
@@ -24,10 +28,16 @@ import org.semux.config.Config;
 import org.semux.config.Constants;
 import org.semux.config.DevNetConfig;
 import org.semux.core.BlockchainImpl.StatsType;
+import org.semux.core.exception.BlockchainException;
+import org.semux.core.state.AccountState;
+import org.semux.core.state.AccountStateImpl;
 import org.semux.crypto.EdDSA;
+import org.semux.db.DBName;
+import org.semux.db.KVDB;
 import org.semux.rules.TemporaryDBRule;
 import org.semux.util.Bytes;
 import org.semux.util.MerkleUtil;
+import org.semux.util.SimpleEncoder;
 
 public class BlockchainImplTest {
 
@@ -58,6 +68,11 @@ public class BlockchainImplTest {
         chain = new BlockchainImpl(config, temporaryDBFactory);
     }
 
+    @After
+    public void teardown() {
+        chain.stop();
+    }
+
     @Test
     public void testGetLatestBlock() {
         assertEquals(0, chain.getLatestBlockNumber());
@@ -125,6 +140,7 @@ public class BlockchainImplTest {
 
         Block newBlock = createBlock(1);
         chain.addBlock(newBlock);
+        chain.flushIndex();
 
         Transaction t = chain.getTransaction(tx.getHash());
         assertNotNull(t);
@@ -142,6 +158,7 @@ public class BlockchainImplTest {
 
         Block newBlock = createBlock(1);
         chain.addBlock(newBlock);
+        chain.flushIndex();
 
         TransactionResult r = chain.getTransactionResult(tx.getHash());
         assertArrayEquals(res.toBytes(), r.toBytes());
@@ -151,6 +168,7 @@ public class BlockchainImplTest {
     public void testGetTransactionBlockNumber() {
         Block newBlock = createBlock(1);
         chain.addBlock(newBlock);
+        chain.flushIndex();
 
         assertEquals(newBlock.getNumber(), chain.getTransactionBlockNumber(tx.getHash()));
     }
@@ -161,6 +179,7 @@ public class BlockchainImplTest {
 
         Block newBlock = createBlock(1);
         chain.addBlock(newBlock);
+        chain.flushIndex();
 
         assertEquals(1, chain.getTransactionCount(tx.getFrom()));
     }
@@ -171,6 +190,7 @@ public class BlockchainImplTest {
 
         Block newBlock = createBlock(1);
         chain.addBlock(newBlock);
+        chain.flushIndex();
 
         List<Transaction> txs = chain.getTransactions(tx.getFrom(), 0, 100);
         assertEquals(1, txs.size());
@@ -195,6 +215,7 @@ public class BlockchainImplTest {
     public void testGetTransactions() {
         Block block = createBlock(1);
         chain.addBlock(block);
+        chain.flushIndex();
 
         List<Transaction> list = chain.getTransactions(from, 0, 1024);
         assertEquals(1, list.size());
@@ -205,6 +226,309 @@ public class BlockchainImplTest {
         assertArrayEquals(tx.getHash(), list.get(0).getHash());
     }
 
+    @Test
+    public void testAddBlockFlushesState() {
+        byte[] address = Bytes.random(20);
+        chain.getAccountState().adjustAvailable(address, 100);
+
+        chain.addBlock(createBlock(1));
+
+        AccountState as = new AccountStateImpl(temporaryDBFactory.getDB(DBName.ACCOUNT));
+        assertEquals(100, as.getAccount(address).getAvailable());
+    }
+
+    @Test
+    public void testAddBlockMultipleTransactionsSameAccount() {
+        Transaction tx2 = new Transaction(TransactionType.TRANSFER, to, value, fee, nonce + 1, timestamp, data)
+                .sign(key);
+        Block block = createBlock(1, Arrays.asList(tx, tx2), Arrays.asList(res, res));
+        chain.addBlock(block);
+        chain.flushIndex();
+
+        assertEquals(2, chain.getTransactionCount(from));
+        assertEquals(2, chain.getTransactionCount(to));
+
+        List<Transaction> list = chain.getTransactions(from, 0, 1024);
+        assertArrayEquals(tx.getHash(), list.get(0).getHash());
+        assertArrayEquals(tx2.getHash(), list.get(1).getHash());
+    }
+
+    @Test
+    public void testGetLegacyBlock() {
+        Block block = createBlock(1);
+        chain.addBlock(block);
+        chain.flushIndex();
+
+        // move the block to the legacy layout
+        KVDB blockDB = temporaryDBFactory.getDB(DBName.BLOCK);
+        byte[][] parts = { block.toBytesHeader(), block.toBytesTransactions(), block.toBytesResults(),
+                block.toBytesVotes() };
+        for (byte part = 0; part < parts.length; part++) {
+            blockDB.delete(BlockchainImpl.getBlockKey(1, part));
+            blockDB.put(Bytes.merge(part, Bytes.of(1L)), parts[part]);
+        }
+        blockDB.delete(BlockchainImpl.getBlockItemKey(1, BlockchainImpl.TYPE_BLOCK_TRANSACTIONS, 0));
+        blockDB.delete(BlockchainImpl.getBlockItemKey(1, BlockchainImpl.TYPE_BLOCK_RESULTS, 0));
+
+        // and its transaction to the legacy location, by offsets
+        SimpleEncoder enc = new SimpleEncoder();
+        enc.writeLong(1);
+        enc.writeInt(block.getTransactionIndices().get(0).getLeft());
+        enc.writeInt(block.getTransactionIndices().get(0).getRight());
+        temporaryDBFactory.getDB(DBName.INDEX).put(Bytes.merge(BlockchainImpl.TYPE_TRANSACTION_HASH, tx.getHash()),
+                enc.toBytes());
+        chain = new BlockchainImpl(config, temporaryDBFactory);
+
+        assertArrayEquals(block.getHash(), chain.getBlock(1).getHash());
+        assertArrayEquals(block.getHash(), chain.getBlockHeader(1).getHash());
+        assertArrayEquals(tx.getHash(), chain.getTransaction(tx.getHash()).getHash());
+        assertArrayEquals(tx.getHash(), chain.getTransactions(from, 0, 1).get(0).getHash());
+        assertTrue(chain.getTransactionResult(tx.getHash()).isSuccess());
+    }
+
+    @Test
+    public void testTransactionItems() {
+        Transaction tx2 = new Transaction(TransactionType.TRANSFER, to, value, fee, nonce + 1, timestamp, data)
+                .sign(key);
+        TransactionResult res2 = new TransactionResult(false);
+        chain.addBlock(createBlock(1, Arrays.asList(tx, tx2), Arrays.asList(res, res2)));
+        chain.flushIndex();
+
+        // each transaction and result is stored on its own
+        KVDB blockDB = temporaryDBFactory.getDB(DBName.BLOCK);
+        assertArrayEquals(tx2.toBytes(),
+                blockDB.get(BlockchainImpl.getBlockItemKey(1, BlockchainImpl.TYPE_BLOCK_TRANSACTIONS, 1)));
+        assertArrayEquals(res2.toBytes(),
+                blockDB.get(BlockchainImpl.getBlockItemKey(1, BlockchainImpl.TYPE_BLOCK_RESULTS, 1)));
+
+        assertArrayEquals(tx2.getHash(), chain.getTransaction(tx2.getHash()).getHash());
+        assertFalse(chain.getTransactionResult(tx2.getHash()).isSuccess());
+
+        // and joined when the block is read
+        chain = new BlockchainImpl(config, temporaryDBFactory);
+        Block block = chain.getBlock(1);
+        assertEquals(2, block.getTransactions().size());
+        assertArrayEquals(tx2.getHash(), block.getTransactions().get(1).getHash());
+        assertFalse(block.getResults().get(1).isSuccess());
+    }
+
+    @Test
+    public void testGetLatestTransactions() {
+        Transaction tx2 = new Transaction(TransactionType.TRANSFER, to, value, fee, nonce + 1, timestamp, data)
+                .sign(key);
+        Transaction tx3 = new Transaction(TransactionType.TRANSFER, to, value, fee, nonce + 2, timestamp, data)
+                .sign(key);
+        Block block = createBlock(1, Arrays.asList(tx, tx2, tx3), Arrays.asList(res, res, res));
+        chain.addBlock(block);
+        chain.flushIndex();
+
+        List<Transaction> list = chain.getLatestTransactions(from, 2);
+        assertEquals(2, list.size());
+        assertArrayEquals(tx3.getHash(), list.get(0).getHash());
+        assertArrayEquals(tx2.getHash(), list.get(1).getHash());
+
+        list = chain.getTransactions(from, 1, 2);
+        assertEquals(1, list.size());
+        assertArrayEquals(tx2.getHash(), list.get(0).getHash());
+    }
+
+    @Test
+    public void testGetBlockBytes() {
+        Block block = createBlock(1);
+        chain.addBlock(block);
+        assertNull(chain.getBlockBytes(2));
+
+        // read from the database rather than the cache
+        chain = new BlockchainImpl(config, temporaryDBFactory);
+        byte[][] parts = chain.getBlockBytes(0);
+        assertArrayEquals(chain.getBlockHeader(0).toBytes(), parts[0]);
+
+        parts = chain.getBlockBytes(1);
+        assertArrayEquals(block.toBytesHeader(), parts[0]);
+        assertArrayEquals(block.toBytesTransactions(), parts[1]);
+        assertArrayEquals(block.toBytesResults(), parts[2]);
+        assertArrayEquals(block.toBytesVotes(), parts[3]);
+    }
+
+    @Test
+    public void testBlockCache() {
+        Block block = createBlock(1);
+        chain.addBlock(block);
+        chain.flushIndex();
+        long hits = chain.getBlockCacheStats().hitCount();
+
+        // added blocks are served decoded
+        assertSame(block, chain.getBlock(1));
+        assertSame(block, chain.getBlock(block.getHash()));
+        assertSame(block.getHeader(), chain.getBlockHeader(1));
+        assertEquals(hits + 3, chain.getBlockCacheStats().hitCount());
+
+        // headers of blocks not in the cache are cached on their own
+        chain = new BlockchainImpl(config, temporaryDBFactory);
+        BlockHeader header = chain.getBlockHeader(0);
+        assertSame(header, chain.getBlockHeader(0));
+        assertEquals(1, chain.getHeaderCacheStats().hitCount());
+    }
+
+    @Test
+    public void testPrune() {
+        Transaction tx2 = new Transaction(TransactionType.TRANSFER, to, value, fee, nonce + 1, timestamp, data)
+                .sign(key);
+        Block block1 = createBlock(1, Collections.singletonList(tx), Collections.singletonList(res));
+        Block block2 = createBlock(2, Collections.singletonList(tx2), Collections.singletonList(res));
+        chain.addBlock(block1);
+        chain.addBlock(block2);
+        chain.flushIndex();
+
+        chain.prune(1, 1);
+        assertEquals(1, chain.getPrunedBlockNumber());
+
+        // headers are kept, bodies and indexes are dropped, even when cached
+        assertNotNull(chain.getBlockHeader(1));
+        assertNull(chain.getBlock(1));
+        assertNull(chain.getBlock(block1.getHash()));
+        assertNull(chain.getTransaction(tx.getHash()));
+        assertNull(chain.getTransactionResult(tx.getHash()));
+
+        List<Transaction> list = chain.getLatestTransactions(from, 10);
+        assertEquals(1, list.size());
+        assertArrayEquals(tx2.getHash(), list.get(0).getHash());
+
+        assertNotNull(chain.getBlock(2));
+        assertNotNull(chain.getTransaction(tx2.getHash()));
+
+        // the pruned block number survives a restart
+        chain = new BlockchainImpl(config, temporaryDBFactory);
+        assertEquals(1, chain.getPrunedBlockNumber());
+    }
+
+    @Test
+    public void testPruneTransactionCount() {
+        Transaction tx2 = new Transaction(TransactionType.TRANSFER, to, value, fee, nonce + 1, timestamp, data)
+                .sign(key);
+        chain.addBlock(createBlock(1, Collections.singletonList(tx), Collections.singletonList(res)));
+        chain.addBlock(createBlock(2, Collections.singletonList(tx2), Collections.singletonList(res)));
+        chain.flushIndex();
+        assertEquals(0, chain.getFirstTransactionIndex(from));
+
+        chain.prune(1, 1);
+
+        // the count is lifetime, the listing starts at the first retained index
+        int count = chain.getTransactionCount(from);
+        int first = chain.getFirstTransactionIndex(from);
+        assertEquals(2, count);
+        assertEquals(1, first);
+        assertTrue(chain.getTransactions(from, 0, first).isEmpty());
+
+        List<Transaction> list = chain.getTransactions(from, first, count);
+        assertEquals(count - first, list.size());
+        assertArrayEquals(tx2.getHash(), list.get(0).getHash());
+    }
+
+    @Test
+    public void testIndex() {
+        chain.stop();
+        chain.addBlock(createBlock(1));
+
+        // the block is committed before it is indexed
+        assertEquals(0, chain.getIndexedBlockNumber());
+        assertNotNull(chain.getBlock(1));
+        assertNull(chain.getTransaction(tx.getHash()));
+
+        chain.flushIndex();
+        assertEquals(1, chain.getIndexedBlockNumber());
+        assertNotNull(chain.getTransaction(tx.getHash()));
+        assertEquals(1, chain.getTransactionCount(from));
+
+        // the watermark survives a restart
+        chain = new BlockchainImpl(config, temporaryDBFactory);
+        assertEquals(1, chain.getIndexedBlockNumber());
+    }
+
+    @Test
+    public void testIndexDisabled() {
+        config = new DevNetConfig(Constants.DEFAULT_DATA_DIR) {
+            @Override
+            public boolean dbIndexTransactions() {
+                return false;
+            }
+        };
+        chain = new BlockchainImpl(config, temporaryDBFactory);
+        chain.addBlock(createBlock(1));
+
+        assertEquals(0, chain.getIndexedBlockNumber());
+        assertNull(chain.getTransaction(tx.getHash()));
+        assertEquals(0, chain.getTransactionCount(from));
+    }
+
+    @Test
+    public void testOpenReadView() {
+        byte[] address = Bytes.random(20);
+        chain.getAccountState().adjustAvailable(address, 100);
+        chain.addBlock(createBlock(1));
+        chain.flushIndex();
+
+        ReadView view = chain.openReadView();
+        try {
+            chain.getAccountState().adjustAvailable(address, 100);
+            chain.addBlock(createBlock(2, Collections.emptyList(), Collections.emptyList()));
+
+            assertEquals(1, view.getBlockNumber());
+            assertEquals(100, view.getAccountState().getAccount(address).getAvailable());
+            assertEquals(1, view.getTransactionCount(from));
+            assertEquals(chain.getValidators(), view.getValidators());
+        } finally {
+            view.close();
+        }
+
+        assertEquals(200, chain.getAccountState().getAccount(address).getAvailable());
+    }
+
+    @Test
+    public void testRecoverUnindexedBlock() {
+        chain.addBlock(createBlock(1));
+        chain.addBlock(createBlock(2));
+        chain.stop();
+
+        // the node stopped after committing the state of block #2, but not its index
+        temporaryDBFactory.getDB(DBName.INDEX).put(Bytes.of(BlockchainImpl.TYPE_LATEST_BLOCK_NUMBER), Bytes.of(1L));
+
+        chain = new BlockchainImpl(config, temporaryDBFactory);
+        assertEquals(2, chain.getLatestBlockNumber());
+        assertEquals(2, chain.getBlockNumber(chain.getBlock(2).getHash()));
+    }
+
+    @Test(expected = BlockchainException.class)
+    public void testPartiallyCommittedState() {
+        chain.addBlock(createBlock(1));
+        chain.stop();
+
+        // only the account state of block #2 has been committed
+        temporaryDBFactory.getDB(DBName.ACCOUNT).put(new byte[] { (byte) 0xff }, Bytes.of(2L));
+
+        chain = new BlockchainImpl(config, temporaryDBFactory);
+    }
+
+    @Test
+    public void testStopWaitsForReadViews() throws InterruptedException {
+        ReadView view = chain.openReadView();
+
+        Thread t = new Thread(chain::stop);
+        t.start();
+        t.join(200);
+        assertTrue(t.isAlive());
+
+        view.close();
+        t.join(10000);
+        assertFalse(t.isAlive());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testOpenReadViewAfterStop() {
+        chain.stop();
+        chain.openReadView();
+    }
+
     @Test
     public void testValidatorStates() {
         byte[] address = Bytes.random(20);
@@ -225,6 +549,25 @@ public class BlockchainImplTest {
         assertEquals(2, chain.getValidatorStats(address).getTurnsMissed());
     }
 
+    @Test
+    public void testValidatorSet() {
+        ValidatorSet set = chain.getValidatorSet();
+        assertEquals(0, set.getNumber());
+        assertEquals(chain.getValidators(), set.getValidators());
+
+        // the set is kept between updates
+        chain.addBlock(createBlock(1));
+        assertSame(set, chain.getValidatorSet());
+
+        chain.updateValidators(1);
+        assertNotSame(set, chain.getValidatorSet());
+        assertEquals(1, chain.getValidatorSet().getNumber());
+
+        // and restored from the database
+        chain = new BlockchainImpl(config, temporaryDBFactory);
+        assertEquals(set.getValidators(), chain.getValidatorSet().getValidators());
+    }
+
     private Block createBlock(long number) {
         return createBlock(number, Collections.singletonList(tx), Collections.singletonList(res));
     }
@@ -0,0 +1,149 @@
+/**
+ * Copyright (c) 2017 The Semux Developers
+ *
+ * Distributed under the MIT software license, see the accompanying file
+ * LICENSE or https://opensource.org/licenses/mit-license.php
+ */
+package org.semux.core;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.Collections;
+import java.util.Map.Entry;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.semux.config.Config;
+import org.semux.config.Constants;
+import org.semux.config.DevNetConfig;
+import org.semux.core.exception.BlockchainException;
+import org.semux.crypto.EdDSA;
+import org.semux.db.DBName;
+import org.semux.rules.TemporaryDBRule;
+import org.semux.util.Bytes;
+import org.semux.util.ClosableIterator;
+import org.semux.util.MerkleUtil;
+
+public class StateSnapshotTest {
+
+    @Rule
+    public TemporaryDBRule sourceDB = new TemporaryDBRule();
+
+    @Rule
+    public TemporaryDBRule targetDB = new TemporaryDBRule();
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private Config config;
+    private BlockchainImpl chain;
+    private File file;
+
+    private byte[] address = new EdDSA().toAddress();
+
+    @Before
+    public void setup() throws IOException {
+        config = new DevNetConfig(Constants.DEFAULT_DATA_DIR);
+        chain = new BlockchainImpl(config, sourceDB);
+        chain.getAccountState().adjustAvailable(address, 100);
+        chain.addBlock(createBlock(1));
+
+        file = folder.newFile("snapshot");
+    }
+
+    @After
+    public void teardown() {
+        chain.stop();
+    }
+
+    @Test
+    public void testExportImport() throws IOException {
+        StateSnapshot exported = StateSnapshot.export(config, sourceDB, file);
+        assertEquals(1, exported.getBlock().getNumber());
+
+        StateSnapshot imported = StateSnapshot.importTo(targetDB, file, exported.getBlock().getHash(),
+                exported.getStateHash());
+        assertArrayEquals(exported.getStateHash(), imported.getStateHash());
+
+        BlockchainImpl target = new BlockchainImpl(config, targetDB);
+        assertEquals(1, target.getLatestBlockNumber());
+        assertArrayEquals(chain.getLatestBlockHash(), target.getLatestBlockHash());
+        assertEquals(0, target.getPrunedBlockNumber());
+        assertEquals(100, target.getAccountState().getAccount(address).getAvailable());
+        assertEquals(chain.getValidators(), target.getValidators());
+        assertEquals(chain.getDelegateState().getDelegates().size(),
+                target.getDelegateState().getDelegates().size());
+
+        // the chain continues from the snapshot block
+        target.addBlock(createBlock(2));
+        assertEquals(2, target.getLatestBlockNumber());
+        assertNotNull(target.getBlock(2));
+        assertNull(target.getBlockHeader(0));
+        target.stop();
+    }
+
+    @Test(expected = BlockchainException.class)
+    public void testImportWrongHash() throws IOException {
+        StateSnapshot exported = StateSnapshot.export(config, sourceDB, file);
+        StateSnapshot.importTo(targetDB, file, Bytes.random(32), exported.getStateHash());
+    }
+
+    @Test(expected = BlockchainException.class)
+    public void testImportWrongStateHash() throws IOException {
+        StateSnapshot exported = StateSnapshot.export(config, sourceDB, file);
+        StateSnapshot.importTo(targetDB, file, exported.getBlock().getHash(), Bytes.random(32));
+    }
+
+    @Test
+    public void testImportCorrupted() throws IOException {
+        StateSnapshot exported = StateSnapshot.export(config, sourceDB, file);
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.seek(raf.length() - 40);
+            int b = raf.read();
+            raf.seek(raf.length() - 40);
+            raf.write(b ^ 0xff);
+        }
+
+        try {
+            StateSnapshot.importTo(targetDB, file, exported.getBlock().getHash(),
+                    exported.getStateHash());
+            fail("A corrupted snapshot was imported");
+        } catch (BlockchainException e) {
+            // nothing is written before the snapshot is verified
+            ClosableIterator<Entry<byte[], byte[]>> itr = targetDB.getDB(DBName.ACCOUNT).iterator();
+            assertFalse(itr.hasNext());
+            itr.close();
+        }
+    }
+
+    @Test(expected = BlockchainException.class)
+    public void testImportNotEmpty() throws IOException {
+        StateSnapshot exported = StateSnapshot.export(config, sourceDB, file);
+        StateSnapshot.importTo(sourceDB, file, exported.getBlock().getHash(), exported.getStateHash());
+    }
+
+    private Block createBlock(long number) {
+        byte[] coinbase = new EdDSA().toAddress();
+        byte[] prevHash = Bytes.random(32);
+        long timestamp = System.currentTimeMillis();
+        byte[] transactionsRoot = MerkleUtil.computeTransactionsRoot(Collections.emptyList());
+        byte[] resultsRoot = MerkleUtil.computeResultsRoot(Collections.emptyList());
+        byte[] stateRoot = Bytes.EMPTY_HASH;
+        byte[] data = {};
+
+        BlockHeader header = new BlockHeader(number, coinbase, prevHash, timestamp, transactionsRoot, resultsRoot,
+                stateRoot, data);
+        return new Block(header, Collections.emptyList(), Collections.emptyList());
+    }
+}
@@ -11,6 +11,11 @@ import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
 import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
@@ -196,4 +201,81 @@ public class TransactionExecutorTest {
         assertEquals(0, as.getAccount(voter.toAddress()).getLocked());
         assertEquals(0, ds.getDelegateByAddress(delegate.toAddress()).getVotes());
     }
+
+    @Test
+    public void testPartition() {
+        EdDSA a = new EdDSA();
+        EdDSA b = new EdDSA();
+        byte[] c = Bytes.random(20);
+        byte[] d = Bytes.random(20);
+        long fee = config.minTransactionFee();
+        long now = System.currentTimeMillis();
+
+        List<Transaction> txs = Arrays.asList(
+                new Transaction(TransactionType.TRANSFER, c, 1, fee, 0, now, Bytes.EMPTY_BYTES).sign(a),
+                new Transaction(TransactionType.TRANSFER, d, 1, fee, 0, now, Bytes.EMPTY_BYTES).sign(b),
+                new Transaction(TransactionType.VOTE, d, 1, fee, 1, now, Bytes.EMPTY_BYTES).sign(a),
+                new Transaction(TransactionType.TRANSFER, Bytes.random(20), 1, fee, 0, now, Bytes.EMPTY_BYTES)
+                        .sign(new EdDSA()));
+
+        // the vote joins the two transfers, through its sender and the delegate state
+        List<List<Integer>> buckets = TransactionExecutor.partition(txs, 8);
+        assertEquals(2, buckets.size());
+        assertEquals(Arrays.asList(0, 1, 2), buckets.get(0));
+        assertEquals(Collections.singletonList(3), buckets.get(1));
+
+        // buckets are capped
+        assertEquals(1, TransactionExecutor.partition(txs, 1).size());
+    }
+
+    @Test
+    public void testExecuteParallel() {
+        long fee = config.minTransactionFee();
+        long now = System.currentTimeMillis();
+
+        List<EdDSA> keys = new ArrayList<>();
+        for (int i = 0; i < 32; i++) {
+            keys.add(new EdDSA());
+            as.adjustAvailable(keys.get(i).toAddress(), 10 * Unit.SEM);
+        }
+        byte[] delegate = keys.get(0).toAddress();
+        as.adjustAvailable(delegate, config.minDelegateFee());
+
+        // transfers along a ring, overspending and wrong nonces, and votes
+        List<Transaction> txs = new ArrayList<>();
+        txs.add(new Transaction(TransactionType.DELEGATE, delegate, config.minDelegateFee(), fee, 0, now,
+                Bytes.of("delegate")).sign(keys.get(0)));
+        for (int round = 0; round < 4; round++) {
+            for (int i = 1; i < keys.size(); i++) {
+                byte[] to = (i % 4 == 0) ? keys.get((i + 1) % keys.size()).toAddress() : Bytes.random(20);
+                TransactionType type = (i % 8 == 0) ? TransactionType.VOTE : TransactionType.TRANSFER;
+                long value = (i % 5 == 0) ? 4 * Unit.SEM : Unit.SEM;
+                txs.add(new Transaction(type, type == TransactionType.VOTE ? delegate : to, value, fee,
+                        (i % 7 == 0) ? round + 1 : round, now, Bytes.EMPTY_BYTES).sign(keys.get(i)));
+            }
+        }
+        as.commit();
+        ds.commit();
+
+        AccountState serialAS = as.track();
+        DelegateState serialDS = ds.track();
+        List<TransactionResult> serial = exec.execute(txs, serialAS, serialDS);
+        assertTrue(serial.get(0).isSuccess());
+
+        AccountState parallelAS = as.track();
+        DelegateState parallelDS = ds.track();
+        List<TransactionResult> parallel = exec.executeParallel(txs, parallelAS, parallelDS, 4);
+
+        assertEquals(serial.size(), parallel.size());
+        for (int i = 0; i < serial.size(); i++) {
+            assertEquals(serial.get(i).isSuccess(), parallel.get(i).isSuccess());
+        }
+        for (Transaction tx : txs) {
+            for (byte[] address : new byte[][] { tx.getFrom(), tx.getTo() }) {
+                assertArrayEquals(serialAS.getAccount(address).toBytes(), parallelAS.getAccount(address).toBytes());
+            }
+        }
+        assertEquals(serialDS.getDelegateByAddress(delegate).getVotes(),
+                parallelDS.getDelegateByAddress(delegate).getVotes());
+    }
 }
@@ -0,0 +1,54 @@
+/**
+ * Copyright (c) 2017 The Semux Developers
+ *
+ * Distributed under the MIT software license, see the accompanying file
+ * LICENSE or https://opensource.org/licenses/mit-license.php
+ */
+package org.semux.core;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+import org.semux.crypto.Hex;
+import org.semux.util.Bytes;
+
+public class ValidatorSetTest {
+
+    private byte[] v1 = Bytes.random(20);
+    private byte[] v2 = Bytes.random(20);
+
+    @Test
+    public void testIndexes() {
+        ValidatorSet set = new ValidatorSet(10, Arrays.asList(Hex.encode(v1), Hex.encode(v2)));
+
+        assertEquals(10, set.getNumber());
+        assertEquals(2, set.size());
+        assertTrue(set.contains(v2));
+        assertTrue(set.contains(Hex.encode(v2)));
+        assertFalse(set.contains(Bytes.random(20)));
+        assertEquals(1, set.indexOf(v2));
+        assertEquals(0, set.indexOf(Hex.encode(v1)));
+        assertEquals(-1, set.indexOf(Hex.encode(Bytes.random(20))));
+    }
+
+    @Test
+    public void testImmutable() {
+        List<String> validators = new ArrayList<>(Arrays.asList(Hex.encode(v1)));
+        ValidatorSet set = new ValidatorSet(0, validators);
+        validators.add(Hex.encode(v2));
+
+        assertEquals(1, set.size());
+        assertFalse(set.contains(v2));
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void testUnmodifiableList() {
+        new ValidatorSet(0, Arrays.asList(Hex.encode(v1))).getValidators().add(Hex.encode(v2));
+    }
+}
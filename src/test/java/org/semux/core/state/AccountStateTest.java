@@ -20,6 +20,7 @@ import org.semux.core.Blockchain;
 import org.semux.core.BlockchainImpl;
 import org.semux.core.Unit;
 import org.semux.core.Genesis.Premine;
+import org.semux.db.DBName;
 import org.semux.rules.TemporaryDBRule;
 import org.semux.util.ByteArray;
 import org.semux.util.Bytes;
@@ -114,4 +115,65 @@ public class AccountStateTest {
         state.rollback();
         assertEquals(0, state2.getAccount(address).getNonce());
     }
+
+    @Test
+    public void testTrackCommit() {
+        byte[] address = Bytes.random(20);
+        state.adjustAvailable(address, 20);
+
+        AccountState state2 = state.track();
+        state2.adjustAvailable(address, 10);
+        state2.increaseNonce(address);
+
+        // returned accounts are copies, unaffected by later updates
+        Account acc = state2.getAccount(address);
+        state2.adjustLocked(address, 5);
+        assertEquals(0, acc.getLocked());
+
+        // updates stay in the layer until committed
+        assertEquals(20, state.getAccount(address).getAvailable());
+        state2.commit();
+        assertEquals(30, state.getAccount(address).getAvailable());
+        assertEquals(5, state.getAccount(address).getLocked());
+        assertEquals(1, state.getAccount(address).getNonce());
+
+        // a layer committed on the database is read back encoded
+        state.commit();
+        AccountState fresh = new AccountStateImpl(temporaryDBFactory.getDB(DBName.ACCOUNT));
+        assertEquals(30, fresh.getAccount(address).getAvailable());
+        assertEquals(5, fresh.getAccount(address).getLocked());
+        assertEquals(1, fresh.getAccount(address).getNonce());
+    }
+
+    @Test
+    public void testSharedAccountsUnchanged() {
+        byte[] address = Bytes.random(20);
+        AccountStateImpl root = (AccountStateImpl) state;
+        AccountState state2 = root.track();
+        state2.adjustAvailable(address, 10);
+        state2.commit();
+
+        // the account handed over by the commit is replaced, not changed in place
+        Account shared = root.findAccount(ByteArray.of(address));
+        root.adjustAvailable(address, 5);
+        root.adjustLocked(address, 1);
+        root.increaseNonce(address);
+        assertEquals(10, shared.getAvailable());
+        assertEquals(0, shared.getLocked());
+        assertEquals(0, shared.getNonce());
+        assertEquals(15, root.getAccount(address).getAvailable());
+    }
+
+    @Test
+    public void testTrackRollback() {
+        byte[] address = Bytes.random(20);
+        state.adjustAvailable(address, 20);
+
+        AccountState state2 = state.track();
+        state2.adjustAvailable(address, 10);
+        state2.rollback();
+        state2.commit();
+
+        assertEquals(20, state.getAccount(address).getAvailable());
+    }
 }
@@ -10,8 +10,10 @@ import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 
@@ -23,8 +25,11 @@ import org.semux.config.Constants;
 import org.semux.config.DevNetConfig;
 import org.semux.core.Blockchain;
 import org.semux.core.BlockchainImpl;
+import org.semux.core.ReadView;
 import org.semux.core.Unit;
 import org.semux.crypto.EdDSA;
+import org.semux.db.DBName;
+import org.semux.db.KVDB;
 import org.semux.rules.TemporaryDBRule;
 import org.semux.util.ByteArray;
 import org.semux.util.Bytes;
@@ -154,6 +159,154 @@ public class DelegateStateTest {
         assertEquals(value2, (long) votes.get(new ByteArray(voterKey2.toAddress())));
     }
 
+    @Test
+    public void testRanking() {
+        byte[] voter = new EdDSA().toAddress();
+        byte[] delegate1 = new EdDSA().toAddress();
+        byte[] delegate2 = new EdDSA().toAddress();
+
+        ds.register(delegate1, Bytes.of("delegate1"));
+        ds.register(delegate2, Bytes.of("delegate2"));
+        ds.vote(voter, delegate1, 2);
+        ds.vote(voter, delegate2, 1);
+        ds.commit();
+        assertRanking(delegate1, delegate2);
+
+        // updates on top of the ranking are merged into it
+        DelegateState track = ds.track();
+        track.vote(voter, delegate2, 2);
+        assertRanking(track, delegate2, delegate1);
+        assertRanking(delegate1, delegate2);
+
+        DelegateState track2 = track.track();
+        track2.unvote(voter, delegate2, 3);
+        assertRanking(track2, delegate1, delegate2);
+
+        // and committed into it
+        track.commit();
+        ds.commit();
+        assertRanking(delegate2, delegate1);
+        assertEquals(delegates.size() + 2, ds.getDelegates().size());
+    }
+
+    @Test
+    public void testUpgrade() {
+        KVDB delegateDB = temporaryDBFactory.getDB(DBName.DELEGATE);
+        KVDB voteDB = temporaryDBFactory.getDB(DBName.VOTE);
+        byte[] delegate = new EdDSA().toAddress();
+        byte[] name = Bytes.of("legacy");
+
+        // a database of an earlier version has no schema version
+        delegateDB.delete(DelegateStateImpl.SCHEMA_VERSION_KEY);
+        delegateDB.put(name, delegate);
+        delegateDB.put(delegate, new Delegate(delegate, name, 1, 100).toBytes());
+        DelegateStateImpl.upgrade(delegateDB);
+
+        assertNull(delegateDB.get(name));
+        assertNull(delegateDB.get(delegate));
+        DelegateState state = new DelegateStateImpl(chain, delegateDB, voteDB);
+        assertArrayEquals(delegate, state.getDelegateByName(name).getAddress());
+        assertEquals(100, state.getDelegateByAddress(delegate).getVotes());
+        assertEquals(delegates.size() + 1, state.getDelegates().size());
+        assertArrayEquals(delegate, state.getDelegates().get(0).getAddress());
+
+        // once upgraded, the database is not scanned again
+        delegateDB.put(name, delegate);
+        DelegateStateImpl.upgrade(delegateDB);
+        assertArrayEquals(delegate, delegateDB.get(name));
+    }
+
+    @Test
+    public void testRankingCopies() {
+        byte[] voter = new EdDSA().toAddress();
+        byte[] delegate1 = new EdDSA().toAddress();
+        byte[] delegate2 = new EdDSA().toAddress();
+
+        ds.register(delegate1, Bytes.of("delegate1"));
+        ds.register(delegate2, Bytes.of("delegate2"));
+        ds.vote(voter, delegate1, 2);
+        ds.vote(voter, delegate2, 1);
+        ds.commit();
+
+        // modifying the returned delegates leaves the ranking index intact
+        DelegateStateImpl impl = (DelegateStateImpl) ds;
+        ds.getTopDelegates(1).get(0).setVotes(0);
+        ds.getDelegates().get(1).setVotes(0);
+        assertEquals(2, impl.getRanking().get(0).getVotes());
+        ds.vote(voter, delegate2, 2);
+        ds.commit();
+        assertRanking(delegate2, delegate1);
+        assertEquals(2, ds.getDelegateByAddress(delegate1).getVotes());
+        assertEquals(2, impl.getRanking().get(1).getVotes());
+    }
+
+    @Test
+    public void testRankAndTop() {
+        byte[] voter = new EdDSA().toAddress();
+        byte[] delegate1 = new EdDSA().toAddress();
+        byte[] delegate2 = new EdDSA().toAddress();
+        byte[] delegate3 = new EdDSA().toAddress();
+
+        ds.register(delegate1, Bytes.of("delegate1"));
+        ds.register(delegate2, Bytes.of("delegate2"));
+        ds.register(delegate3, Bytes.of("delegate3"));
+        ds.vote(voter, delegate1, 3);
+        ds.vote(voter, delegate2, 2);
+        ds.vote(voter, delegate3, 1);
+        ds.commit();
+        assertRanks(ds);
+
+        // a read view ranks the delegates of its snapshot
+        ReadView view = chain.openReadView();
+        try {
+            assertRanks(view.getDelegateState());
+        } finally {
+            view.close();
+        }
+
+        // a tracked state merges its updates into the ranking of the database
+        DelegateState tracked = ds.track();
+        tracked.vote(voter, delegate3, 10);
+        byte[] delegate4 = new EdDSA().toAddress();
+        tracked.register(delegate4, Bytes.of("delegate4"));
+        tracked.vote(voter, delegate4, 4);
+        assertEquals(0, tracked.getRank(delegate3));
+        assertEquals(1, tracked.getRank(delegate4));
+        assertEquals(2, tracked.getRank(delegate1));
+        assertEquals(3, tracked.getRank(delegate2));
+        assertRanks(tracked);
+
+        assertEquals(-1, tracked.getRank(new EdDSA().toAddress()));
+        assertEquals(2, tracked.getTopDelegates(2).size());
+        assertTrue(tracked.getTopDelegates(0).isEmpty());
+    }
+
+    private void assertRanks(DelegateState state) {
+        List<Delegate> list = state.getDelegates();
+        for (int i = 0; i < list.size(); i++) {
+            assertEquals(i, state.getRank(list.get(i).getAddress()));
+            assertArrayEquals(list.get(i).getAddress(), state.getTopDelegates(i + 1).get(i).getAddress());
+        }
+    }
+
+    private void assertRanking(byte[]... addresses) {
+        assertRanking(ds, addresses);
+    }
+
+    private void assertRanking(DelegateState state, byte[]... addresses) {
+        List<Delegate> list = state.getDelegates();
+        List<ByteArray> top = new ArrayList<>();
+        for (int i = 0; i < addresses.length; i++) {
+            top.add(ByteArray.of(list.get(i).getAddress()));
+        }
+
+        List<ByteArray> expected = new ArrayList<>();
+        for (byte[] address : addresses) {
+            expected.add(ByteArray.of(address));
+        }
+        assertEquals(expected, top);
+    }
+
     @After
     public void rollback() {
         ds.rollback();
@@ -0,0 +1,108 @@
+/**
+ * Copyright (c) 2017 The Semux Developers
+ *
+ * Distributed under the MIT software license, see the accompanying file
+ * LICENSE or https://opensource.org/licenses/mit-license.php
+ */
+package org.semux.db;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.commons.lang3.tuple.Pair;
+import org.junit.Before;
+import org.junit.Test;
+import org.semux.util.Bytes;
+
+public class CachingKVDBTest {
+
+    private MemoryDB db;
+    private CachingKVDB cached;
+
+    @Before
+    public void setup() {
+        db = new MemoryDB();
+        cached = new CachingKVDB(db, 1024 * 1024);
+    }
+
+    @Test
+    public void testGetCachesValues() {
+        db.put(Bytes.of("a"), Bytes.of("1"));
+
+        assertArrayEquals(Bytes.of("1"), cached.get(Bytes.of("a")));
+        assertArrayEquals(Bytes.of("1"), cached.get(Bytes.of("a")));
+        assertEquals(1, cached.getStats().missCount());
+        assertEquals(1, cached.getStats().hitCount());
+    }
+
+    @Test
+    public void testGetCachesMisses() {
+        assertNull(cached.get(Bytes.of("a")));
+        assertNull(cached.get(Bytes.of("a")));
+        assertEquals(1, cached.getStats().hitCount());
+    }
+
+    @Test
+    public void testWriteThrough() {
+        assertNull(cached.get(Bytes.of("a")));
+
+        cached.put(Bytes.of("a"), Bytes.of("1"));
+        assertArrayEquals(Bytes.of("1"), db.get(Bytes.of("a")));
+        assertArrayEquals(Bytes.of("1"), cached.get(Bytes.of("a")));
+
+        cached.delete(Bytes.of("a"));
+        assertNull(db.get(Bytes.of("a")));
+        assertNull(cached.get(Bytes.of("a")));
+    }
+
+    @Test
+    public void testMultiGet() {
+        db.put(Bytes.of("a"), Bytes.of("1"));
+        db.put(Bytes.of("b"), Bytes.of("2"));
+        assertArrayEquals(Bytes.of("1"), cached.get(Bytes.of("a")));
+
+        List<byte[]> values = cached.multiGet(Arrays.asList(Bytes.of("a"), Bytes.of("b"), Bytes.of("c")));
+        assertArrayEquals(Bytes.of("1"), values.get(0));
+        assertArrayEquals(Bytes.of("2"), values.get(1));
+        assertNull(values.get(2));
+
+        // loaded values are cached
+        assertArrayEquals(Bytes.of("2"), cached.get(Bytes.of("b")));
+        assertEquals(2, cached.getStats().hitCount());
+    }
+
+    @Test
+    public void testUpdateBatch() {
+        cached.put(Bytes.of("a"), Bytes.of("1"));
+        assertNull(cached.get(Bytes.of("b")));
+
+        List<Pair<byte[], byte[]>> update = new ArrayList<>();
+        update.add(Pair.of(Bytes.of("a"), null));
+        update.add(Pair.of(Bytes.of("b"), Bytes.of("2")));
+        cached.updateBatch(update);
+
+        assertNull(cached.get(Bytes.of("a")));
+        assertArrayEquals(Bytes.of("2"), cached.get(Bytes.of("b")));
+        assertNull(db.get(Bytes.of("a")));
+        assertArrayEquals(Bytes.of("2"), db.get(Bytes.of("b")));
+    }
+
+    @Test
+    public void testEviction() {
+        cached = new CachingKVDB(db, 4 * 1024);
+        for (int i = 0; i < 1000; i++) {
+            cached.put(Bytes.of(i), Bytes.random(256));
+        }
+
+        for (int i = 0; i < 1000; i++) {
+            cached.get(Bytes.of(i));
+        }
+        assertTrue(cached.getStats().missCount() > 0);
+    }
+}
@@ -7,6 +7,7 @@
 package org.semux.db;
 
 import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
@@ -86,6 +87,141 @@ public class LevelDBTest {
         itr.close();
     }
 
+    @Test
+    public void testSnapshot() {
+        byte[] k1 = Bytes.of("snapshot1");
+        byte[] k2 = Bytes.of("snapshot2");
+        db.put(k1, Bytes.of("1"));
+        db.delete(k2);
+
+        KVDB snapshot = db.snapshot();
+        try {
+            db.put(k1, Bytes.of("2"));
+            db.put(k2, Bytes.of("3"));
+
+            assertArrayEquals(Bytes.of("1"), snapshot.get(k1));
+            assertNull(snapshot.get(k2));
+
+            ClosableIterator<Entry<byte[], byte[]>> itr = snapshot.iterator(k1);
+            assertTrue(itr.hasNext());
+            Entry<byte[], byte[]> e = itr.next();
+            assertArrayEquals(k1, e.getKey());
+            assertArrayEquals(Bytes.of("1"), e.getValue());
+            assertFalse(itr.hasNext() && Arrays.equals(k2, itr.next().getKey()));
+            itr.close();
+        } finally {
+            snapshot.close();
+        }
+
+        assertArrayEquals(Bytes.of("2"), db.get(k1));
+    }
+
+    @Test
+    public void testMultiGet() {
+        db.put(Bytes.of("multi1"), Bytes.of("1"));
+        db.put(Bytes.of("multi2"), Bytes.of("2"));
+        db.put(Bytes.of("multi4"), Bytes.of("4"));
+        db.delete(Bytes.of("multi3"));
+
+        List<byte[]> values = db.multiGet(Arrays.asList(Bytes.of("multi4"), Bytes.of("multi1"), Bytes.of("multi3"),
+                Bytes.of("multi2"), Bytes.of("multi1"), Bytes.of("multi9")));
+        assertEquals(6, values.size());
+        assertArrayEquals(Bytes.of("4"), values.get(0));
+        assertArrayEquals(Bytes.of("1"), values.get(1));
+        assertNull(values.get(2));
+        assertArrayEquals(Bytes.of("2"), values.get(3));
+        assertArrayEquals(Bytes.of("1"), values.get(4));
+        assertNull(values.get(5));
+    }
+
+    @Test
+    public void testMaintenance() {
+        for (int i = 0; i < 1000; i++) {
+            db.put(Bytes.merge(Bytes.of("maintenance"), Bytes.of(i)), Bytes.random(100));
+        }
+        db.compactRange(null, null);
+
+        assertNotNull(db.getProperty("leveldb.stats"));
+        assertNull(db.getProperty("leveldb.not-a-property"));
+
+        List<Pair<byte[], byte[]>> ranges = new ArrayList<>();
+        ranges.add(Pair.of(null, null));
+        ranges.add(Pair.of(Bytes.of("maintenance"), Bytes.of("maintenancf")));
+        long[] sizes = db.getApproximateSizes(ranges);
+        assertTrue(sizes[0] >= sizes[1]);
+        assertTrue(sizes[1] > 0);
+
+        DBStats stats = DBStats.of(db);
+        assertEquals(sizes[0], stats.getApproximateSize());
+        assertTrue(stats.getReadAmplification() > 0);
+    }
+
+    @Test
+    public void testRangeIterator() {
+        db.put(Bytes.of("range1"), Bytes.of("1"));
+        db.put(Bytes.of("range2"), Bytes.of("2"));
+        db.put(Bytes.of("range3"), Bytes.of("3"));
+
+        assertKeys(db.iterator(Bytes.of("range1"), Bytes.of("range3")), "range1", "range2");
+        assertKeys(db.iterator(Bytes.of("range2"), Bytes.of("range2")));
+    }
+
+    @Test
+    public void testPrefixIterator() {
+        db.put(Bytes.of("prefix1"), Bytes.of("1"));
+        db.put(Bytes.of("prefix2"), Bytes.of("2"));
+        db.put(Bytes.of("prefiy"), Bytes.of("3"));
+
+        assertKeys(db.prefixIterator(Bytes.of("prefix")), "prefix1", "prefix2");
+    }
+
+    @Test
+    public void testReverseIterator() {
+        db.put(Bytes.of("reverse1"), Bytes.of("1"));
+        db.put(Bytes.of("reverse2"), Bytes.of("2"));
+        db.put(Bytes.of("reversf"), Bytes.of("3"));
+        db.put(Bytes.of("revers"), Bytes.of("4"));
+
+        assertKeys(db.reverseIterator(Bytes.of("reverse")), "reverse2", "reverse1");
+    }
+
+    @Test
+    public void testReverseIteratorAtEnd() {
+        byte[] prefix = { (byte) 0xff, (byte) 0xff };
+        byte[] k1 = { (byte) 0xff, (byte) 0xff, 1 };
+        byte[] k2 = { (byte) 0xff, (byte) 0xff, (byte) 0xff };
+        db.put(k1, Bytes.of("1"));
+        db.put(k2, Bytes.of("2"));
+
+        ClosableIterator<Entry<byte[], byte[]>> itr = db.reverseIterator(prefix);
+        assertArrayEquals(k2, itr.next().getKey());
+        assertArrayEquals(k1, itr.next().getKey());
+        assertFalse(itr.hasNext());
+        itr.close();
+    }
+
+    private static void assertKeys(ClosableIterator<Entry<byte[], byte[]>> itr, String... keys) {
+        try {
+            for (String k : keys) {
+                assertTrue(itr.hasNext());
+                assertArrayEquals(Bytes.of(k), itr.next().getKey());
+            }
+            assertFalse(itr.hasNext());
+        } finally {
+            itr.close();
+        }
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void testSnapshotReadOnly() {
+        KVDB snapshot = db.snapshot();
+        try {
+            snapshot.put(key, value);
+        } finally {
+            snapshot.close();
+        }
+    }
+
     @Test
     public void testLevelDBFactory() {
         LevelDBFactory factory = new LevelDBFactory(new File(Constants.DEFAULT_DATA_DIR));
@@ -6,11 +6,15 @@
  */
 package org.semux.db;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.EnumMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.NavigableMap;
+import java.util.TreeMap;
 import java.util.concurrent.ConcurrentHashMap;
 
 import org.apache.commons.lang3.tuple.Pair;
@@ -29,6 +33,15 @@ public class MemoryDB implements KVDB {
         return db.get(ByteArray.of(key));
     }
 
+    @Override
+    public List<byte[]> multiGet(List<byte[]> keys) {
+        List<byte[]> values = new ArrayList<>();
+        for (byte[] key : keys) {
+            values.add(get(key));
+        }
+        return values;
+    }
+
     @Override
     public void put(byte[] key, byte[] value) {
         db.put(ByteArray.of(key), value);
@@ -52,9 +65,49 @@ public class MemoryDB implements KVDB {
 
     @Override
     public ClosableIterator<Entry<byte[], byte[]>> iterator() {
-        return new ClosableIterator<Entry<byte[], byte[]>>() {
+        return iterator(db.entrySet().iterator());
+    }
+
+    @Override
+    public ClosableIterator<Entry<byte[], byte[]>> iterator(byte[] prefix) {
+        throw new UnsupportedOperationException("Key iterator with prefix is not supported");
+    }
 
-            Iterator<Entry<ByteArray, byte[]>> itr = db.entrySet().iterator();
+    @Override
+    public ClosableIterator<Entry<byte[], byte[]>> iterator(byte[] from, byte[] to) {
+        NavigableMap<ByteArray, byte[]> sorted = new TreeMap<>(db);
+        if (from != null) {
+            sorted = sorted.tailMap(ByteArray.of(from), true);
+        }
+        if (to != null) {
+            sorted = sorted.headMap(ByteArray.of(to), false);
+        }
+        return iterator(sorted.entrySet().iterator());
+    }
+
+    @Override
+    public ClosableIterator<Entry<byte[], byte[]>> prefixIterator(byte[] prefix) {
+        return iterator(filter(prefix).entrySet().iterator());
+    }
+
+    @Override
+    public ClosableIterator<Entry<byte[], byte[]>> reverseIterator(byte[] prefix) {
+        return iterator(filter(prefix).descendingMap().entrySet().iterator());
+    }
+
+    private NavigableMap<ByteArray, byte[]> filter(byte[] prefix) {
+        NavigableMap<ByteArray, byte[]> sorted = new TreeMap<>();
+        for (Entry<ByteArray, byte[]> e : db.entrySet()) {
+            byte[] key = e.getKey().getData();
+            if (key.length >= prefix.length && Arrays.equals(Arrays.copyOf(key, prefix.length), prefix)) {
+                sorted.put(e.getKey(), e.getValue());
+            }
+        }
+        return sorted;
+    }
+
+    private ClosableIterator<Entry<byte[], byte[]>> iterator(Iterator<Entry<ByteArray, byte[]>> itr) {
+        return new ClosableIterator<Entry<byte[], byte[]>>() {
 
             @Override
             public boolean hasNext() {
@@ -91,8 +144,33 @@ public class MemoryDB implements KVDB {
     }
 
     @Override
-    public ClosableIterator<Entry<byte[], byte[]>> iterator(byte[] prefix) {
-        throw new UnsupportedOperationException("Key iterator with prefix is not supported");
+    public KVDB snapshot() {
+        MemoryDB snapshot = new MemoryDB();
+        snapshot.db.putAll(db);
+        return snapshot;
+    }
+
+    @Override
+    public void compactRange(byte[] from, byte[] to) {
+        // Do nothing
+    }
+
+    @Override
+    public String getProperty(String name) {
+        return null;
+    }
+
+    @Override
+    public long[] getApproximateSizes(List<Pair<byte[], byte[]>> ranges) {
+        long[] sizes = new long[ranges.size()];
+        for (int i = 0; i < ranges.size(); i++) {
+            ClosableIterator<Entry<byte[], byte[]>> itr = iterator(ranges.get(i).getLeft(), ranges.get(i).getRight());
+            while (itr.hasNext()) {
+                Entry<byte[], byte[]> e = itr.next();
+                sizes[i] += e.getKey().length + e.getValue().length;
+            }
+        }
+        return sizes;
     }
 
     @Override
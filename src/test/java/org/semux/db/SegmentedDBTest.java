@@ -0,0 +1,215 @@
+/**
+ * Copyright (c) 2017 The Semux Developers
+ *
+ * Distributed under the MIT software license, see the accompanying file
+ * LICENSE or https://opensource.org/licenses/mit-license.php
+ */
+package org.semux.db;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map.Entry;
+
+import org.apache.commons.lang3.tuple.Pair;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.semux.util.Bytes;
+import org.semux.util.ClosableIterator;
+import org.semux.util.FileUtil;
+
+public class SegmentedDBTest {
+
+    private static final int SEGMENT_SIZE = 1024;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private File dir;
+    private KVDB db;
+
+    @Before
+    public void setup() {
+        dir = new File(folder.getRoot(), "block");
+        db = new SegmentedDB(dir, SEGMENT_SIZE);
+    }
+
+    @After
+    public void teardown() {
+        db.close();
+    }
+
+    @Test
+    public void testGetAndPut() {
+        byte[] key = Bytes.of("key");
+        byte[] value = Bytes.of("value");
+
+        assertNull(db.get(key));
+        db.put(key, value);
+        assertArrayEquals(value, db.get(key));
+        db.delete(key);
+        assertNull(db.get(key));
+    }
+
+    @Test
+    public void testUpdateBatch() {
+        db.put(Bytes.of("a"), Bytes.of("1"));
+
+        List<Pair<byte[], byte[]>> update = new ArrayList<>();
+        update.add(Pair.of(Bytes.of("a"), null));
+        update.add(Pair.of(Bytes.of("b"), Bytes.of("2")));
+        update.add(Pair.of(Bytes.of("c"), Bytes.of("3")));
+        db.updateBatch(update);
+
+        assertNull(db.get(Bytes.of("a")));
+        assertArrayEquals(Bytes.of("2"), db.get(Bytes.of("b")));
+        assertArrayEquals(Bytes.of("3"), db.get(Bytes.of("c")));
+    }
+
+    @Test
+    public void testIterator() {
+        db.put(Bytes.of("a"), Bytes.of("1"));
+        db.put(Bytes.of("b"), Bytes.of("2"));
+        db.put(Bytes.of("c"), Bytes.of("3"));
+
+        ClosableIterator<Entry<byte[], byte[]>> itr = db.iterator(Bytes.of("a1"));
+        assertTrue(itr.hasNext());
+        Entry<byte[], byte[]> e = itr.next();
+        assertArrayEquals(Bytes.of("b"), e.getKey());
+        assertArrayEquals(Bytes.of("2"), e.getValue());
+        assertTrue(itr.hasNext());
+        assertArrayEquals(Bytes.of("c"), itr.next().getKey());
+        assertFalse(itr.hasNext());
+        itr.close();
+    }
+
+    @Test
+    public void testBoundedIterators() {
+        db.put(Bytes.of("a1"), Bytes.of("1"));
+        db.put(Bytes.of("a2"), Bytes.of("2"));
+        db.put(Bytes.of("b"), Bytes.of("3"));
+
+        ClosableIterator<Entry<byte[], byte[]>> itr = db.prefixIterator(Bytes.of("a"));
+        assertArrayEquals(Bytes.of("1"), itr.next().getValue());
+        assertArrayEquals(Bytes.of("2"), itr.next().getValue());
+        assertFalse(itr.hasNext());
+        itr.close();
+
+        itr = db.reverseIterator(Bytes.of("a"));
+        assertArrayEquals(Bytes.of("2"), itr.next().getValue());
+        assertArrayEquals(Bytes.of("1"), itr.next().getValue());
+        assertFalse(itr.hasNext());
+        itr.close();
+
+        itr = db.iterator(Bytes.of("a2"), Bytes.of("c"));
+        assertArrayEquals(Bytes.of("2"), itr.next().getValue());
+        assertArrayEquals(Bytes.of("3"), itr.next().getValue());
+        assertFalse(itr.hasNext());
+        itr.close();
+    }
+
+    @Test
+    public void testSegmentRollover() {
+        for (int i = 0; i < 100; i++) {
+            db.put(Bytes.of(i), Bytes.random(100));
+        }
+        byte[] large = Bytes.random(SEGMENT_SIZE * 2);
+        db.put(Bytes.of("large"), large);
+        db.put(Bytes.of("small"), Bytes.of("1"));
+
+        assertTrue(new File(dir, "00000010.seg").exists());
+        assertArrayEquals(large, db.get(Bytes.of("large")));
+        assertArrayEquals(Bytes.of("1"), db.get(Bytes.of("small")));
+    }
+
+    @Test
+    public void testReopen() {
+        db.put(Bytes.of("a"), Bytes.of("1"));
+        db.close();
+
+        db = new SegmentedDB(dir, SEGMENT_SIZE);
+        db.put(Bytes.of("b"), Bytes.of("2"));
+        assertArrayEquals(Bytes.of("1"), db.get(Bytes.of("a")));
+        assertArrayEquals(Bytes.of("2"), db.get(Bytes.of("b")));
+    }
+
+    @Test
+    public void testRebuildIndex() {
+        for (int i = 0; i < 100; i++) {
+            db.put(Bytes.of(i), Bytes.of(i * 2));
+        }
+        db.close();
+        FileUtil.recursiveDelete(new File(dir, "index"));
+
+        db = new SegmentedDB(dir, SEGMENT_SIZE);
+        for (int i = 0; i < 100; i++) {
+            assertArrayEquals(Bytes.of(i * 2), db.get(Bytes.of(i)));
+        }
+    }
+
+    @Test
+    public void testResumeInterruptedRebuild() throws IOException {
+        for (int i = 0; i < 100; i++) {
+            db.put(Bytes.of(i), Bytes.of(i * 2));
+        }
+        db.close();
+
+        // a rebuild which indexed the first segment only
+        FileUtil.recursiveDelete(new File(dir, "index"));
+        LevelDB index = new LevelDB(new File(dir, "index"));
+        index.put(Bytes.of(0), Bytes.of(0));
+        index.close();
+        assertTrue(new File(dir, "index.rebuild").createNewFile());
+
+        db = new SegmentedDB(dir, SEGMENT_SIZE);
+        for (int i = 0; i < 100; i++) {
+            assertArrayEquals(Bytes.of(i * 2), db.get(Bytes.of(i)));
+        }
+        assertFalse(new File(dir, "index.rebuild").exists());
+    }
+
+    @Test
+    public void testRebuildIndexWithDeletions() {
+        db.put(Bytes.of("a"), Bytes.of("1"));
+        db.put(Bytes.of("b"), Bytes.of("2"));
+        db.delete(Bytes.of("a"));
+
+        List<Pair<byte[], byte[]>> update = new ArrayList<>();
+        update.add(Pair.of(Bytes.of("b"), null));
+        update.add(Pair.of(Bytes.of("c"), Bytes.of("3")));
+        db.updateBatch(update);
+        db.put(Bytes.of("a"), Bytes.of("4"));
+        db.close();
+        FileUtil.recursiveDelete(new File(dir, "index"));
+
+        db = new SegmentedDB(dir, SEGMENT_SIZE);
+        assertArrayEquals(Bytes.of("4"), db.get(Bytes.of("a")));
+        assertNull(db.get(Bytes.of("b")));
+        assertArrayEquals(Bytes.of("3"), db.get(Bytes.of("c")));
+    }
+
+    @Test
+    public void testSnapshot() {
+        db.put(Bytes.of("a"), Bytes.of("1"));
+
+        KVDB snapshot = db.snapshot();
+        try {
+            db.put(Bytes.of("a"), Bytes.of("2"));
+            db.put(Bytes.of("b"), Bytes.of("3"));
+
+            assertArrayEquals(Bytes.of("1"), snapshot.get(Bytes.of("a")));
+            assertNull(snapshot.get(Bytes.of("b")));
+        } finally {
+            snapshot.close();
+        }
+    }
+}
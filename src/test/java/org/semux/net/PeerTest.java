@@ -32,4 +32,16 @@ public class PeerTest {
         assertEquals(peerId, peer.getPeerId());
         assertEquals(latestBlockNumber, peer.getLatestBlockNumber());
     }
+
+    @Test
+    public void testDownloadRate() {
+        Peer peer = new Peer("127.0.0.1", 1234, (short) 2, "client", new EdDSA().toAddressString(), 1);
+        assertEquals(0, peer.getDownloadRate(), 0);
+
+        peer.updateDownloadRate(100, 1000);
+        assertEquals(100, peer.getDownloadRate(), 1e-9);
+
+        peer.updateDownloadRate(0, 1000);
+        assertEquals(70, peer.getDownloadRate(), 1e-9);
+    }
 }
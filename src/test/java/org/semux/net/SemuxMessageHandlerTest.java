@@ -0,0 +1,84 @@
+/**
+ * Copyright (c) 2017 The Semux Developers
+ *
+ * Distributed under the MIT software license, see the accompanying file
+ * LICENSE or https://opensource.org/licenses/mit-license.php
+ */
+package org.semux.net;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+import org.semux.config.Config;
+import org.semux.config.Constants;
+import org.semux.config.DevNetConfig;
+import org.semux.core.Block;
+import org.semux.core.BlockHeader;
+import org.semux.core.Transaction;
+import org.semux.core.TransactionResult;
+import org.semux.core.TransactionType;
+import org.semux.crypto.EdDSA;
+import org.semux.net.msg.consensus.BlockMessage;
+import org.semux.util.Bytes;
+import org.semux.util.MerkleUtil;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.embedded.EmbeddedChannel;
+
+public class SemuxMessageHandlerTest {
+
+    private Config config = new DevNetConfig(Constants.DEFAULT_DATA_DIR) {
+        {
+            netMaxFrameSize = 1024;
+        }
+    };
+
+    @Test
+    public void testRawBlockFrames() {
+        Block block = createBlock(20);
+        BlockMessage msg = new BlockMessage(block.toBytesHeader(), block.toBytesTransactions(),
+                block.toBytesResults(), block.toBytesVotes());
+        int packetSize = msg.getEncoded().length;
+
+        EmbeddedChannel out = new EmbeddedChannel(new SemuxFrameHandler(config), new SemuxMessageHandler(config));
+        out.writeOutbound(msg);
+
+        EmbeddedChannel in = new EmbeddedChannel(new SemuxFrameHandler(config), new SemuxMessageHandler(config));
+        int frames = 0;
+        ByteBuf buf;
+        while ((buf = out.readOutbound()) != null) {
+            // the codec also writes an empty buffer after each frame
+            if (buf.isReadable()) {
+                in.writeInbound(buf);
+                frames++;
+            }
+        }
+        assertTrue(frames > 1);
+        assertEquals((packetSize - 1) / config.netMaxFrameSize() + 1, frames);
+
+        BlockMessage received = in.readInbound();
+        assertArrayEquals(block.getHash(), received.getBlock().getHash());
+        assertEquals(block.getTransactions().size(), received.getBlock().getTransactions().size());
+    }
+
+    private Block createBlock(int n) {
+        EdDSA key = new EdDSA();
+        List<Transaction> transactions = new ArrayList<>();
+        List<TransactionResult> results = new ArrayList<>();
+        for (int i = 0; i < n; i++) {
+            transactions.add(new Transaction(TransactionType.TRANSFER, Bytes.random(20), 1, 1, i,
+                    System.currentTimeMillis(), Bytes.EMPTY_BYTES).sign(key));
+            results.add(new TransactionResult(true));
+        }
+
+        BlockHeader header = new BlockHeader(1, key.toAddress(), Bytes.EMPTY_HASH, System.currentTimeMillis(),
+                MerkleUtil.computeTransactionsRoot(transactions), MerkleUtil.computeResultsRoot(results),
+                Bytes.EMPTY_HASH, Bytes.EMPTY_BYTES);
+        return new Block(header, transactions, results, 0, new ArrayList<>());
+    }
+}
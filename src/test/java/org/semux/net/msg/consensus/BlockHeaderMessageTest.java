@@ -0,0 +1,75 @@
+/**
+ * Copyright (c) 2017 The Semux Developers
+ *
+ * Distributed under the MIT software license, see the accompanying file
+ * LICENSE or https://opensource.org/licenses/mit-license.php
+ */
+package org.semux.net.msg.consensus;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.junit.Test;
+import org.semux.core.BlockHeader;
+import org.semux.crypto.EdDSA;
+import org.semux.net.msg.MessageCode;
+import org.semux.net.msg.MessageFactory;
+import org.semux.util.Bytes;
+import org.semux.util.MerkleUtil;
+import org.semux.util.SimpleEncoder;
+
+public class BlockHeaderMessageTest {
+
+    @Test
+    public void testHeaders() {
+        BlockHeader header1 = createHeader(1);
+        BlockHeader header2 = createHeader(2);
+        BlockHeaderMessage msg = new BlockHeaderMessage(Arrays.asList(header1, header2));
+        assertEquals(MessageCode.BLOCK_HEADER, msg.getCode());
+
+        BlockHeaderMessage decoded = (BlockHeaderMessage) new MessageFactory().create(MessageCode.BLOCK_HEADER.toByte(),
+                msg.getEncoded());
+        assertEquals(2, decoded.getHeaders().size());
+        assertArrayEquals(header1.getHash(), decoded.getHeader().getHash());
+        assertArrayEquals(header2.getHash(), decoded.getHeaders().get(1).getHash());
+    }
+
+    @Test
+    public void testSingleHeader() {
+        BlockHeader header = createHeader(1);
+
+        // the single header encoding is unchanged
+        SimpleEncoder enc = new SimpleEncoder();
+        enc.writeBytes(header.toBytes());
+        assertArrayEquals(enc.toBytes(), new BlockHeaderMessage(header).getEncoded());
+
+        BlockHeaderMessage msg = new BlockHeaderMessage((BlockHeader) null);
+        assertNull(new BlockHeaderMessage(msg.getEncoded()).getHeader());
+        assertTrue(new BlockHeaderMessage(msg.getEncoded()).getHeaders().isEmpty());
+        assertArrayEquals(msg.getEncoded(), new BlockHeaderMessage(Collections.emptyList()).getEncoded());
+    }
+
+    @Test
+    public void testGetBlockHeader() {
+        GetBlockHeaderMessage single = new GetBlockHeaderMessage(10);
+        assertEquals(8, single.getEncoded().length);
+        assertEquals(1, new GetBlockHeaderMessage(single.getEncoded()).getCount());
+        assertEquals(BlockHeaderMessage.class, single.getResponseMessageClass());
+
+        GetBlockHeaderMessage range = new GetBlockHeaderMessage(10, 100);
+        GetBlockHeaderMessage decoded = new GetBlockHeaderMessage(range.getEncoded());
+        assertEquals(10, decoded.getNumber());
+        assertEquals(100, decoded.getCount());
+    }
+
+    private BlockHeader createHeader(long number) {
+        return new BlockHeader(number, new EdDSA().toAddress(), Bytes.EMPTY_HASH, System.currentTimeMillis(),
+                MerkleUtil.computeTransactionsRoot(Collections.emptyList()),
+                MerkleUtil.computeResultsRoot(Collections.emptyList()), Bytes.EMPTY_HASH, Bytes.EMPTY_BYTES);
+    }
+}
@@ -0,0 +1,63 @@
+/**
+ * Copyright (c) 2017 The Semux Developers
+ *
+ * Distributed under the MIT software license, see the accompanying file
+ * LICENSE or https://opensource.org/licenses/mit-license.php
+ */
+package org.semux.net.msg.consensus;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Test;
+import org.semux.core.Block;
+import org.semux.core.BlockHeader;
+import org.semux.core.Transaction;
+import org.semux.core.TransactionResult;
+import org.semux.core.TransactionType;
+import org.semux.crypto.EdDSA;
+import org.semux.util.Bytes;
+import org.semux.util.MerkleUtil;
+
+public class BlockMessageTest {
+
+    @Test
+    public void testRawBlock() {
+        Block block = createBlock();
+        BlockMessage msg = new BlockMessage(block);
+        BlockMessage raw = new BlockMessage(block.toBytesHeader(), block.toBytesTransactions(),
+                block.toBytesResults(), block.toBytesVotes());
+
+        assertArrayEquals(msg.getEncoded(), raw.getEncoded());
+        assertArrayEquals(block.getHash(), raw.getBlock().getHash());
+        assertEquals(8, raw.getEncodedParts().length);
+
+        BlockMessage decoded = new BlockMessage(raw.getEncoded());
+        assertArrayEquals(block.getHash(), decoded.getBlock().getHash());
+        assertEquals(1, decoded.getBlock().getTransactions().size());
+    }
+
+    @Test
+    public void testNullBlock() {
+        BlockMessage msg = new BlockMessage((Block) null);
+        assertNull(new BlockMessage(msg.getEncoded()).getBlock());
+    }
+
+    private Block createBlock() {
+        EdDSA key = new EdDSA();
+        Transaction tx = new Transaction(TransactionType.TRANSFER, Bytes.random(20), 1, 1, 1,
+                System.currentTimeMillis(), Bytes.EMPTY_BYTES).sign(key);
+        List<Transaction> transactions = Collections.singletonList(tx);
+        List<TransactionResult> results = Collections.singletonList(new TransactionResult(true));
+
+        BlockHeader header = new BlockHeader(1, key.toAddress(), Bytes.EMPTY_HASH, System.currentTimeMillis(),
+                MerkleUtil.computeTransactionsRoot(transactions), MerkleUtil.computeResultsRoot(results),
+                Bytes.EMPTY_HASH, Bytes.EMPTY_BYTES);
+        return new Block(header, transactions, results, 0, new ArrayList<>());
+    }
+}
@@ -0,0 +1,88 @@
+/**
+ * Copyright (c) 2017 The Semux Developers
+ *
+ * Distributed under the MIT software license, see the accompanying file
+ * LICENSE or https://opensource.org/licenses/mit-license.php
+ */
+package org.semux.net.msg.consensus;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Test;
+import org.semux.core.Block;
+import org.semux.core.BlockHeader;
+import org.semux.core.Transaction;
+import org.semux.core.TransactionResult;
+import org.semux.core.TransactionType;
+import org.semux.crypto.EdDSA;
+import org.semux.net.msg.MessageCode;
+import org.semux.net.msg.MessageFactory;
+import org.semux.util.Bytes;
+import org.semux.util.MerkleUtil;
+
+public class BlocksMessageTest {
+
+    @Test
+    public void testRawBlocks() {
+        List<Block> blocks = Arrays.asList(createBlock(1), createBlock(2));
+        BlocksMessage msg = new BlocksMessage(blocks);
+        BlocksMessage raw = new BlocksMessage(new byte[][][] { toParts(blocks.get(0)), toParts(blocks.get(1)) });
+
+        assertArrayEquals(msg.getEncoded(), raw.getEncoded());
+        assertEquals(17, raw.getEncodedParts().length);
+        assertArrayEquals(blocks.get(1).getHash(), raw.getBlocks().get(1).getHash());
+
+        BlocksMessage decoded = (BlocksMessage) new MessageFactory().create(MessageCode.BLOCKS.toByte(),
+                raw.getEncoded());
+        assertEquals(2, decoded.getBlocks().size());
+        assertArrayEquals(blocks.get(0).getHash(), decoded.getBlocks().get(0).getHash());
+        assertEquals(1, decoded.getBlocks().get(1).getTransactions().size());
+
+        int size = 4 + BlocksMessage.getEncodedSize(toParts(blocks.get(0)))
+                + BlocksMessage.getEncodedSize(toParts(blocks.get(1)));
+        assertEquals(size, raw.getEncoded().length);
+    }
+
+    @Test
+    public void testNoBlocks() {
+        BlocksMessage msg = new BlocksMessage(new byte[0][][]);
+        assertTrue(new BlocksMessage(msg.getEncoded()).getBlocks().isEmpty());
+        assertArrayEquals(new BlocksMessage(Collections.emptyList()).getEncoded(), msg.getEncoded());
+    }
+
+    @Test
+    public void testGetBlocks() {
+        GetBlocksMessage msg = new GetBlocksMessage(100, 32);
+        GetBlocksMessage decoded = (GetBlocksMessage) new MessageFactory().create(MessageCode.GET_BLOCKS.toByte(),
+                msg.getEncoded());
+
+        assertEquals(100, decoded.getFrom());
+        assertEquals(32, decoded.getCount());
+        assertEquals(BlocksMessage.class, decoded.getResponseMessageClass());
+    }
+
+    private byte[][] toParts(Block block) {
+        return new byte[][] { block.toBytesHeader(), block.toBytesTransactions(), block.toBytesResults(),
+                block.toBytesVotes() };
+    }
+
+    private Block createBlock(long number) {
+        EdDSA key = new EdDSA();
+        Transaction tx = new Transaction(TransactionType.TRANSFER, Bytes.random(20), 1, 1, 1,
+                System.currentTimeMillis(), Bytes.EMPTY_BYTES).sign(key);
+        List<Transaction> transactions = Collections.singletonList(tx);
+        List<TransactionResult> results = Collections.singletonList(new TransactionResult(true));
+
+        BlockHeader header = new BlockHeader(number, key.toAddress(), Bytes.EMPTY_HASH, System.currentTimeMillis(),
+                MerkleUtil.computeTransactionsRoot(transactions), MerkleUtil.computeResultsRoot(results),
+                Bytes.EMPTY_HASH, Bytes.EMPTY_BYTES);
+        return new Block(header, transactions, results, 0, new ArrayList<>());
+    }
+}